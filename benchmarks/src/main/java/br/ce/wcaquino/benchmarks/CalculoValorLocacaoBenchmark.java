@@ -0,0 +1,93 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.daos.CatalogoFilmes;
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.servicos.PricingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculoValorLocacaoBenchmark {
+
+    @Param({"1", "3", "6", "20", "100"})
+    public int tamanhoCarrinho;
+
+    private List<Filme> filmes;
+    private double[] precos;
+    private CatalogoFilmes catalogo;
+    private int[] ids;
+
+    @Setup
+    public void setup() {
+        filmes = new ArrayList<>();
+        precos = new double[tamanhoCarrinho];
+        catalogo = new CatalogoFilmes(tamanhoCarrinho);
+        ids = new int[tamanhoCarrinho];
+        for (int i = 0; i < tamanhoCarrinho; i++) {
+            filmes.add(new Filme("Filme " + i, 1, 4.0 + i));
+            precos[i] = 4.0 + i;
+            ids[i] = catalogo.cadastrar("Filme " + i, 1, 4.0 + i);
+        }
+    }
+
+    /*
+     * Implementacao original de LocacaoService.calcularValorLocacao (sem o println),
+     * mantida como referencia para comparacao.
+     */
+    @Benchmark
+    public double legado() {
+        AtomicInteger index = new AtomicInteger();
+        Double valorTotal = filmes.stream().map(filme -> {
+            double preco;
+            switch (index.get()) {
+                case 2 :
+                    preco = filme.getPrecoLocacao() * 0.75;
+                    break;
+                case 3 : preco = filme.getPrecoLocacao() * 0.50;
+                    break;
+                case 4 : preco = filme.getPrecoLocacao() * 0.25;
+                    break;
+                case 5 : preco = 0d;
+                    break;
+                default : preco = filme.getPrecoLocacao();
+            }
+            index.getAndIncrement();
+            return preco;
+        }).reduce(Double::sum).get();
+        return valorTotal;
+    }
+
+    @Benchmark
+    public double pricingEngine() {
+        return PricingEngine.PADRAO.calcularValor(filmes);
+    }
+
+    @Benchmark
+    public double pricingEnginePrecos() {
+        return PricingEngine.PADRAO.calcularValor(precos);
+    }
+
+    @Benchmark
+    public double pricingEngineCatalogo() {
+        return PricingEngine.PADRAO.calcularValor(catalogo, ids);
+    }
+}
@@ -0,0 +1,88 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.utils.DataUtils;
+import br.ce.wcaquino.utils.DiaEpoch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataUtilsBenchmark {
+
+    private Date data1;
+    private Date data2;
+    private DiaEpoch diaEpoch;
+    private long dia1;
+    private long dia2;
+
+    @Setup
+    public void setup() {
+        data1 = DataUtils.obterData(29, 4, 2017);
+        data2 = DataUtils.obterData(1, 5, 2017);
+        diaEpoch = DiaEpoch.sistema();
+        dia1 = diaEpoch.de(data1);
+        dia2 = diaEpoch.de(data2);
+    }
+
+    @Benchmark
+    public Date adicionarDias() {
+        return DataUtils.adicionarDias(data1, 3);
+    }
+
+    @Benchmark
+    public Date obterDataComDiferencaDias() {
+        return DataUtils.obterDataComDiferencaDias(3);
+    }
+
+    @Benchmark
+    public Date obterData() {
+        return DataUtils.obterData(29, 4, 2017);
+    }
+
+    @Benchmark
+    public boolean isMesmaData() {
+        return DataUtils.isMesmaData(data1, data2);
+    }
+
+    @Benchmark
+    public boolean verificarDiaSemana() {
+        return DataUtils.verificarDiaSemana(data1, Calendar.SATURDAY);
+    }
+
+    @Benchmark
+    public long diaEpochHoje() {
+        return diaEpoch.hoje();
+    }
+
+    @Benchmark
+    public long diaEpochAdicionarDias() {
+        return DiaEpoch.adicionarDias(dia1, 3);
+    }
+
+    @Benchmark
+    public boolean diaEpochIsMesmaData() {
+        return DiaEpoch.isMesmaData(dia1, dia2);
+    }
+
+    @Benchmark
+    public boolean diaEpochVerificarDiaSemana() {
+        return DiaEpoch.verificarDiaSemana(dia1, DayOfWeek.SATURDAY);
+    }
+}
@@ -0,0 +1,66 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.daos.LocacaoDao;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.servicos.EmailService;
+import br.ce.wcaquino.servicos.SpcService;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Implementacoes em memoria das dependencias do LocacaoService,
+ * para que os benchmarks meçam apenas o custo do proprio servico.
+ */
+final class Dubles {
+
+    private Dubles() {}
+
+    static class LocacaoDaoFixo implements LocacaoDao {
+        private final List<Locacao> pendentes;
+        private long salvas;
+
+        LocacaoDaoFixo() {
+            this(Collections.emptyList());
+        }
+
+        LocacaoDaoFixo(List<Locacao> pendentes) {
+            this.pendentes = pendentes;
+        }
+
+        @Override
+        public void salvar(Locacao locacao) {
+            salvas++;
+        }
+
+        @Override
+        public List<Locacao> findLocacoesPendentes() {
+            return pendentes;
+        }
+
+        long getSalvas() {
+            return salvas;
+        }
+    }
+
+    static class SpcServiceLiberado implements SpcService {
+        @Override
+        public boolean possuiNegativacao(Usuario usuario) {
+            return false;
+        }
+    }
+
+    static class EmailServiceContador implements EmailService {
+        private long enviados;
+
+        @Override
+        public void notificarAtraso(Usuario usuario) {
+            enviados++;
+        }
+
+        long getEnviados() {
+            return enviados;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.serializacao.LocacaoCodec;
+import br.ce.wcaquino.utils.DataUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Custo de escrever e ler uma locacao com tres filmes. O dicionario e reiniciado a cada
+ * operacao, entao os nomes sao sempre gravados por extenso (pior caso do codec).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocacaoCodecBenchmark {
+
+    private final LocacaoCodec codec = new LocacaoCodec();
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private Locacao locacao;
+    private ByteBuffer serializada;
+
+    @Setup
+    public void criarLocacao() {
+        locacao = new Locacao();
+        locacao.setUsuario(new Usuario("Usuario 1"));
+        locacao.setFilmes(Arrays.asList(new Filme("Filme 1", 2, 4.0), new Filme("Filme 2", 1, 4.0),
+                new Filme("Filme 3", 5, 3.5)));
+        locacao.setDataLocacao(DataUtils.obterDataComDiferencaDias(0));
+        locacao.setDataRetorno(DataUtils.obterDataComDiferencaDias(1));
+        locacao.setValor(11.0);
+
+        codec.escreverLocacao(locacao, buffer);
+        buffer.flip();
+        serializada = ByteBuffer.allocate(buffer.remaining()).put(buffer);
+        serializada.flip();
+        codec.reiniciar();
+    }
+
+    @Benchmark
+    public ByteBuffer escrever() {
+        codec.reiniciar();
+        buffer.clear();
+        codec.escreverLocacao(locacao, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Locacao ler() {
+        codec.reiniciar();
+        return codec.lerLocacao(serializada.duplicate());
+    }
+}
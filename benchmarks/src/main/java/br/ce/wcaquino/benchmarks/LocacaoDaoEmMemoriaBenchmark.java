@@ -0,0 +1,59 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.daos.LocacaoDaoEmMemoria;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.utils.DataUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Vazao de salvar concorrente no DAO em memoria. O DAO e recriado a cada iteracao
+ * para que o heap nao cresca indefinidamente.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LocacaoDaoEmMemoriaBenchmark {
+
+    private LocacaoDaoEmMemoria dao;
+    private Locacao[] locacoes;
+
+    @Setup(Level.Trial)
+    public void criarLocacoes() {
+        locacoes = new Locacao[1024];
+        for (int i = 0; i < locacoes.length; i++) {
+            Locacao locacao = new Locacao();
+            locacao.setUsuario(new Usuario("Usuario " + (i % 100)));
+            locacao.setDataRetorno(DataUtils.obterDataComDiferencaDias(i % 30 - 15));
+            locacoes[i] = locacao;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void criarDao() {
+        dao = new LocacaoDaoEmMemoria();
+    }
+
+    @Benchmark
+    public void salvar() {
+        dao.salvar(locacoes[ThreadLocalRandom.current().nextInt(locacoes.length)]);
+    }
+}
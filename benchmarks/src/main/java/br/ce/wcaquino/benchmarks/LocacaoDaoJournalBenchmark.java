@@ -0,0 +1,82 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.daos.LocacaoDaoJournal;
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.utils.DataUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Latencia de salvar no journal mapeado em memoria, com e sem espera pelo fsync em grupo.
+ * O journal e recriado a cada iteracao num arquivo temporario.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LocacaoDaoJournalBenchmark {
+
+    @Param({"false", "true"})
+    private boolean aguardarSincronizacao;
+
+    private Path arquivo;
+    private LocacaoDaoJournal dao;
+    private Locacao[] locacoes;
+
+    @Setup(Level.Trial)
+    public void criarLocacoes() {
+        locacoes = new Locacao[1024];
+        for (int i = 0; i < locacoes.length; i++) {
+            Locacao locacao = new Locacao();
+            locacao.setUsuario(new Usuario("Usuario " + (i % 100)));
+            locacao.setFilmes(Arrays.asList(new Filme("Filme " + (i % 50), 2, 4.0)));
+            locacao.setDataLocacao(DataUtils.obterDataComDiferencaDias(0));
+            locacao.setDataRetorno(DataUtils.obterDataComDiferencaDias(i % 30 - 15));
+            locacao.setValor(4.0);
+            locacoes[i] = locacao;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void abrirJournal() throws IOException {
+        arquivo = Files.createTempFile("locacoes", ".journal");
+        Files.delete(arquivo);
+        dao = new LocacaoDaoJournal(arquivo, LocacaoDaoJournal.TAMANHO_REGIAO_PADRAO, 2, TimeUnit.MILLISECONDS,
+                aguardarSincronizacao);
+    }
+
+    @TearDown(Level.Iteration)
+    public void fecharJournal() throws IOException {
+        dao.close();
+        Files.deleteIfExists(arquivo);
+    }
+
+    @Benchmark
+    public void salvar() {
+        dao.salvar(locacoes[ThreadLocalRandom.current().nextInt(locacoes.length)]);
+    }
+}
@@ -0,0 +1,62 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
+import br.ce.wcaquino.exceptions.LocadoraException;
+import br.ce.wcaquino.metricas.RegistroMetricas;
+import br.ce.wcaquino.servicos.LocacaoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocacaoServiceBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int tamanhoCarrinho;
+
+    @Param({"false", "true"})
+    public boolean metricas;
+
+    private LocacaoService service;
+    private Usuario usuario;
+    private List<Filme> filmes;
+
+    @Setup
+    public void setup() {
+        service = new LocacaoService(new Dubles.LocacaoDaoFixo(), new Dubles.SpcServiceLiberado(),
+                new Dubles.EmailServiceContador());
+        if (metricas) {
+            service.setMetricas(new RegistroMetricas());
+        }
+        usuario = new Usuario("Usuario 1");
+        filmes = new ArrayList<>();
+        for (int i = 0; i < tamanhoCarrinho; i++) {
+            filmes.add(new Filme("Filme " + i, 10, 4.0));
+        }
+    }
+
+    @Benchmark
+    public LocacaoImutavel alugarFilmes() throws LocadoraException, FilmeSemEstoqueException {
+        return service.alugarFilmes(usuario, filmes);
+    }
+}
@@ -0,0 +1,80 @@
+package br.ce.wcaquino.benchmarks;
+
+import br.ce.wcaquino.daos.LocacaoDao;
+import br.ce.wcaquino.daos.LocacaoDaoEmMemoria;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.servicos.LocacaoService;
+import br.ce.wcaquino.utils.DataUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Metade das locacoes pendentes esta atrasada. As datas e usuarios sao compartilhados
+ * entre as locacoes para que 10M de registros caibam no heap.
+ * O backend "lista" devolve todas as pendentes; "memoria" usa o LocacaoDaoEmMemoria indexado por data de retorno.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NotificarAtrasosBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int pendentes;
+
+    @Param({"lista", "memoria"})
+    public String backend;
+
+    private LocacaoService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Date atrasada = DataUtils.obterDataComDiferencaDias(-2);
+        Date emDia = DataUtils.obterDataComDiferencaDias(2);
+        Usuario[] usuarios = new Usuario[1000];
+        for (int i = 0; i < usuarios.length; i++) {
+            usuarios[i] = new Usuario("Usuario " + i);
+        }
+
+        List<Locacao> locacoes = new ArrayList<>(pendentes);
+        for (int i = 0; i < pendentes; i++) {
+            Locacao locacao = new Locacao();
+            locacao.setUsuario(usuarios[i % usuarios.length]);
+            locacao.setDataRetorno(i % 2 == 0 ? atrasada : emDia);
+            locacoes.add(locacao);
+        }
+        LocacaoDao dao;
+        if ("memoria".equals(backend)) {
+            LocacaoDaoEmMemoria emMemoria = new LocacaoDaoEmMemoria();
+            emMemoria.salvarTodos(locacoes);
+            dao = emMemoria;
+        } else {
+            dao = new Dubles.LocacaoDaoFixo(locacoes);
+        }
+        service = new LocacaoService(dao, new Dubles.SpcServiceLiberado(),
+                new Dubles.EmailServiceContador());
+    }
+
+    @Benchmark
+    public void notificarAtrasos() {
+        service.notificarAtrasos();
+    }
+}
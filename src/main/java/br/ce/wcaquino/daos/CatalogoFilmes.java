@@ -0,0 +1,334 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Catalogo de filmes armazenado em colunas: estoque num {@link AtomicIntegerArray}, preco num
+ * 	{@link AtomicLongArray} (os bits de cada <code>double</code>) e nomes sem repeticao, todos indexados
+ * 	pelo id do filme (a ordem de cadastro, comecando em zero).
+ * 	Nao ha um objeto por titulo: {@link #getFilme(int)} devolve uma visao leve que le e escreve
+ * 	direto nas colunas, e quem so precisa de preco e estoque pode usar os ids, sem boxing.
+ *
+ * 	Leituras nao usam lock: cada posicao das colunas e lida e escrita com semantica volatil, entao
+ * 	uma alteracao e vista pelas leituras seguintes de qualquer thread. Cadastros e alteracoes sao
+ * 	sincronizados; quando as colunas crescem elas sao copiadas e publicadas antes da nova quantidade,
+ * 	entao um id valido sempre pode ser lido.
+ * 	A coluna de estoque e a fonte de verdade das copias disponiveis: {@link #reservar(int[])} retira
+ * 	as copias dela e uma {@link Reserva} nao confirmada as devolve.
+ */
+public class CatalogoFilmes {
+
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    private final Map<String, Integer> idsPorNome = new HashMap<>();
+    private volatile AtomicReferenceArray<String> nomes;
+    private volatile AtomicIntegerArray estoques;
+    private volatile AtomicLongArray precos;
+    private volatile int quantidade;
+
+    public CatalogoFilmes() {
+        this(CAPACIDADE_INICIAL);
+    }
+
+    public CatalogoFilmes(int capacidadeInicial) {
+        int capacidade = Math.max(1, capacidadeInicial);
+        this.nomes = new AtomicReferenceArray<>(capacidade);
+        this.estoques = new AtomicIntegerArray(capacidade);
+        this.precos = new AtomicLongArray(capacidade);
+    }
+
+    /**
+     * Cadastra o titulo ou, se ja existir, atualiza seu estoque e preco
+     *
+     * @return id do filme no catalogo
+     */
+    public synchronized int cadastrar(String nome, int estoque, double preco) {
+        if (nome == null) {
+            throw new IllegalArgumentException("Nome do filme nao informado");
+        }
+        validarEstoque(estoque);
+        Integer existente = idsPorNome.get(nome);
+        if (existente != null) {
+            estoques.set(existente, estoque);
+            precos.set(existente, Double.doubleToRawLongBits(preco));
+            return existente;
+        }
+
+        int id = quantidade;
+        if (id == nomes.length()) {
+            crescer(nomes.length() * 2);
+        }
+        nomes.set(id, nome);
+        estoques.set(id, estoque);
+        precos.set(id, Double.doubleToRawLongBits(preco));
+        idsPorNome.put(nome, id);
+        quantidade = id + 1;
+        return id;
+    }
+
+    public int cadastrar(Filme filme) {
+        return cadastrar(filme.getNome(), filme.getEstoque(), filme.getPrecoLocacao());
+    }
+
+    /**
+     * @return id do titulo ou <code>-1</code> quando ele nao esta no catalogo
+     */
+    public synchronized int buscarId(String nome) {
+        Integer id = idsPorNome.get(nome);
+        return id != null ? id : -1;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public String getNome(int id) {
+        validarId(id);
+        return nomes.get(id);
+    }
+
+    public int getEstoque(int id) {
+        validarId(id);
+        return estoques.get(id);
+    }
+
+    public double getPreco(int id) {
+        validarId(id);
+        return Double.longBitsToDouble(precos.get(id));
+    }
+
+    public synchronized void definirEstoque(int id, int estoque) {
+        validarId(id);
+        validarEstoque(estoque);
+        estoques.set(id, estoque);
+    }
+
+    public synchronized void definirPreco(int id, double preco) {
+        validarId(id);
+        precos.set(id, Double.doubleToRawLongBits(preco));
+    }
+
+    /**
+     * Reserva uma copia de cada id informado (ids repetidos reservam varias copias do titulo).
+     * 	A verificacao e a baixa acontecem sob o mesmo lock das demais alteracoes, entao a reserva
+     * 	nunca se perde numa copia das colunas feita por um cadastro concorrente.
+     *
+     * @return Reserva que deve ser confirmada apos a locacao ou liberada em caso de falha
+     * @throws FilmeSemEstoqueException quando algum titulo nao tem copias suficientes; nesse caso nada e reservado
+     * @throws IllegalArgumentException quando algum id nao existe no catalogo
+     */
+    public synchronized Reserva reservar(int[] ids) throws FilmeSemEstoqueException {
+        int[] ordenados = ids.clone();
+        Arrays.sort(ordenados);
+        for (int id : ordenados) {
+            validarId(id);
+        }
+        for (int i = 0; i < ordenados.length; ) {
+            int fim = proximoId(ordenados, i);
+            if (estoques.get(ordenados[i]) < fim - i) {
+                throw new FilmeSemEstoqueException();
+            }
+            i = fim;
+        }
+        for (int id : ordenados) {
+            estoques.decrementAndGet(id);
+        }
+        return new Reserva(this, ordenados);
+    }
+
+    private static int proximoId(int[] ordenados, int inicio) {
+        int fim = inicio + 1;
+        while (fim < ordenados.length && ordenados[fim] == ordenados[inicio]) {
+            fim++;
+        }
+        return fim;
+    }
+
+    private synchronized void devolver(int[] ids) {
+        for (int id : ids) {
+            estoques.incrementAndGet(id);
+        }
+    }
+
+    /**
+     * Altera o nome do titulo, mantendo o id
+     *
+     * @throws IllegalArgumentException quando o nome nao foi informado ou ja pertence a outro titulo
+     */
+    public synchronized void renomear(int id, String nome) {
+        validarId(id);
+        if (nome == null) {
+            throw new IllegalArgumentException("Nome do filme nao informado");
+        }
+        Integer existente = idsPorNome.get(nome);
+        if (existente != null && existente != id) {
+            throw new IllegalArgumentException("Ja existe um filme com o nome: " + nome);
+        }
+        idsPorNome.remove(nomes.get(id));
+        idsPorNome.put(nome, id);
+        nomes.set(id, nome);
+    }
+
+    /*
+     * Chamado com o lock. Durante a copia nao ha escritas, e as colunas novas so ficam visiveis
+     * 	para os ids ja existentes depois de preenchidas
+     */
+    private void crescer(int capacidade) {
+        AtomicReferenceArray<String> novosNomes = new AtomicReferenceArray<>(capacidade);
+        AtomicIntegerArray novosEstoques = new AtomicIntegerArray(capacidade);
+        AtomicLongArray novosPrecos = new AtomicLongArray(capacidade);
+        for (int i = 0; i < quantidade; i++) {
+            novosNomes.set(i, nomes.get(i));
+            novosEstoques.set(i, estoques.get(i));
+            novosPrecos.set(i, precos.get(i));
+        }
+        nomes = novosNomes;
+        estoques = novosEstoques;
+        precos = novosPrecos;
+    }
+
+    /**
+     * Retorna uma visao do filme ligada ao catalogo
+     */
+    public Filme getFilme(int id) {
+        validarId(id);
+        return new FilmeCatalogado(this, id);
+    }
+
+    /**
+     * Retorna as visoes dos filmes do carrinho, criadas sob demanda
+     */
+    public List<Filme> getFilmes(int[] ids) {
+        for (int id : ids) {
+            validarId(id);
+        }
+        int[] copia = ids.clone();
+        return new VisaoCarrinho(this, copia);
+    }
+
+    private void validarId(int id) {
+        if (id < 0 || id >= quantidade) {
+            throw new IllegalArgumentException("Filme nao encontrado no catalogo: " + id);
+        }
+    }
+
+    private static void validarEstoque(int estoque) {
+        if (estoque < 0) {
+            throw new IllegalArgumentException("Estoque nao pode ser negativo");
+        }
+    }
+
+    /**
+     * {@link Filme} cujos dados ficam no catalogo. Alteracoes de nome, estoque e preco sao gravadas
+     * 	no catalogo e valem para todas as visoes do mesmo titulo.
+     */
+    public static final class FilmeCatalogado extends Filme {
+
+        private final CatalogoFilmes catalogo;
+        private final int id;
+
+        private FilmeCatalogado(CatalogoFilmes catalogo, int id) {
+            this.catalogo = catalogo;
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public String getNome() {
+            return catalogo.getNome(id);
+        }
+
+        @Override
+        public void setNome(String nome) {
+            catalogo.renomear(id, nome);
+        }
+
+        @Override
+        public Integer getEstoque() {
+            return catalogo.getEstoque(id);
+        }
+
+        @Override
+        public void setEstoque(Integer estoque) {
+            catalogo.definirEstoque(id, estoque);
+        }
+
+        @Override
+        public Double getPrecoLocacao() {
+            return catalogo.getPreco(id);
+        }
+
+        @Override
+        public void setPrecoLocacao(Double precoLocacao) {
+            catalogo.definirPreco(id, precoLocacao);
+        }
+    }
+
+    /**
+     * Copias reservadas no catalogo para uma locacao. Uma reserva e confirmada ou liberada uma
+     * 	unica vez; chamadas posteriores nao tem efeito.
+     */
+    public static final class Reserva {
+
+        private final CatalogoFilmes catalogo;
+        private final int[] ids;
+        private final AtomicBoolean finalizada = new AtomicBoolean();
+
+        private Reserva(CatalogoFilmes catalogo, int[] ids) {
+            this.catalogo = catalogo;
+            this.ids = ids;
+        }
+
+        /**
+         * Mantem as copias fora do estoque, pois a locacao foi concluida
+         */
+        public void confirmar() {
+            finalizada.set(true);
+        }
+
+        /**
+         * Devolve as copias ao catalogo, caso a reserva ainda nao tenha sido confirmada
+         */
+        public void liberar() {
+            if (finalizada.compareAndSet(false, true)) {
+                catalogo.devolver(ids);
+            }
+        }
+    }
+
+    private static final class VisaoCarrinho extends AbstractList<Filme> implements RandomAccess {
+
+        private final CatalogoFilmes catalogo;
+        private final int[] ids;
+
+        private VisaoCarrinho(CatalogoFilmes catalogo, int[] ids) {
+            this.catalogo = catalogo;
+            this.ids = ids;
+        }
+
+        @Override
+        public Filme get(int indice) {
+            return new FilmeCatalogado(catalogo, ids[indice]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
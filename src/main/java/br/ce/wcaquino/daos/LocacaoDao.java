@@ -2,11 +2,50 @@ package br.ce.wcaquino.daos;
 
 import br.ce.wcaquino.entidades.Locacao;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LocacaoDao {
     void salvar(Locacao locacao);
 
+    /**
+     * Persiste varias locacoes de uma vez. Implementacoes com suporte a escrita em lote
+     * devem sobrescrever este metodo; o padrao apenas delega para {@link #salvar(Locacao)}.
+     */
+    default void salvarTodos(List<Locacao> locacoes) {
+        for (Locacao locacao : locacoes) {
+            salvar(locacao);
+        }
+    }
+
     List<Locacao> findLocacoesPendentes();
 
+    /**
+     * Percorre as locacoes pendentes com data de retorno anterior a <code>dataLimite</code>,
+     * 	entregando-as ao consumidor em lotes de no maximo <code>tamanhoLote</code> itens.
+     * 	Implementacoes devem aplicar o filtro na origem e ler os registros aos poucos, mantendo
+     * 	em memoria apenas o lote corrente. O padrao filtra o resultado de {@link #findLocacoesPendentes()}.
+     *
+     * @param dataLimite Locacoes com retorno anterior a esta data estao atrasadas
+     * @param tamanhoLote Quantidade maxima de locacoes por lote
+     * @param consumidor Recebe cada lote; a lista pode ser mantida pelo consumidor
+     */
+    default void findLocacoesAtrasadas(Date dataLimite, int tamanhoLote, Consumer<List<Locacao>> consumidor) {
+        List<Locacao> lote = new ArrayList<>(tamanhoLote);
+        for (Locacao locacao : findLocacoesPendentes()) {
+            if (locacao.getDataRetorno().before(dataLimite)) {
+                lote.add(locacao);
+                if (lote.size() == tamanhoLote) {
+                    consumidor.accept(lote);
+                    lote = new ArrayList<>(tamanhoLote);
+                }
+            }
+        }
+        if (!lote.isEmpty()) {
+            consumidor.accept(lote);
+        }
+    }
+
 }
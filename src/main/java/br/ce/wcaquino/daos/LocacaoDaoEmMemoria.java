@@ -0,0 +1,109 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Implementacao em memoria do {@link LocacaoDao}, segura para uso concorrente sem lock global.
+ * 	As locacoes ficam indexadas pela data de retorno (indice ordenado), o que transforma a busca
+ * 	de atrasadas numa consulta por intervalo, e pelo usuario (indice por hash).
+ * 	A data de retorno e indexada no momento em que a locacao e salva.
+ */
+public class LocacaoDaoEmMemoria implements LocacaoDaoRemovivel {
+
+    private final AtomicLong sequencia = new AtomicLong();
+    private final ConcurrentSkipListMap<ChaveRetorno, Locacao> porDataRetorno = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Usuario, Queue<Locacao>> porUsuario = new ConcurrentHashMap<>();
+
+    @Override
+    public void salvar(Locacao locacao) {
+        Date dataRetorno = locacao.getDataRetorno();
+        long retorno = dataRetorno != null ? dataRetorno.getTime() : Long.MAX_VALUE;
+        porDataRetorno.put(new ChaveRetorno(retorno, sequencia.incrementAndGet()), locacao);
+        if (locacao.getUsuario() != null) {
+            porUsuario.computeIfAbsent(locacao.getUsuario(), usuario -> new ConcurrentLinkedQueue<>()).add(locacao);
+        }
+    }
+
+    @Override
+    public boolean remover(Locacao locacao) {
+        Date dataRetorno = locacao.getDataRetorno();
+        long retorno = dataRetorno != null ? dataRetorno.getTime() : Long.MAX_VALUE;
+        ConcurrentNavigableMap<ChaveRetorno, Locacao> mesmoRetorno = porDataRetorno.subMap(
+                new ChaveRetorno(retorno, Long.MIN_VALUE), true, new ChaveRetorno(retorno, Long.MAX_VALUE), true);
+        for (Map.Entry<ChaveRetorno, Locacao> entrada : mesmoRetorno.entrySet()) {
+            if (entrada.getValue() == locacao && porDataRetorno.remove(entrada.getKey(), locacao)) {
+                Queue<Locacao> doUsuario = locacao.getUsuario() != null ? porUsuario.get(locacao.getUsuario()) : null;
+                if (doUsuario != null) {
+                    doUsuario.remove(locacao);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<Locacao> findLocacoesPendentes() {
+        return new ArrayList<>(porDataRetorno.values());
+    }
+
+    @Override
+    public void findLocacoesAtrasadas(Date dataLimite, int tamanhoLote, Consumer<List<Locacao>> consumidor) {
+        ConcurrentNavigableMap<ChaveRetorno, Locacao> atrasadas =
+                porDataRetorno.headMap(new ChaveRetorno(dataLimite.getTime(), Long.MIN_VALUE));
+        List<Locacao> lote = new ArrayList<>(tamanhoLote);
+        for (Locacao locacao : atrasadas.values()) {
+            lote.add(locacao);
+            if (lote.size() == tamanhoLote) {
+                consumidor.accept(lote);
+                lote = new ArrayList<>(tamanhoLote);
+            }
+        }
+        if (!lote.isEmpty()) {
+            consumidor.accept(lote);
+        }
+    }
+
+    public List<Locacao> findLocacoesPorUsuario(Usuario usuario) {
+        Queue<Locacao> locacoes = porUsuario.get(usuario);
+        return locacoes != null ? new ArrayList<>(locacoes) : Collections.emptyList();
+    }
+
+    public int getQuantidade() {
+        return porDataRetorno.size();
+    }
+
+    /*
+     * A sequencia desempata locacoes com a mesma data de retorno
+     */
+    private static final class ChaveRetorno implements Comparable<ChaveRetorno> {
+        private final long retorno;
+        private final long sequencia;
+
+        private ChaveRetorno(long retorno, long sequencia) {
+            this.retorno = retorno;
+            this.sequencia = sequencia;
+        }
+
+        @Override
+        public int compareTo(ChaveRetorno outra) {
+            int comparacao = Long.compare(retorno, outra.retorno);
+            return comparacao != 0 ? comparacao : Long.compare(sequencia, outra.sequencia);
+        }
+    }
+}
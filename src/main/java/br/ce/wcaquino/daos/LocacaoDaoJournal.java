@@ -0,0 +1,458 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.serializacao.LocacaoCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * {@link LocacaoDao} persistente que grava cada locacao num journal binario somente de acrescimo,
+ * 	mapeado em memoria. Gravar e copiar alguns bytes para o mapeamento; a descarga para o disco
+ * 	(fsync) e feita em grupo por uma thread de fundo, a cada intervalo ou quando alguem aguarda
+ * 	a sincronizacao, de modo que muitas gravacoes dividem o mesmo fsync.
+ * 	Ao abrir um journal existente as locacoes sao reaplicadas num {@link LocacaoDaoEmMemoria},
+ * 	que atende as consultas.
+ *
+ * 	Formato: cabecalho (magico, versao, tamanho da regiao) seguido de registros
+ * 	[tamanho][crc32][dados], com os dados no formato do {@link LocacaoCodec}. Uma remocao e gravada
+ * 	como um registro [0][numero do registro removido]; o primeiro byte do codec (a versao) nunca e zero.
+ * 	Para isso o journal guarda o numero do registro de cada locacao em memoria. O dicionario de nomes
+ * 	do codec abrange o journal inteiro, por isso os registros sao codificados em ordem, com o lock.
+ * 	O arquivo e mapeado em regioes de tamanho fixo e um registro nunca atravessa duas regioes.
+ */
+public class LocacaoDaoJournal implements LocacaoDaoRemovivel, Closeable {
+
+    static final int MAGICO = 0x4C4F434A;
+    static final int VERSAO = 3;
+
+    // journals da versao 2 nao tem remocoes e sao lidos como estao; o cabecalho e atualizado ao abrir
+    private static final int VERSAO_SEM_REMOCOES = 2;
+    private static final byte REMOCAO = 0;
+
+    private static final int TAMANHO_CABECALHO = 12;
+    private static final int TAMANHO_CABECALHO_REGISTRO = 8;
+    private static final int FIM_REGIAO = -1;
+
+    public static final int TAMANHO_REGIAO_PADRAO = 64 * 1024 * 1024;
+
+    private final FileChannel canal;
+    private final int tamanhoRegiao;
+    private final long intervaloSincronizacaoMillis;
+    private final boolean aguardarSincronizacao;
+    private final LocacaoDaoEmMemoria indice = new LocacaoDaoEmMemoria();
+
+    // protegidos pelo lock da instancia
+    private final LocacaoCodec codec = new LocacaoCodec();
+    private final Map<Locacao, Long> registros = new IdentityHashMap<>();
+    private MappedByteBuffer regiao;
+    private long inicioRegiao;
+    private long escritos;
+
+    // protegidos por lockSincronizacao; quem aguarda espera em "sincronizado" e o sincronizador
+    // em "sincronizacaoNecessaria", para que um nao acorde o outro a toa
+    private final Lock lockSincronizacao = new ReentrantLock();
+    private final Condition sincronizacaoNecessaria = lockSincronizacao.newCondition();
+    private final Condition sincronizado = lockSincronizacao.newCondition();
+    private long sincronizados;
+    private boolean sincronizacaoPedida;
+    private volatile boolean aberto = true;
+
+    private final Thread sincronizador;
+
+    public LocacaoDaoJournal(Path arquivo) throws IOException {
+        this(arquivo, TAMANHO_REGIAO_PADRAO, 10, TimeUnit.MILLISECONDS, false);
+    }
+
+    /**
+     * @param tamanhoRegiao tamanho de cada trecho mapeado do arquivo; limita o tamanho de um registro
+     * @param intervaloSincronizacao intervalo maximo entre duas descargas para o disco
+     * @param aguardarSincronizacao quando <code>true</code>, salvar so retorna depois que a locacao
+     * 	estiver no disco; caso contrario podem ser perdidas as gravacoes do ultimo intervalo
+     */
+    public LocacaoDaoJournal(Path arquivo, int tamanhoRegiao, long intervaloSincronizacao, TimeUnit unidade,
+                             boolean aguardarSincronizacao) throws IOException {
+        if (tamanhoRegiao <= TAMANHO_CABECALHO + TAMANHO_CABECALHO_REGISTRO) {
+            throw new IllegalArgumentException("Tamanho da regiao muito pequeno");
+        }
+        this.intervaloSincronizacaoMillis = Math.max(1, unidade.toMillis(intervaloSincronizacao));
+        this.aguardarSincronizacao = aguardarSincronizacao;
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.tamanhoRegiao = abrir(tamanhoRegiao);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+        this.sincronizador = new Thread(this::sincronizarPeriodicamente, "locacao-journal-sync");
+        this.sincronizador.setDaemon(true);
+        this.sincronizador.start();
+    }
+
+    @Override
+    public void salvar(Locacao locacao) {
+        long sequencia;
+        synchronized (this) {
+            verificarAberto();
+            sequencia = acrescentar(locacao);
+        }
+        indice.salvar(locacao);
+        if (aguardarSincronizacao) {
+            aguardarSincronizacao(sequencia);
+        }
+    }
+
+    /**
+     * Grava um registro de remocao; ao reabrir o journal a locacao nao e reaplicada
+     */
+    @Override
+    public boolean remover(Locacao locacao) {
+        long sequencia;
+        synchronized (this) {
+            verificarAberto();
+            Long registro = registros.get(locacao);
+            if (registro == null) {
+                return false;
+            }
+            sequencia = acrescentarRegistro(destino -> destino.put(REMOCAO).putLong(registro));
+            registros.remove(locacao);
+            indice.remover(locacao);
+        }
+        if (aguardarSincronizacao) {
+            aguardarSincronizacao(sequencia);
+        }
+        return true;
+    }
+
+    /**
+     * Grava todas as locacoes com uma unica aquisicao do lock e, se configurado, um unico fsync
+     */
+    @Override
+    public void salvarTodos(List<Locacao> locacoes) {
+        long sequencia;
+        synchronized (this) {
+            verificarAberto();
+            sequencia = escritos;
+            for (Locacao locacao : locacoes) {
+                sequencia = acrescentar(locacao);
+            }
+        }
+        for (Locacao locacao : locacoes) {
+            indice.salvar(locacao);
+        }
+        if (aguardarSincronizacao) {
+            aguardarSincronizacao(sequencia);
+        }
+    }
+
+    @Override
+    public List<Locacao> findLocacoesPendentes() {
+        return indice.findLocacoesPendentes();
+    }
+
+    @Override
+    public void findLocacoesAtrasadas(Date dataLimite, int tamanhoLote, Consumer<List<Locacao>> consumidor) {
+        indice.findLocacoesAtrasadas(dataLimite, tamanhoLote, consumidor);
+    }
+
+    public List<Locacao> findLocacoesPorUsuario(Usuario usuario) {
+        return indice.findLocacoesPorUsuario(usuario);
+    }
+
+    public int getQuantidade() {
+        return indice.getQuantidade();
+    }
+
+    /**
+     * Descarrega para o disco tudo o que ja foi gravado, sem esperar o proximo intervalo
+     */
+    public void sincronizar() {
+        long alvo;
+        synchronized (this) {
+            alvo = escritos;
+        }
+        aguardarSincronizacao(alvo);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!aberto) {
+                return;
+            }
+            aberto = false;
+        }
+        lockSincronizacao.lock();
+        try {
+            sincronizacaoNecessaria.signal();
+        } finally {
+            lockSincronizacao.unlock();
+        }
+        try {
+            sincronizador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        descarregar();
+        canal.close();
+    }
+
+    /*
+     * Le ou cria o cabecalho e reaplica os registros validos. O primeiro registro incompleto
+     * ou corrompido (gravacao interrompida) marca o fim do journal; o restante da regiao e zerado.
+     */
+    private int abrir(int tamanhoRegiaoPadrao) throws IOException {
+        if (canal.size() < TAMANHO_CABECALHO) {
+            inicioRegiao = 0;
+            regiao = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoRegiaoPadrao);
+            regiao.putInt(MAGICO).putInt(VERSAO).putInt(tamanhoRegiaoPadrao);
+            regiao.force();
+            return tamanhoRegiaoPadrao;
+        }
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        canal.read(cabecalho, 0);
+        cabecalho.flip();
+        if (cabecalho.getInt() != MAGICO) {
+            throw new IOException("Arquivo nao e um journal de locacoes");
+        }
+        int versao = cabecalho.getInt();
+        if (versao != VERSAO && versao != VERSAO_SEM_REMOCOES) {
+            throw new IOException("Versao do journal nao suportada: " + versao);
+        }
+        int tamanho = cabecalho.getInt();
+
+        inicioRegiao = 0;
+        regiao = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+        regiao.putInt(4, VERSAO);
+        regiao.position(TAMANHO_CABECALHO);
+        // locacoes reaplicadas por numero de registro, para aplicar as remocoes
+        Map<Long, Locacao> porRegistro = new HashMap<>();
+        while (true) {
+            if (regiao.remaining() < TAMANHO_CABECALHO_REGISTRO) {
+                if (!proximaRegiaoExiste(tamanho)) {
+                    break;
+                }
+                continue;
+            }
+            int inicio = regiao.position();
+            int tamanhoRegistro = regiao.getInt();
+            if (tamanhoRegistro == FIM_REGIAO) {
+                if (!proximaRegiaoExiste(tamanho)) {
+                    regiao.position(inicio);
+                    break;
+                }
+                continue;
+            }
+            int crc = regiao.getInt();
+            if (tamanhoRegistro <= 0 || tamanhoRegistro > regiao.remaining()) {
+                regiao.position(inicio);
+                break;
+            }
+            ByteBuffer dados = regiao.slice();
+            dados.limit(tamanhoRegistro);
+            if (crc32(dados.duplicate()) != crc) {
+                regiao.position(inicio);
+                break;
+            }
+            try {
+                if (dados.get(0) == REMOCAO) {
+                    Locacao removida = porRegistro.remove(dados.getLong(1));
+                    if (removida != null) {
+                        registros.remove(removida);
+                        indice.remover(removida);
+                    }
+                } else {
+                    Locacao locacao = codec.lerLocacao(dados);
+                    indice.salvar(locacao);
+                    registros.put(locacao, escritos + 1);
+                    porRegistro.put(escritos + 1, locacao);
+                }
+            } catch (RuntimeException e) {
+                regiao.position(inicio);
+                break;
+            }
+            regiao.position(inicio + TAMANHO_CABECALHO_REGISTRO + tamanhoRegistro);
+            escritos++;
+        }
+
+        for (int i = regiao.position(); i < regiao.limit(); i++) {
+            regiao.put(i, (byte) 0);
+        }
+        canal.truncate(inicioRegiao + tamanho);
+        regiao.force();
+        sincronizados = escritos;
+        return tamanho;
+    }
+
+    private boolean proximaRegiaoExiste(int tamanho) throws IOException {
+        long proxima = inicioRegiao + tamanho;
+        if (canal.size() <= proxima) {
+            return false;
+        }
+        inicioRegiao = proxima;
+        regiao = canal.map(FileChannel.MapMode.READ_WRITE, inicioRegiao, tamanho);
+        return true;
+    }
+
+    /*
+     * Chamado com o lock da instancia. A locacao e codificada direto na regiao mapeada;
+     * se nao couber, o codec desfaz o dicionario e a gravacao e refeita na proxima regiao.
+     */
+    private long acrescentar(Locacao locacao) {
+        long sequencia = acrescentarRegistro(destino -> codec.escreverLocacao(locacao, destino));
+        registros.put(locacao, sequencia);
+        return sequencia;
+    }
+
+    private long acrescentarRegistro(Consumer<ByteBuffer> escritor) {
+        while (true) {
+            int inicio = regiao.position();
+            if (regiao.remaining() < TAMANHO_CABECALHO_REGISTRO) {
+                avancarRegiao();
+                continue;
+            }
+            try {
+                regiao.position(inicio + TAMANHO_CABECALHO_REGISTRO);
+                escritor.accept(regiao);
+            } catch (BufferOverflowException e) {
+                regiao.position(inicio);
+                if (inicio == inicioDadosRegiao()) {
+                    throw new IllegalArgumentException("Registro excede o tamanho da regiao do journal");
+                }
+                avancarRegiao();
+                continue;
+            } catch (RuntimeException e) {
+                regiao.position(inicio);
+                throw e;
+            }
+            int fim = regiao.position();
+            ByteBuffer dados = regiao.duplicate();
+            dados.position(inicio + TAMANHO_CABECALHO_REGISTRO).limit(fim);
+            regiao.putInt(inicio, fim - inicio - TAMANHO_CABECALHO_REGISTRO);
+            regiao.putInt(inicio + 4, crc32(dados));
+            return ++escritos;
+        }
+    }
+
+    private int inicioDadosRegiao() {
+        return inicioRegiao == 0 ? TAMANHO_CABECALHO : 0;
+    }
+
+    private void avancarRegiao() {
+        if (regiao.remaining() >= 4) {
+            regiao.putInt(FIM_REGIAO);
+        }
+        regiao.force();
+        try {
+            inicioRegiao += tamanhoRegiao;
+            regiao = canal.map(FileChannel.MapMode.READ_WRITE, inicioRegiao, tamanhoRegiao);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao estender o journal de locacoes", e);
+        }
+    }
+
+    /*
+     * So o primeiro a pedir a sincronizacao acorda o sincronizador; os demais apenas aguardam a descarga
+     */
+    private void aguardarSincronizacao(long sequencia) {
+        boolean interrompida = false;
+        lockSincronizacao.lock();
+        try {
+            while (sincronizados < sequencia) {
+                if (!sincronizacaoPedida) {
+                    sincronizacaoPedida = true;
+                    sincronizacaoNecessaria.signal();
+                }
+                try {
+                    sincronizado.await();
+                } catch (InterruptedException e) {
+                    interrompida = true;
+                }
+            }
+        } finally {
+            lockSincronizacao.unlock();
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sincronizarPeriodicamente() {
+        while (aberto) {
+            lockSincronizacao.lock();
+            try {
+                if (!sincronizacaoPedida && aberto) {
+                    sincronizacaoNecessaria.await(intervaloSincronizacaoMillis, TimeUnit.MILLISECONDS);
+                }
+                sincronizacaoPedida = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lockSincronizacao.unlock();
+            }
+            descarregar();
+        }
+    }
+
+    /*
+     * Um unico force atende todas as gravacoes feitas ate aqui; as regioes anteriores
+     * ja foram descarregadas ao avancar de regiao.
+     */
+    private void descarregar() {
+        long alvo;
+        MappedByteBuffer atual;
+        synchronized (this) {
+            alvo = escritos;
+            atual = regiao;
+        }
+        lockSincronizacao.lock();
+        try {
+            if (alvo <= sincronizados) {
+                sincronizado.signalAll();
+                return;
+            }
+        } finally {
+            lockSincronizacao.unlock();
+        }
+        atual.force();
+        lockSincronizacao.lock();
+        try {
+            sincronizados = Math.max(sincronizados, alvo);
+            sincronizado.signalAll();
+        } finally {
+            lockSincronizacao.unlock();
+        }
+    }
+
+    private void verificarAberto() {
+        if (!aberto) {
+            throw new IllegalStateException("Journal de locacoes fechado");
+        }
+    }
+
+    private static int crc32(ByteBuffer dados) {
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        return (int) crc.getValue();
+    }
+}
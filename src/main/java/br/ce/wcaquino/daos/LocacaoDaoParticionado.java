@@ -0,0 +1,363 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link LocacaoDao} que distribui as locacoes entre varias particoes pelo usuario, com hash consistente:
+ * 	cada particao ocupa varios pontos (nos virtuais) de um anel de hash e o usuario pertence a primeira
+ * 	particao a partir do hash do seu {@link Usuario#hashCode()}. Todas as locacoes de um usuario ficam
+ * 	na mesma particao.
+ *
+ * 	Consultas e gravacoes que envolvem varias particoes sao feitas em paralelo no executor configurado;
+ * 	o padrao tem uma thread por particao e e encerrado por {@link #close()}. A busca de atrasadas
+ * 	percorre uma particao por vez na thread de quem consulta e sem o lock, pois o consumidor pode
+ * 	demorar (envio de e-mails): gravacoes e rebalanceamentos seguem enquanto ele trabalha.
+ *
+ * 	Adicionar ou remover uma particao move apenas as locacoes dos usuarios que mudaram de dono (cerca
+ * 	de 1/N do total) e e desfeito se alguma gravacao falhar; por isso as particoes sao
+ * 	{@link LocacaoDaoRemovivel}. Durante o rebalanceamento as demais operacoes aguardam.
+ */
+public class LocacaoDaoParticionado implements LocacaoDaoRemovivel, Closeable {
+
+    public static final int NOS_VIRTUAIS_PADRAO = 128;
+
+    private final int nosVirtuais;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, LocacaoDaoRemovivel> particoes = new LinkedHashMap<>();
+    private final NavigableMap<Integer, LocacaoDaoRemovivel> anel = new TreeMap<>();
+    // uma thread por particao: cada consulta usa no maximo uma tarefa por particao
+    private final ThreadPoolExecutor executorPadrao = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), tarefa -> {
+        Thread thread = new Thread(tarefa, "locacao-particao");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Executor executor = executorPadrao;
+
+    public LocacaoDaoParticionado() {
+        this(NOS_VIRTUAIS_PADRAO);
+    }
+
+    public LocacaoDaoParticionado(int nosVirtuais) {
+        if (nosVirtuais <= 0) {
+            throw new IllegalArgumentException("Quantidade de nos virtuais deve ser positiva");
+        }
+        this.nosVirtuais = nosVirtuais;
+        this.executorPadrao.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Executor das consultas e gravacoes em paralelo nas particoes. Quem chama aguarda as tarefas,
+     * 	entao o executor nao deve ser o mesmo de quem usa este DAO.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adiciona a particao e move para ela as locacoes dos usuarios que passam a pertencer a ela.
+     * 	Se alguma gravacao ou remocao falhar, a adicao e desfeita e a excecao propagada.
+     *
+     * @return quantidade de locacoes movidas
+     */
+    public int adicionarParticao(String id, LocacaoDaoRemovivel particao) {
+        lock.writeLock().lock();
+        try {
+            if (particoes.containsKey(id)) {
+                throw new IllegalArgumentException("Particao ja existe: " + id);
+            }
+            List<LocacaoDaoRemovivel> existentes = new ArrayList<>(particoes.values());
+            particoes.put(id, particao);
+            for (int no = 0; no < nosVirtuais; no++) {
+                anel.putIfAbsent(posicao(id + "#" + no), particao);
+            }
+
+            // locacoes ja copiadas para a nova particao; apenas a ultima pode ainda estar na origem
+            List<Locacao> copiadas = new ArrayList<>();
+            List<LocacaoDaoRemovivel> origens = new ArrayList<>();
+            int removidas = 0;
+            try {
+                for (LocacaoDaoRemovivel origem : existentes) {
+                    for (Locacao locacao : origem.findLocacoesPendentes()) {
+                        if (donoDe(locacao.getUsuario()) == particao) {
+                            particao.salvar(locacao);
+                            copiadas.add(locacao);
+                            origens.add(origem);
+                            origem.remover(locacao);
+                            removidas++;
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                desfazerAdicao(id, particao, copiadas, origens, removidas);
+                throw e;
+            }
+            dimensionarExecutor();
+            return removidas;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void desfazerAdicao(String id, LocacaoDaoRemovivel particao, List<Locacao> copiadas,
+                                List<LocacaoDaoRemovivel> origens, int removidas) {
+        particoes.remove(id);
+        anel.values().removeIf(dono -> dono == particao);
+        for (int i = 0; i < copiadas.size(); i++) {
+            particao.remover(copiadas.get(i));
+            if (i < removidas) {
+                origens.get(i).salvar(copiadas.get(i));
+            }
+        }
+    }
+
+    /**
+     * Remove a particao e grava as locacoes dela nas particoes restantes.
+     * 	Se alguma gravacao falhar, as copias ja feitas sao removidas, a particao volta ao anel
+     * 	e a excecao e propagada.
+     *
+     * @return a particao removida, ainda com as suas locacoes
+     */
+    public LocacaoDaoRemovivel removerParticao(String id) {
+        lock.writeLock().lock();
+        try {
+            LocacaoDaoRemovivel removida = particoes.get(id);
+            if (removida == null) {
+                throw new IllegalArgumentException("Particao nao encontrada: " + id);
+            }
+            if (particoes.size() == 1) {
+                throw new IllegalStateException("Nao e possivel remover a ultima particao");
+            }
+            Map<String, LocacaoDaoRemovivel> particoesAnteriores = new LinkedHashMap<>(particoes);
+            Map<Integer, LocacaoDaoRemovivel> pontosAnteriores = new TreeMap<>(anel);
+            particoes.remove(id);
+            anel.values().removeIf(particao -> particao == removida);
+
+            List<Locacao> copiadas = new ArrayList<>();
+            List<LocacaoDaoRemovivel> destinos = new ArrayList<>();
+            try {
+                for (Locacao locacao : removida.findLocacoesPendentes()) {
+                    LocacaoDaoRemovivel destino = donoDe(locacao.getUsuario());
+                    destino.salvar(locacao);
+                    copiadas.add(locacao);
+                    destinos.add(destino);
+                }
+            } catch (RuntimeException e) {
+                for (int i = 0; i < copiadas.size(); i++) {
+                    destinos.get(i).remover(copiadas.get(i));
+                }
+                particoes.clear();
+                particoes.putAll(particoesAnteriores);
+                anel.clear();
+                anel.putAll(pontosAnteriores);
+                throw e;
+            }
+            dimensionarExecutor();
+            return removida;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a particao responsavel pelas locacoes do usuario
+     */
+    public LocacaoDaoRemovivel getParticao(Usuario usuario) {
+        lock.readLock().lock();
+        try {
+            return donoDe(usuario);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getQuantidadeParticoes() {
+        lock.readLock().lock();
+        try {
+            return particoes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void salvar(Locacao locacao) {
+        lock.readLock().lock();
+        try {
+            donoDe(locacao.getUsuario()).salvar(locacao);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrupa as locacoes por particao e grava os grupos em paralelo, cada um com um unico
+     * 	{@link LocacaoDao#salvarTodos(List)}
+     */
+    @Override
+    public void salvarTodos(List<Locacao> locacoes) {
+        lock.readLock().lock();
+        try {
+            Map<LocacaoDao, List<Locacao>> porParticao = new IdentityHashMap<>();
+            for (Locacao locacao : locacoes) {
+                porParticao.computeIfAbsent(donoDe(locacao.getUsuario()), particao -> new ArrayList<>()).add(locacao);
+            }
+            if (porParticao.size() == 1) {
+                Map.Entry<LocacaoDao, List<Locacao>> unica = porParticao.entrySet().iterator().next();
+                unica.getKey().salvarTodos(unica.getValue());
+                return;
+            }
+            List<CompletableFuture<Void>> gravacoes = new ArrayList<>(porParticao.size());
+            for (Map.Entry<LocacaoDao, List<Locacao>> grupo : porParticao.entrySet()) {
+                gravacoes.add(CompletableFuture.runAsync(() -> grupo.getKey().salvarTodos(grupo.getValue()), executor));
+            }
+            for (CompletableFuture<Void> gravacao : gravacoes) {
+                aguardar(gravacao);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remover(Locacao locacao) {
+        lock.readLock().lock();
+        try {
+            return donoDe(locacao.getUsuario()).remover(locacao);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Locacao> findLocacoesPendentes() {
+        lock.readLock().lock();
+        try {
+            List<CompletableFuture<List<Locacao>>> consultas = new ArrayList<>(particoes.size());
+            for (LocacaoDao particao : particoes.values()) {
+                consultas.add(CompletableFuture.supplyAsync(particao::findLocacoesPendentes, executor));
+            }
+            List<Locacao> pendentes = new ArrayList<>();
+            for (CompletableFuture<List<Locacao>> consulta : consultas) {
+                pendentes.addAll(aguardar(consulta));
+            }
+            return pendentes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Percorre as particoes uma a uma na thread de quem consulta, sem segurar o lock enquanto o
+     * 	consumidor processa os lotes. Particoes adicionadas durante a busca tambem sao percorridas,
+     * 	de modo que uma locacao movida por um rebalanceamento concorrente pode ser entregue duas vezes.
+     */
+    @Override
+    public void findLocacoesAtrasadas(Date dataLimite, int tamanhoLote, Consumer<List<Locacao>> consumidor) {
+        Set<LocacaoDao> percorridas = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean novas = true;
+        while (novas) {
+            novas = false;
+            for (LocacaoDao particao : copiarParticoes()) {
+                if (percorridas.add(particao)) {
+                    novas = true;
+                    particao.findLocacoesAtrasadas(dataLimite, tamanhoLote, consumidor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encerra o executor padrao; um executor configurado por {@link #setExecutor(Executor)} nao e afetado
+     */
+    @Override
+    public void close() {
+        executorPadrao.shutdown();
+    }
+
+    /*
+     * Chamado com o lock de escrita. Ao crescer o maximo vem antes do minimo, e ao diminuir depois,
+     * para que o minimo nunca passe do maximo
+     */
+    private void dimensionarExecutor() {
+        int threads = Math.max(1, particoes.size());
+        if (threads > executorPadrao.getMaximumPoolSize()) {
+            executorPadrao.setMaximumPoolSize(threads);
+            executorPadrao.setCorePoolSize(threads);
+        } else {
+            executorPadrao.setCorePoolSize(threads);
+            executorPadrao.setMaximumPoolSize(threads);
+        }
+    }
+
+    private List<LocacaoDao> copiarParticoes() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(particoes.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private LocacaoDaoRemovivel donoDe(Usuario usuario) {
+        if (anel.isEmpty()) {
+            throw new IllegalStateException("Nenhuma particao configurada");
+        }
+        Map.Entry<Integer, LocacaoDaoRemovivel> dono = anel.ceilingEntry(posicao(usuario != null ? usuario.hashCode() : 0));
+        return dono != null ? dono.getValue() : anel.firstEntry().getValue();
+    }
+
+    private static int posicao(String no) {
+        return posicao(no.hashCode());
+    }
+
+    /*
+     * Finalizador do MurmurHash3: espalha hashes proximos (como os de nomes parecidos) pelo anel
+     */
+    private static int posicao(int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static <T> T aguardar(CompletableFuture<T> consulta) {
+        try {
+            return consulta.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+
+/**
+ * {@link LocacaoDao} que tambem remove locacoes, necessario para mover locacoes entre armazenamentos
+ */
+public interface LocacaoDaoRemovivel extends LocacaoDao {
+
+    /**
+     * Remove a locacao (a mesma instancia salva)
+     *
+     * @return <code>true</code> se a locacao estava armazenada
+     */
+    boolean remover(Locacao locacao);
+}
@@ -0,0 +1,60 @@
+package br.ce.wcaquino.entidades;
+
+import java.util.Objects;
+
+/**
+ * Nome e preco de um {@link Filme} no momento da locacao. Alteracoes posteriores no filme
+ * 	(ou no catalogo, quando o filme e uma visao dele) nao afetam a locacao.
+ */
+public final class FilmeLocado {
+
+	private final String nome;
+	private final Double precoLocacao;
+
+	public FilmeLocado(String nome, Double precoLocacao) {
+		this.nome = nome;
+		this.precoLocacao = precoLocacao;
+	}
+
+	public static FilmeLocado de(Filme filme) {
+		return new FilmeLocado(filme.getNome(), filme.getPrecoLocacao());
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public Double getPrecoLocacao() {
+		return precoLocacao;
+	}
+
+	/**
+	 * Retorna um {@link Filme} comum com o nome e o preco; o estoque fica em branco
+	 */
+	public Filme paraBean() {
+		return new Filme(nome, null, precoLocacao);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		FilmeLocado filme = (FilmeLocado) o;
+
+		return Objects.equals(nome, filme.nome) && Objects.equals(precoLocacao, filme.precoLocacao);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Objects.hashCode(nome) + Objects.hashCode(precoLocacao);
+	}
+
+	@Override
+	public String toString() {
+		return "FilmeLocado{" +
+				"nome='" + nome + '\'' +
+				", precoLocacao=" + precoLocacao +
+				'}';
+	}
+}
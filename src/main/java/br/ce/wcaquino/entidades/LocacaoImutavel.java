@@ -0,0 +1,197 @@
+package br.ce.wcaquino.entidades;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Locacao imutavel, criada pelo {@link Construtor}. Todos os campos sao finais, entao a
+ * 	instancia pode ser compartilhada entre threads ou guardada em cache sem sincronizacao nem copia.
+ * 	As datas ficam como {@link Instant}, o valor como <code>double</code> e cada filme como um
+ * 	{@link FilmeLocado}, copiado ao construir a locacao; os getters de data devolvem um {@link Date}
+ * 	novo a cada chamada e a lista de filmes nao pode ser alterada.
+ *
+ * 	Nao e uma {@link Locacao}: os DAOs continuam gravando o bean, obtido com {@link #paraBean()},
+ * 	e {@link #de(Locacao)} faz o caminho inverso. Duas locacoes imutaveis com os mesmos dados sao iguais.
+ */
+public final class LocacaoImutavel {
+
+	private final Usuario usuario;
+	private final List<FilmeLocado> filmes;
+	private final Instant dataLocacao;
+	private final Instant dataRetorno;
+	private final double valor;
+
+	private LocacaoImutavel(Construtor construtor) {
+		this.usuario = construtor.usuario;
+		this.filmes = construtor.filmes;
+		this.dataLocacao = construtor.dataLocacao;
+		this.dataRetorno = construtor.dataRetorno;
+		this.valor = construtor.valor;
+	}
+
+	public static Construtor nova() {
+		return new Construtor();
+	}
+
+	/**
+	 * Retorna uma copia imutavel da locacao
+	 */
+	public static LocacaoImutavel de(Locacao locacao) {
+		Construtor construtor = nova()
+				.comUsuario(locacao.getUsuario())
+				.comValor(locacao.getValor() != null ? locacao.getValor() : 0.0);
+		if (locacao.getFilmes() != null) {
+			construtor.comFilmes(locacao.getFilmes());
+		}
+		if (locacao.getDataLocacao() != null) {
+			construtor.comDataLocacao(locacao.getDataLocacao().toInstant());
+		}
+		if (locacao.getDataRetorno() != null) {
+			construtor.comDataRetorno(locacao.getDataRetorno().toInstant());
+		}
+		return construtor.construir();
+	}
+
+	/**
+	 * Retorna um construtor preenchido com os dados desta locacao
+	 */
+	public Construtor copiar() {
+		Construtor construtor = new Construtor();
+		construtor.usuario = usuario;
+		construtor.filmes = filmes;
+		construtor.dataLocacao = dataLocacao;
+		construtor.dataRetorno = dataRetorno;
+		construtor.valor = valor;
+		return construtor;
+	}
+
+	/**
+	 * Retorna uma {@link Locacao} comum, alteravel, com os dados desta locacao
+	 */
+	public Locacao paraBean() {
+		List<Filme> beans = new ArrayList<>(filmes.size());
+		for (FilmeLocado filme : filmes) {
+			beans.add(filme.paraBean());
+		}
+		Locacao locacao = new Locacao();
+		locacao.setUsuario(usuario);
+		locacao.setFilmes(beans);
+		locacao.setDataLocacao(getDataLocacao());
+		locacao.setDataRetorno(getDataRetorno());
+		locacao.setValor(valor);
+		return locacao;
+	}
+
+	public Usuario getUsuario() {
+		return usuario;
+	}
+
+	public List<FilmeLocado> getFilmes() {
+		return filmes;
+	}
+
+	public Date getDataLocacao() {
+		return dataLocacao != null ? Date.from(dataLocacao) : null;
+	}
+
+	public Date getDataRetorno() {
+		return dataRetorno != null ? Date.from(dataRetorno) : null;
+	}
+
+	public double getValor() {
+		return valor;
+	}
+
+	public Instant getInstanteLocacao() {
+		return dataLocacao;
+	}
+
+	public Instant getInstanteRetorno() {
+		return dataRetorno;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		LocacaoImutavel locacao = (LocacaoImutavel) o;
+
+		return Double.compare(valor, locacao.valor) == 0
+				&& Objects.equals(usuario, locacao.usuario)
+				&& filmes.equals(locacao.filmes)
+				&& Objects.equals(dataLocacao, locacao.dataLocacao)
+				&& Objects.equals(dataRetorno, locacao.dataRetorno);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(usuario, filmes, dataLocacao, dataRetorno, valor);
+	}
+
+	@Override
+	public String toString() {
+		return "LocacaoImutavel{" +
+				"usuario=" + usuario +
+				", filmes=" + filmes +
+				", dataLocacao=" + dataLocacao +
+				", dataRetorno=" + dataRetorno +
+				", valor=" + valor +
+				'}';
+	}
+
+	/**
+	 * Construtor de {@link LocacaoImutavel}. Pode ser reutilizado; cada chamada a {@link #construir()}
+	 * 	cria uma nova locacao com os dados atuais.
+	 */
+	public static final class Construtor {
+
+		private Usuario usuario;
+		private List<FilmeLocado> filmes = Collections.emptyList();
+		private Instant dataLocacao;
+		private Instant dataRetorno;
+		private double valor;
+
+		private Construtor() {}
+
+		public Construtor comUsuario(Usuario usuario) {
+			this.usuario = usuario;
+			return this;
+		}
+
+		/**
+		 * Guarda nome e preco de cada filme; alteracoes posteriores na lista ou nos filmes nao afetam a locacao
+		 */
+		public Construtor comFilmes(List<Filme> filmes) {
+			List<FilmeLocado> copias = new ArrayList<>(filmes.size());
+			for (Filme filme : filmes) {
+				copias.add(FilmeLocado.de(filme));
+			}
+			this.filmes = Collections.unmodifiableList(copias);
+			return this;
+		}
+
+		public Construtor comDataLocacao(Instant dataLocacao) {
+			this.dataLocacao = dataLocacao;
+			return this;
+		}
+
+		public Construtor comDataRetorno(Instant dataRetorno) {
+			this.dataRetorno = dataRetorno;
+			return this;
+		}
+
+		public Construtor comValor(double valor) {
+			this.valor = valor;
+			return this;
+		}
+
+		public LocacaoImutavel construir() {
+			return new LocacaoImutavel(this);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package br.ce.wcaquino.entidades;
+
+import java.util.List;
+
+public class PedidoLocacao {
+
+	private Usuario usuario;
+	private List<Filme> filmes;
+
+	public PedidoLocacao() {}
+
+	public PedidoLocacao(Usuario usuario, List<Filme> filmes) {
+		this.usuario = usuario;
+		this.filmes = filmes;
+	}
+
+	public Usuario getUsuario() {
+		return usuario;
+	}
+	public void setUsuario(Usuario usuario) {
+		this.usuario = usuario;
+	}
+	public List<Filme> getFilmes() {
+		return filmes;
+	}
+	public void setFilmes(List<Filme> filmes) {
+		this.filmes = filmes;
+	}
+}
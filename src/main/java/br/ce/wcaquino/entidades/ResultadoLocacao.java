@@ -0,0 +1,36 @@
+package br.ce.wcaquino.entidades;
+
+/**
+ * Resultado individual de uma operacao em lote: contem a locacao gerada
+ * ou a excecao que impediu o processamento daquele item.
+ */
+public class ResultadoLocacao {
+
+	private final LocacaoImutavel locacao;
+	private final Exception erro;
+
+	private ResultadoLocacao(LocacaoImutavel locacao, Exception erro) {
+		this.locacao = locacao;
+		this.erro = erro;
+	}
+
+	public static ResultadoLocacao sucesso(LocacaoImutavel locacao) {
+		return new ResultadoLocacao(locacao, null);
+	}
+
+	public static ResultadoLocacao falha(Exception erro) {
+		return new ResultadoLocacao(null, erro);
+	}
+
+	public boolean isSucesso() {
+		return erro == null;
+	}
+
+	public LocacaoImutavel getLocacao() {
+		return locacao;
+	}
+
+	public Exception getErro() {
+		return erro;
+	}
+}
@@ -0,0 +1,82 @@
+package br.ce.wcaquino.entidades;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Totais de um envio de notificacoes: usuarios notificados com sucesso, usuarios
+ * cujas notificacoes falharam mesmo apos todas as tentativas e as excecoes que causaram essas falhas.
+ */
+public class ResultadoNotificacao {
+
+	private final int enviados;
+	private final List<Usuario> naoNotificados;
+	private final List<Throwable> causas;
+
+	public ResultadoNotificacao(int enviados, List<Usuario> naoNotificados) {
+		this(enviados, naoNotificados, Collections.emptyList());
+	}
+
+	public ResultadoNotificacao(int enviados, List<Usuario> naoNotificados, List<Throwable> causas) {
+		this.enviados = enviados;
+		this.naoNotificados = Collections.unmodifiableList(new ArrayList<>(naoNotificados));
+		this.causas = Collections.unmodifiableList(new ArrayList<>(causas));
+	}
+
+	public int getEnviados() {
+		return enviados;
+	}
+
+	public int getFalhas() {
+		return naoNotificados.size();
+	}
+
+	/**
+	 * Usuarios cujas notificacoes falharam
+	 */
+	public List<Usuario> getNaoNotificados() {
+		return naoNotificados;
+	}
+
+	/**
+	 * Ultima excecao de cada lote que terminou com usuarios nao notificados
+	 */
+	public List<Throwable> getCausas() {
+		return causas;
+	}
+
+	@Override
+	public String toString() {
+		return "ResultadoNotificacao{" +
+				"enviados=" + enviados +
+				", falhas=" + getFalhas() +
+				'}';
+	}
+
+	/**
+	 * Soma os totais de varios envios numa unica lista mutavel; o resultado e montado uma vez, no final
+	 */
+	public static class Acumulador {
+
+		private int enviados;
+		private final List<Usuario> naoNotificados = new ArrayList<>();
+		private final List<Throwable> causas = new ArrayList<>();
+
+		public Acumulador adicionar(ResultadoNotificacao resultado) {
+			enviados += resultado.enviados;
+			naoNotificados.addAll(resultado.naoNotificados);
+			causas.addAll(resultado.causas);
+			return this;
+		}
+
+		public Acumulador adicionarFalhas(List<Usuario> usuarios) {
+			naoNotificados.addAll(usuarios);
+			return this;
+		}
+
+		public ResultadoNotificacao getResultado() {
+			return new ResultadoNotificacao(enviados, naoNotificados, causas);
+		}
+	}
+}
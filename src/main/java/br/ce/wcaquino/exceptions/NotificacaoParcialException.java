@@ -0,0 +1,24 @@
+package br.ce.wcaquino.exceptions;
+
+import br.ce.wcaquino.entidades.Usuario;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lancada por um envio de notificacoes em massa em que apenas parte dos usuarios foi notificada
+ */
+public class NotificacaoParcialException extends RuntimeException {
+
+    private final List<Usuario> naoNotificados;
+
+    public NotificacaoParcialException(Collection<Usuario> naoNotificados, Throwable cause) {
+        super(naoNotificados.size() + " usuario(s) nao notificado(s)", cause);
+        this.naoNotificados = new ArrayList<>(naoNotificados);
+    }
+
+    public List<Usuario> getNaoNotificados() {
+        return naoNotificados;
+    }
+}
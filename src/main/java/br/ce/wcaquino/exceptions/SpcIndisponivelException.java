@@ -0,0 +1,11 @@
+package br.ce.wcaquino.exceptions;
+
+public class SpcIndisponivelException extends Exception {
+    public SpcIndisponivelException(String message) {
+        super(message);
+    }
+
+    public SpcIndisponivelException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package br.ce.wcaquino.metricas;
+
+/**
+ * Etapas de uma locacao cuja latencia e medida
+ */
+public enum Etapa {
+    CONSULTA_SPC,
+    CALCULO_VALOR,
+    CALCULO_DATAS,
+    PERSISTENCIA
+}
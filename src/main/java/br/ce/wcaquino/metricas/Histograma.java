@@ -0,0 +1,96 @@
+package br.ce.wcaquino.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias com faixas log-lineares, no estilo do HdrHistogram.
+ * 	Valores ate 127 tem faixa propria; acima disso cada potencia de dois e dividida em 64 faixas,
+ * 	o que limita o erro relativo de um percentil a menos de 1,6%. Registrar um valor e um
+ * 	incremento atomico num array de tamanho fixo, sem lock e sem alocacao.
+ * 	Valores acima de {@link #VALOR_MAXIMO} (cerca de 4,9 horas em nanos) sao contados na ultima faixa.
+ */
+public class Histograma {
+
+    public static final long VALOR_MAXIMO = (1L << 44) - 1;
+
+    private static final int BITS_SUBFAIXA = 7;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int MEIA_SUBFAIXA = SUBFAIXAS / 2;
+    private static final int FAIXAS = indice(VALOR_MAXIMO) + 1;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(FAIXAS);
+    private final LongAdder quantidade = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public void registrar(long valor) {
+        long limitado = Math.max(0, Math.min(valor, VALOR_MAXIMO));
+        contagens.incrementAndGet(indice(limitado));
+        quantidade.increment();
+        soma.add(limitado);
+        maximo.accumulate(limitado);
+    }
+
+    public long getQuantidade() {
+        return quantidade.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long total = quantidade.sum();
+        return total == 0 ? 0 : (double) soma.sum() / total;
+    }
+
+    /**
+     * Retorna o maior valor equivalente ao percentil informado (de 0 a 100),
+     * 	ou zero quando nada foi registrado
+     */
+    public long percentil(double percentil) {
+        if (percentil < 0 || percentil > 100) {
+            throw new IllegalArgumentException("Percentil deve estar entre 0 e 100");
+        }
+        long total = 0;
+        long[] copia = new long[FAIXAS];
+        for (int i = 0; i < FAIXAS; i++) {
+            copia[i] = contagens.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) {
+                return Math.min(maiorValorDaFaixa(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    static int indice(long valor) {
+        if (valor < SUBFAIXAS) {
+            return (int) valor;
+        }
+        int bitMaisAlto = 63 - Long.numberOfLeadingZeros(valor);
+        int deslocamento = bitMaisAlto - (BITS_SUBFAIXA - 1);
+        int subfaixa = (int) (valor >>> deslocamento);
+        return SUBFAIXAS + (deslocamento - 1) * MEIA_SUBFAIXA + (subfaixa - MEIA_SUBFAIXA);
+    }
+
+    static long maiorValorDaFaixa(int indice) {
+        if (indice < SUBFAIXAS) {
+            return indice;
+        }
+        int relativo = indice - SUBFAIXAS;
+        int deslocamento = relativo / MEIA_SUBFAIXA + 1;
+        long subfaixa = relativo % MEIA_SUBFAIXA + MEIA_SUBFAIXA;
+        return ((subfaixa + 1) << deslocamento) - 1;
+    }
+}
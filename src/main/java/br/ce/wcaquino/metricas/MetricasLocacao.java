@@ -0,0 +1,34 @@
+package br.ce.wcaquino.metricas;
+
+/**
+ * Ponto de extensao para as metricas do {@link br.ce.wcaquino.servicos.LocacaoService}.
+ * 	Implementacoes devem ser seguras para uso concorrente e baratas o bastante para o caminho
+ * 	critico; para integrar com outra biblioteca de metricas basta implementar esta interface.
+ * 	Quando {@link #isAtivo()} retorna <code>false</code> o servico nem le o relogio.
+ */
+public interface MetricasLocacao {
+
+    /**
+     * Metricas desligadas: nenhuma medicao e feita
+     */
+    MetricasLocacao DESATIVADAS = new MetricasLocacao() {
+        @Override
+        public boolean isAtivo() {
+            return false;
+        }
+
+        @Override
+        public void registrarLatencia(Etapa etapa, long nanos) {
+        }
+
+        @Override
+        public void registrarRejeicao(MotivoRejeicao motivo) {
+        }
+    };
+
+    boolean isAtivo();
+
+    void registrarLatencia(Etapa etapa, long nanos);
+
+    void registrarRejeicao(MotivoRejeicao motivo);
+}
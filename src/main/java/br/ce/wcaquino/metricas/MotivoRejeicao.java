@@ -0,0 +1,12 @@
+package br.ce.wcaquino.metricas;
+
+/**
+ * Motivos pelos quais uma locacao e recusada
+ */
+public enum MotivoRejeicao {
+    USUARIO_NAO_INFORMADO,
+    FILME_NAO_INFORMADO,
+    FILME_SEM_ESTOQUE,
+    USUARIO_NEGATIVADO,
+    FALHA_SPC
+}
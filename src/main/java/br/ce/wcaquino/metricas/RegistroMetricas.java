@@ -0,0 +1,47 @@
+package br.ce.wcaquino.metricas;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de metricas em memoria: um {@link Histograma} de latencia por etapa e um contador
+ * 	por motivo de rejeicao. Todos sao criados na construcao, entao registrar nao aloca nem usa lock.
+ */
+public class RegistroMetricas implements MetricasLocacao {
+
+    private final Map<Etapa, Histograma> latencias = new EnumMap<>(Etapa.class);
+    private final Map<MotivoRejeicao, LongAdder> rejeicoes = new EnumMap<>(MotivoRejeicao.class);
+
+    public RegistroMetricas() {
+        for (Etapa etapa : Etapa.values()) {
+            latencias.put(etapa, new Histograma());
+        }
+        for (MotivoRejeicao motivo : MotivoRejeicao.values()) {
+            rejeicoes.put(motivo, new LongAdder());
+        }
+    }
+
+    @Override
+    public boolean isAtivo() {
+        return true;
+    }
+
+    @Override
+    public void registrarLatencia(Etapa etapa, long nanos) {
+        latencias.get(etapa).registrar(nanos);
+    }
+
+    @Override
+    public void registrarRejeicao(MotivoRejeicao motivo) {
+        rejeicoes.get(motivo).increment();
+    }
+
+    public Histograma getLatencia(Etapa etapa) {
+        return latencias.get(etapa);
+    }
+
+    public long getRejeicoes(MotivoRejeicao motivo) {
+        return rejeicoes.get(motivo).sum();
+    }
+}
@@ -0,0 +1,374 @@
+package br.ce.wcaquino.serializacao;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.utils.DiaEpoch;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializacao binaria compacta de {@link Locacao}, {@link Filme} e {@link Usuario} em {@link ByteBuffer},
+ * 	sem reflexao. Cada mensagem comeca com a versao do formato, seguida de um byte de flags com os
+ * 	campos presentes. Inteiros sao gravados como varint (zigzag quando podem ser negativos) e valores
+ * 	com no maximo duas casas decimais como centavos. A data de locacao e gravada em milissegundos
+ * 	epoch e a de retorno como a diferenca em milissegundos para a de locacao, preservando o horario.
+ * 	Mensagens da versao 1, com as datas como dia epoch, continuam legiveis e voltam como inicio do dia.
+ *
+ * 	Nomes de usuarios e filmes sao internados num dicionario: a primeira ocorrencia grava o texto
+ * 	e as seguintes apenas o indice. Por isso o dicionario faz parte do estado da instancia: as
+ * 	mensagens devem ser lidas na mesma ordem em que foram escritas, por um codec que comecou
+ * 	vazio (ou apos {@link #reiniciar()}) e com o mesmo tamanho maximo de dicionario.
+ * 	Se uma escrita ou leitura falhar, o dicionario volta ao estado anterior a mensagem.
+ *
+ * 	Instancias nao sao seguras para uso concorrente.
+ */
+public final class LocacaoCodec {
+
+    public static final byte VERSAO = 2;
+
+    private static final byte VERSAO_DATAS_EM_DIAS = 1;
+    public static final int TAMANHO_MAXIMO_DICIONARIO_PADRAO = 65536;
+
+    private static final int USUARIO = 1;
+    private static final int DATA_LOCACAO = 1 << 1;
+    private static final int DATA_RETORNO = 1 << 2;
+    private static final int VALOR = 1 << 3;
+    private static final int VALOR_EM_CENTAVOS = 1 << 4;
+    private static final int FILMES = 1 << 5;
+
+    private static final int ESTOQUE = 1;
+    private static final int PRECO = 1 << 1;
+    private static final int PRECO_EM_CENTAVOS = 1 << 2;
+
+    // marcadores de texto: nulo, texto literal ou referencia (indice + 2) ao dicionario
+    private static final int TEXTO_NULO = 0;
+    private static final int TEXTO_LITERAL = 1;
+    private static final int PRIMEIRA_REFERENCIA = 2;
+
+    private final DiaEpoch dias;
+    private final int tamanhoMaximoDicionario;
+    private final List<String> textos = new ArrayList<>();
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    public LocacaoCodec() {
+        this(ZoneId.systemDefault(), TAMANHO_MAXIMO_DICIONARIO_PADRAO);
+    }
+
+    /**
+     * @param fuso fuso usado para converter os dias epoch das mensagens da versao 1 em datas
+     * @param tamanhoMaximoDicionario quantidade de nomes internados; depois disso os novos nomes
+     * 	sao gravados sempre por extenso
+     */
+    public LocacaoCodec(ZoneId fuso, int tamanhoMaximoDicionario) {
+        if (tamanhoMaximoDicionario < 0) {
+            throw new IllegalArgumentException("Tamanho do dicionario nao pode ser negativo");
+        }
+        this.dias = new DiaEpoch(Clock.system(fuso));
+        this.tamanhoMaximoDicionario = tamanhoMaximoDicionario;
+    }
+
+    /**
+     * Esvazia o dicionario, iniciando uma nova sequencia de mensagens
+     */
+    public void reiniciar() {
+        textos.clear();
+        indices.clear();
+    }
+
+    public int getTamanhoDicionario() {
+        return textos.size();
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException quando a locacao nao cabe no espaco restante do destino;
+     * 	a posicao do destino fica indefinida, mas o dicionario nao e alterado
+     */
+    public void escreverLocacao(Locacao locacao, ByteBuffer destino) {
+        int marca = textos.size();
+        try {
+            destino.put(VERSAO);
+            int flags = 0;
+            if (locacao.getUsuario() != null) flags |= USUARIO;
+            if (locacao.getDataLocacao() != null) flags |= DATA_LOCACAO;
+            if (locacao.getDataRetorno() != null) flags |= DATA_RETORNO;
+            if (locacao.getValor() != null) flags |= emCentavos(locacao.getValor()) ? VALOR | VALOR_EM_CENTAVOS : VALOR;
+            if (locacao.getFilmes() != null) flags |= FILMES;
+            destino.put((byte) flags);
+
+            if ((flags & USUARIO) != 0) {
+                escreverTexto(locacao.getUsuario().getNome(), destino);
+            }
+            long referencia = 0;
+            if ((flags & DATA_LOCACAO) != 0) {
+                referencia = locacao.getDataLocacao().getTime();
+                escreverVarLongZigZag(referencia, destino);
+            }
+            if ((flags & DATA_RETORNO) != 0) {
+                escreverVarLongZigZag(locacao.getDataRetorno().getTime() - referencia, destino);
+            }
+            if ((flags & VALOR) != 0) {
+                escreverDecimal(locacao.getValor(), (flags & VALOR_EM_CENTAVOS) != 0, destino);
+            }
+            if ((flags & FILMES) != 0) {
+                escreverVarInt(locacao.getFilmes().size(), destino);
+                for (Filme filme : locacao.getFilmes()) {
+                    escreverCorpoFilme(filme, destino);
+                }
+            }
+        } catch (RuntimeException e) {
+            descartarTextosAPartirDe(marca);
+            throw e;
+        }
+    }
+
+    /**
+     * @throws BufferUnderflowException quando a mensagem esta incompleta
+     * @throws IllegalArgumentException quando a versao nao e suportada ou a mensagem esta corrompida
+     */
+    public Locacao lerLocacao(ByteBuffer origem) {
+        int marca = textos.size();
+        try {
+            byte versao = lerVersao(origem);
+            int flags = origem.get();
+            Locacao locacao = new Locacao();
+            if ((flags & USUARIO) != 0) {
+                locacao.setUsuario(new Usuario(lerTexto(origem)));
+            }
+            if (versao == VERSAO_DATAS_EM_DIAS) {
+                if ((flags & DATA_LOCACAO) != 0) {
+                    locacao.setDataLocacao(dias.paraDate(lerVarLongZigZag(origem)));
+                }
+                if ((flags & DATA_RETORNO) != 0) {
+                    locacao.setDataRetorno(dias.paraDate(lerVarLongZigZag(origem)));
+                }
+            } else {
+                long referencia = 0;
+                if ((flags & DATA_LOCACAO) != 0) {
+                    referencia = lerVarLongZigZag(origem);
+                    locacao.setDataLocacao(new Date(referencia));
+                }
+                if ((flags & DATA_RETORNO) != 0) {
+                    locacao.setDataRetorno(new Date(referencia + lerVarLongZigZag(origem)));
+                }
+            }
+            if ((flags & VALOR) != 0) {
+                locacao.setValor(lerDecimal((flags & VALOR_EM_CENTAVOS) != 0, origem));
+            }
+            if ((flags & FILMES) != 0) {
+                int quantidade = lerVarInt(origem);
+                if (quantidade < 0 || quantidade > origem.remaining()) {
+                    throw new IllegalArgumentException("Quantidade de filmes invalida: " + quantidade);
+                }
+                List<Filme> filmes = new ArrayList<>(quantidade);
+                for (int i = 0; i < quantidade; i++) {
+                    filmes.add(lerCorpoFilme(origem));
+                }
+                locacao.setFilmes(filmes);
+            }
+            return locacao;
+        } catch (RuntimeException e) {
+            descartarTextosAPartirDe(marca);
+            throw e;
+        }
+    }
+
+    public void escreverFilme(Filme filme, ByteBuffer destino) {
+        int marca = textos.size();
+        try {
+            destino.put(VERSAO);
+            escreverCorpoFilme(filme, destino);
+        } catch (RuntimeException e) {
+            descartarTextosAPartirDe(marca);
+            throw e;
+        }
+    }
+
+    public Filme lerFilme(ByteBuffer origem) {
+        int marca = textos.size();
+        try {
+            lerVersao(origem);
+            return lerCorpoFilme(origem);
+        } catch (RuntimeException e) {
+            descartarTextosAPartirDe(marca);
+            throw e;
+        }
+    }
+
+    public void escreverUsuario(Usuario usuario, ByteBuffer destino) {
+        int marca = textos.size();
+        try {
+            destino.put(VERSAO);
+            escreverTexto(usuario.getNome(), destino);
+        } catch (RuntimeException e) {
+            descartarTextosAPartirDe(marca);
+            throw e;
+        }
+    }
+
+    public Usuario lerUsuario(ByteBuffer origem) {
+        int marca = textos.size();
+        try {
+            lerVersao(origem);
+            return new Usuario(lerTexto(origem));
+        } catch (RuntimeException e) {
+            descartarTextosAPartirDe(marca);
+            throw e;
+        }
+    }
+
+    private void escreverCorpoFilme(Filme filme, ByteBuffer destino) {
+        int flags = 0;
+        if (filme.getEstoque() != null) flags |= ESTOQUE;
+        if (filme.getPrecoLocacao() != null) flags |= emCentavos(filme.getPrecoLocacao()) ? PRECO | PRECO_EM_CENTAVOS : PRECO;
+        destino.put((byte) flags);
+        escreverTexto(filme.getNome(), destino);
+        if ((flags & ESTOQUE) != 0) {
+            escreverVarLongZigZag(filme.getEstoque(), destino);
+        }
+        if ((flags & PRECO) != 0) {
+            escreverDecimal(filme.getPrecoLocacao(), (flags & PRECO_EM_CENTAVOS) != 0, destino);
+        }
+    }
+
+    private Filme lerCorpoFilme(ByteBuffer origem) {
+        int flags = origem.get();
+        Filme filme = new Filme();
+        filme.setNome(lerTexto(origem));
+        if ((flags & ESTOQUE) != 0) {
+            filme.setEstoque(Math.toIntExact(lerVarLongZigZag(origem)));
+        }
+        if ((flags & PRECO) != 0) {
+            filme.setPrecoLocacao(lerDecimal((flags & PRECO_EM_CENTAVOS) != 0, origem));
+        }
+        return filme;
+    }
+
+    private static byte lerVersao(ByteBuffer origem) {
+        byte versao = origem.get();
+        if (versao < 1 || versao > VERSAO) {
+            throw new IllegalArgumentException("Versao de serializacao nao suportada: " + versao);
+        }
+        return versao;
+    }
+
+    private void escreverTexto(String texto, ByteBuffer destino) {
+        if (texto == null) {
+            escreverVarInt(TEXTO_NULO, destino);
+            return;
+        }
+        Integer indice = indices.get(texto);
+        if (indice != null) {
+            escreverVarInt(indice + PRIMEIRA_REFERENCIA, destino);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escreverVarInt(TEXTO_LITERAL, destino);
+        escreverVarInt(bytes.length, destino);
+        destino.put(bytes);
+        internar(texto);
+    }
+
+    private String lerTexto(ByteBuffer origem) {
+        int marcador = lerVarInt(origem);
+        if (marcador == TEXTO_NULO) {
+            return null;
+        }
+        if (marcador == TEXTO_LITERAL) {
+            int tamanho = lerVarInt(origem);
+            if (tamanho < 0 || tamanho > origem.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            byte[] bytes = new byte[tamanho];
+            origem.get(bytes);
+            String texto = new String(bytes, StandardCharsets.UTF_8);
+            internar(texto);
+            return texto;
+        }
+        int indice = marcador - PRIMEIRA_REFERENCIA;
+        if (indice < 0 || indice >= textos.size()) {
+            throw new IllegalArgumentException("Referencia invalida ao dicionario: " + indice);
+        }
+        return textos.get(indice);
+    }
+
+    private void internar(String texto) {
+        if (textos.size() < tamanhoMaximoDicionario && !indices.containsKey(texto)) {
+            indices.put(texto, textos.size());
+            textos.add(texto);
+        }
+    }
+
+    private void descartarTextosAPartirDe(int marca) {
+        for (int i = textos.size() - 1; i >= marca; i--) {
+            indices.remove(textos.remove(i));
+        }
+    }
+
+    private static boolean emCentavos(double valor) {
+        double centavos = Math.rint(valor * 100);
+        return Math.abs(centavos) < (1L << 53) && centavos / 100 == valor;
+    }
+
+    private static void escreverDecimal(double valor, boolean emCentavos, ByteBuffer destino) {
+        if (emCentavos) {
+            escreverVarLongZigZag((long) Math.rint(valor * 100), destino);
+        } else {
+            destino.putDouble(valor);
+        }
+    }
+
+    private static double lerDecimal(boolean emCentavos, ByteBuffer origem) {
+        return emCentavos ? lerVarLongZigZag(origem) / 100.0 : origem.getDouble();
+    }
+
+    static void escreverVarInt(int valor, ByteBuffer destino) {
+        while ((valor & ~0x7F) != 0) {
+            destino.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        destino.put((byte) valor);
+    }
+
+    static int lerVarInt(ByteBuffer origem) {
+        int resultado = 0;
+        for (int deslocamento = 0; deslocamento < 35; deslocamento += 7) {
+            byte b = origem.get();
+            resultado |= (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return resultado;
+            }
+        }
+        throw new IllegalArgumentException("Varint invalido");
+    }
+
+    static void escreverVarLongZigZag(long valor, ByteBuffer destino) {
+        long zigzag = (valor << 1) ^ (valor >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            destino.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        destino.put((byte) zigzag);
+    }
+
+    static long lerVarLongZigZag(ByteBuffer origem) {
+        long zigzag = 0;
+        for (int deslocamento = 0; deslocamento < 70; deslocamento += 7) {
+            byte b = origem.get();
+            zigzag |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Varint invalido");
+    }
+}
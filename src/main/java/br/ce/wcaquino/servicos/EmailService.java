@@ -1,7 +1,36 @@
 package br.ce.wcaquino.servicos;
 
 import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.NotificacaoParcialException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 public interface EmailService {
     void notificarAtraso(Usuario usuario);
+
+    /**
+     * Notifica varios usuarios de uma vez, um e-mail por usuario.
+     * Provedores com envio em massa devem sobrescrever este metodo; o padrao delega para {@link #notificarAtraso(Usuario)}.
+     * Se apenas parte dos usuarios for notificada, deve ser lancada {@link NotificacaoParcialException} com os demais;
+     * qualquer outra excecao indica que nenhum usuario foi notificado e o envio pode ser repetido por inteiro.
+     */
+    default void notificarAtrasos(Collection<Usuario> usuarios) {
+        List<Usuario> naoNotificados = new ArrayList<>();
+        RuntimeException primeiraFalha = null;
+        for (Usuario usuario : usuarios) {
+            try {
+                notificarAtraso(usuario);
+            } catch (RuntimeException e) {
+                naoNotificados.add(usuario);
+                if (primeiraFalha == null) {
+                    primeiraFalha = e;
+                }
+            }
+        }
+        if (!naoNotificados.isEmpty()) {
+            throw new NotificacaoParcialException(naoNotificados, primeiraFalha);
+        }
+    }
 }
@@ -0,0 +1,128 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controle de estoque por titulo com reserva atomica de todos os filmes de um carrinho.
+ * 	Cada titulo tem seu proprio contador atomico, atualizado por compare-and-set, entao
+ * 	locacoes de titulos diferentes nunca disputam o mesmo lock. Se algum titulo do carrinho
+ * 	nao tiver copias suficientes, o que ja havia sido reservado e devolvido e nada fica reservado.
+ * 	Os titulos sao reservados sempre na ordem dos nomes, qualquer que seja a ordem do carrinho:
+ * 	dois carrinhos com os mesmos titulos disputam primeiro o mesmo contador, e quem o perde falha
+ * 	sem segurar copias que o outro ainda precisa. Enquanto uma reserva esta em andamento, os
+ * 	titulos ja reservados por ela podem aparecer com menos copias em {@link #getEstoque(String)}.
+ * 	Titulos ainda nao cadastrados comecam com o estoque informado no proprio {@link Filme}.
+ */
+public class EstoqueFilmes {
+
+    private final ConcurrentMap<String, AtomicInteger> estoques = new ConcurrentHashMap<>();
+
+    public void definirEstoque(String nome, int quantidade) {
+        if (quantidade < 0) {
+            throw new IllegalArgumentException("Estoque nao pode ser negativo");
+        }
+        estoques.computeIfAbsent(nome, n -> new AtomicInteger()).set(quantidade);
+    }
+
+    /**
+     * Retorna as copias disponiveis do titulo ou <code>null</code> quando ele nao esta cadastrado
+     */
+    public Integer getEstoque(String nome) {
+        AtomicInteger contador = estoques.get(nome);
+        return contador != null ? contador.get() : null;
+    }
+
+    /**
+     * Reserva uma copia de cada filme da lista (filmes repetidos reservam varias copias do titulo),
+     * 	percorrendo os titulos em ordem alfabetica
+     *
+     * @return Reserva que deve ser confirmada apos a locacao ou liberada em caso de falha
+     * @throws FilmeSemEstoqueException quando algum titulo nao tem copias suficientes; nesse caso nada e reservado
+     */
+    public Reserva reservar(List<Filme> filmes) throws FilmeSemEstoqueException {
+        Map<String, Integer> quantidades = new TreeMap<>();
+        for (Filme filme : filmes) {
+            quantidades.merge(filme.getNome(), 1, Integer::sum);
+            estoques.computeIfAbsent(filme.getNome(), n -> new AtomicInteger(filme.getEstoque()));
+        }
+
+        List<AtomicInteger> contadores = new ArrayList<>(quantidades.size());
+        List<Integer> reservadas = new ArrayList<>(quantidades.size());
+        for (Map.Entry<String, Integer> quantidade : quantidades.entrySet()) {
+            AtomicInteger contador = estoques.get(quantidade.getKey());
+            if (!decrementar(contador, quantidade.getValue())) {
+                devolver(contadores, reservadas);
+                throw new FilmeSemEstoqueException();
+            }
+            contadores.add(contador);
+            reservadas.add(quantidade.getValue());
+        }
+        return new Reserva(contadores, reservadas);
+    }
+
+    private static boolean decrementar(AtomicInteger contador, int quantidade) {
+        while (true) {
+            int atual = contador.get();
+            if (atual < quantidade) {
+                return false;
+            }
+            if (contador.compareAndSet(atual, atual - quantidade)) {
+                return true;
+            }
+        }
+    }
+
+    private static void devolver(List<AtomicInteger> contadores, List<Integer> quantidades) {
+        for (int i = 0; i < contadores.size(); i++) {
+            contadores.get(i).addAndGet(quantidades.get(i));
+        }
+    }
+
+    /**
+     * Copias reservadas para uma locacao. Uma reserva e confirmada ou liberada uma unica vez;
+     * 	chamadas posteriores nao tem efeito.
+     */
+    public static class Reserva {
+
+        /**
+         * Reserva vazia, usada quando nao ha controle de estoque
+         */
+        public static final Reserva NENHUMA = new Reserva(Collections.emptyList(), Collections.emptyList());
+
+        private final List<AtomicInteger> contadores;
+        private final List<Integer> quantidades;
+        private final AtomicBoolean finalizada = new AtomicBoolean();
+
+        private Reserva(List<AtomicInteger> contadores, List<Integer> quantidades) {
+            this.contadores = contadores;
+            this.quantidades = quantidades;
+        }
+
+        /**
+         * Mantem as copias fora do estoque, pois a locacao foi concluida
+         */
+        public void confirmar() {
+            finalizada.set(true);
+        }
+
+        /**
+         * Devolve as copias ao estoque, caso a reserva ainda nao tenha sido confirmada
+         */
+        public void liberar() {
+            if (finalizada.compareAndSet(false, true)) {
+                devolver(contadores, quantidades);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.LocacaoDao;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.metricas.Histograma;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fila limitada de locacoes a gravar, com varios produtores e um unico gravador.
+ * 	As threads das requisicoes enfileiram as locacoes num buffer circular sem lock e uma thread
+ * 	propria grava tudo o que estiver na fila em lotes de {@link LocacaoDao#salvarTodos(List)}:
+ * 	picos de locacoes viram poucos lotes maiores em vez de muitas gravacoes concorrentes.
+ *
+ * 	Cada locacao enfileirada recebe um futuro completado quando o seu lote e gravado, ou com o erro
+ * 	da gravacao. Os futuros sao completados no executor de confirmacoes, e nao no gravador, para que
+ * 	as continuacoes de quem enfileirou nao atrasem os lotes seguintes. O que acontece com a fila cheia
+ * 	depende da {@link PoliticaFilaCheia}.
+ */
+public class FilaGravacaoLocacoes implements Closeable {
+
+    public enum PoliticaFilaCheia {
+        /**
+         * O produtor aguarda ate abrir espaco na fila
+         */
+        BLOQUEAR,
+        /**
+         * O futuro e completado com {@link RejectedExecutionException}
+         */
+        REJEITAR,
+        /**
+         * A locacao e gravada pelo proprio produtor, fora da fila
+         */
+        EXECUTAR_NO_CHAMADOR
+    }
+
+    private static final long ESPERA_MAXIMA_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long ESPERA_FILA_CHEIA_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LocacaoDao locacaoDao;
+    private final int tamanhoMaximoLote;
+    private final PoliticaFilaCheia politica;
+    private final Executor executorConfirmacoes;
+
+    // buffer circular com um numero de sequencia por posicao: a posicao esta livre para o
+    // produtor da vez quando sequencia == cauda e pronta para o gravador quando sequencia == cabeca + 1
+    private final int mascara;
+    private final AtomicReferenceArray<Pedido> pedidos;
+    private final AtomicLongArray sequencias;
+    private final AtomicLong cauda = new AtomicLong();
+    private volatile long cabeca;
+
+    private final Thread gravador;
+    private volatile boolean gravadorAguardando;
+    private volatile boolean encerrada;
+    private final AtomicInteger enfileirando = new AtomicInteger();
+    private final AtomicInteger confirmando = new AtomicInteger();
+
+    private final Histograma tamanhoLote = new Histograma();
+    private final LongAdder rejeitadas = new LongAdder();
+    private final LongAdder gravadasNoChamador = new LongAdder();
+
+    public FilaGravacaoLocacoes(LocacaoDao locacaoDao, int capacidade, int tamanhoMaximoLote, PoliticaFilaCheia politica) {
+        this(locacaoDao, capacidade, tamanhoMaximoLote, politica, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param capacidade Quantidade maxima de locacoes aguardando gravacao, arredondada para a proxima
+     * 	potencia de dois (no minimo 2: com uma unica posicao, sequencia livre e ocupada se confundem)
+     * @param tamanhoMaximoLote Quantidade maxima de locacoes por chamada ao DAO
+     * @param executorConfirmacoes Executor que completa os futuros de cada lote gravado
+     */
+    public FilaGravacaoLocacoes(LocacaoDao locacaoDao, int capacidade, int tamanhoMaximoLote, PoliticaFilaCheia politica,
+                                Executor executorConfirmacoes) {
+        if (capacidade <= 0 || capacidade > 1 << 30) {
+            throw new IllegalArgumentException("Capacidade da fila deve estar entre 1 e 2^30");
+        }
+        if (tamanhoMaximoLote <= 0) {
+            throw new IllegalArgumentException("Tamanho maximo do lote deve ser positivo");
+        }
+        this.locacaoDao = locacaoDao;
+        this.tamanhoMaximoLote = tamanhoMaximoLote;
+        this.politica = politica;
+        this.executorConfirmacoes = executorConfirmacoes;
+
+        int tamanho = Math.max(2, Integer.highestOneBit(capacidade));
+        if (tamanho < capacidade) {
+            tamanho <<= 1;
+        }
+        this.mascara = tamanho - 1;
+        this.pedidos = new AtomicReferenceArray<>(tamanho);
+        this.sequencias = new AtomicLongArray(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            sequencias.set(i, i);
+        }
+
+        this.gravador = new Thread(this::gravar, "locacao-gravador");
+        this.gravador.setDaemon(true);
+        this.gravador.start();
+    }
+
+    /**
+     * Enfileira a locacao para gravacao
+     *
+     * @return Futuro completado com a propria locacao depois de gravada
+     */
+    public CompletableFuture<Locacao> enfileirar(Locacao locacao) {
+        Pedido pedido = new Pedido(locacao);
+        enfileirando.incrementAndGet();
+        try {
+            if (encerrada) {
+                pedido.confirmacao.completeExceptionally(new IllegalStateException("Fila de gravacao de locacoes encerrada"));
+                return pedido.confirmacao;
+            }
+            if (!oferecer(pedido) && !tratarFilaCheia(pedido)) {
+                return pedido.confirmacao;
+            }
+        } finally {
+            enfileirando.decrementAndGet();
+        }
+        if (gravadorAguardando) {
+            LockSupport.unpark(gravador);
+        }
+        return pedido.confirmacao;
+    }
+
+    /**
+     * Locacoes enfileiradas e ainda nao retiradas pelo gravador
+     */
+    public int getProfundidade() {
+        return (int) Math.max(0, cauda.get() - cabeca);
+    }
+
+    public int getCapacidade() {
+        return mascara + 1;
+    }
+
+    /**
+     * Distribuicao da quantidade de locacoes por lote gravado
+     */
+    public Histograma getTamanhoLote() {
+        return tamanhoLote;
+    }
+
+    public long getRejeitadas() {
+        return rejeitadas.sum();
+    }
+
+    public long getGravadasNoChamador() {
+        return gravadasNoChamador.sum();
+    }
+
+    /**
+     * Grava as locacoes ja enfileiradas, aguarda a confirmacao delas e encerra o gravador;
+     * 	novas locacoes sao recusadas
+     */
+    @Override
+    public synchronized void close() {
+        if (encerrada) {
+            return;
+        }
+        encerrada = true;
+        LockSupport.unpark(gravador);
+        try {
+            gravador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        while (confirmando.get() > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, ESPERA_FILA_CHEIA_NANOS);
+        }
+    }
+
+    /**
+     * @return <code>true</code> se o pedido acabou entrando na fila
+     */
+    private boolean tratarFilaCheia(Pedido pedido) {
+        switch (politica) {
+            case BLOQUEAR:
+                while (!oferecer(pedido)) {
+                    LockSupport.parkNanos(this, ESPERA_FILA_CHEIA_NANOS);
+                    if (Thread.currentThread().isInterrupted()) {
+                        pedido.confirmacao.completeExceptionally(new IllegalStateException("Espera por espaco na fila de gravacao interrompida"));
+                        return false;
+                    }
+                }
+                return true;
+            case EXECUTAR_NO_CHAMADOR:
+                gravadasNoChamador.increment();
+                try {
+                    locacaoDao.salvar(pedido.locacao);
+                    pedido.confirmacao.complete(pedido.locacao);
+                } catch (RuntimeException | Error e) {
+                    pedido.confirmacao.completeExceptionally(e);
+                }
+                return false;
+            default:
+                rejeitadas.increment();
+                pedido.confirmacao.completeExceptionally(new RejectedExecutionException("Fila de gravacao de locacoes cheia"));
+                return false;
+        }
+    }
+
+    private boolean oferecer(Pedido pedido) {
+        while (true) {
+            long posicao = cauda.get();
+            int indice = (int) posicao & mascara;
+            long diferenca = sequencias.get(indice) - posicao;
+            if (diferenca < 0) {
+                return false;
+            }
+            if (diferenca == 0 && cauda.compareAndSet(posicao, posicao + 1)) {
+                pedidos.lazySet(indice, pedido);
+                sequencias.set(indice, posicao + 1);
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Chamado apenas pelo gravador
+     */
+    private Pedido retirar() {
+        long posicao = cabeca;
+        int indice = (int) posicao & mascara;
+        if (sequencias.get(indice) != posicao + 1) {
+            return null;
+        }
+        Pedido pedido = pedidos.get(indice);
+        pedidos.lazySet(indice, null);
+        sequencias.set(indice, posicao + mascara + 1);
+        cabeca = posicao + 1;
+        return pedido;
+    }
+
+    private void gravar() {
+        List<Pedido> lote = new ArrayList<>(tamanhoMaximoLote);
+        while (true) {
+            Pedido pedido = retirar();
+            if (pedido == null) {
+                // so termina quando nenhum produtor pode mais colocar pedidos na fila
+                if (encerrada && enfileirando.get() == 0 && cauda.get() == cabeca) {
+                    return;
+                }
+                aguardarPedidos();
+                continue;
+            }
+            lote.add(pedido);
+            while (lote.size() < tamanhoMaximoLote && (pedido = retirar()) != null) {
+                lote.add(pedido);
+            }
+            gravar(lote);
+            lote.clear();
+        }
+    }
+
+    private void aguardarPedidos() {
+        gravadorAguardando = true;
+        if (cauda.get() == cabeca && !encerrada) {
+            LockSupport.parkNanos(this, ESPERA_MAXIMA_NANOS);
+        }
+        gravadorAguardando = false;
+    }
+
+    private void gravar(List<Pedido> lote) {
+        List<Locacao> locacoes = new ArrayList<>(lote.size());
+        for (Pedido pedido : lote) {
+            locacoes.add(pedido.locacao);
+        }
+        tamanhoLote.registrar(lote.size());
+        Throwable erro = null;
+        try {
+            locacaoDao.salvarTodos(locacoes);
+        } catch (RuntimeException | Error e) {
+            erro = e;
+        }
+        confirmar(new ArrayList<>(lote), erro);
+    }
+
+    private void confirmar(List<Pedido> lote, Throwable erro) {
+        Runnable confirmacao = () -> {
+            try {
+                for (Pedido pedido : lote) {
+                    if (erro != null) {
+                        pedido.confirmacao.completeExceptionally(erro);
+                    } else {
+                        pedido.confirmacao.complete(pedido.locacao);
+                    }
+                }
+            } finally {
+                confirmando.decrementAndGet();
+            }
+        };
+        confirmando.incrementAndGet();
+        try {
+            executorConfirmacoes.execute(confirmacao);
+        } catch (RejectedExecutionException e) {
+            // sem o executor (encerrado ou saturado) os futuros ainda precisam ser completados
+            confirmacao.run();
+        }
+    }
+
+    private static class Pedido {
+        private final Locacao locacao;
+        private final CompletableFuture<Locacao> confirmacao = new CompletableFuture<>();
+
+        private Pedido(Locacao locacao) {
+            this.locacao = locacao;
+        }
+    }
+}
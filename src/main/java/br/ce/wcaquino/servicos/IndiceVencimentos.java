@@ -0,0 +1,120 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.utils.DiaEpoch;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Indice das locacoes ainda nao vencidas, agrupadas pelo dia (epoch day) da data de retorno.
+ * 	{@link #retirarVencidas(Date)} percorre apenas os dias que ja passaram e retira do indice o que
+ * 	entregar, de modo que cada locacao e devolvida uma unica vez: o custo de cada verificacao
+ * 	depende das locacoes que venceram desde a anterior, e nao do total de locacoes em aberto.
+ * 	Quem retira as vencidas e responsavel por devolve-las com {@link #adicionar(Locacao)} se nao
+ * 	conseguir processa-las; como a data de retorno ja passou, elas voltam na proxima retirada.
+ */
+public class IndiceVencimentos {
+
+    private final ZoneId zona;
+    private final NavigableMap<Long, List<Locacao>> porDia = new TreeMap<>();
+    private int quantidade;
+
+    public IndiceVencimentos() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * @param zona Fuso usado para agrupar as datas de retorno por dia
+     */
+    public IndiceVencimentos(ZoneId zona) {
+        this.zona = zona;
+    }
+
+    public synchronized void adicionar(Locacao locacao) {
+        porDia.computeIfAbsent(DiaEpoch.de(locacao.getDataRetorno(), zona), dia -> new ArrayList<>()).add(locacao);
+        quantidade++;
+    }
+
+    public synchronized void adicionarTodas(Collection<Locacao> locacoes) {
+        for (Locacao locacao : locacoes) {
+            adicionar(locacao);
+        }
+    }
+
+    /**
+     * Remove a locacao (a mesma instancia adicionada), por exemplo quando ela e substituida por uma prorrogacao
+     *
+     * @return <code>true</code> se a locacao ainda estava no indice
+     */
+    public synchronized boolean remover(Locacao locacao) {
+        long dia = DiaEpoch.de(locacao.getDataRetorno(), zona);
+        List<Locacao> locacoes = porDia.get(dia);
+        if (locacoes == null) {
+            return false;
+        }
+        for (Iterator<Locacao> it = locacoes.iterator(); it.hasNext(); ) {
+            if (it.next() == locacao) {
+                it.remove();
+                quantidade--;
+                if (locacoes.isEmpty()) {
+                    porDia.remove(dia);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retira do indice e retorna as locacoes com data de retorno anterior a <code>agora</code>.
+     * 	Dias inteiros ja passados sao retirados de uma vez; no dia de <code>agora</code> ficam as
+     * 	locacoes que ainda vencem mais tarde.
+     */
+    public synchronized List<Locacao> retirarVencidas(Date agora) {
+        long hoje = DiaEpoch.de(agora, zona);
+        List<Locacao> vencidas = new ArrayList<>();
+        NavigableMap<Long, List<Locacao>> passados = porDia.headMap(hoje, false);
+        for (List<Locacao> locacoes : passados.values()) {
+            vencidas.addAll(locacoes);
+        }
+        passados.clear();
+
+        List<Locacao> deHoje = porDia.get(hoje);
+        if (deHoje != null) {
+            for (Iterator<Locacao> it = deHoje.iterator(); it.hasNext(); ) {
+                Locacao locacao = it.next();
+                if (locacao.getDataRetorno().before(agora)) {
+                    vencidas.add(locacao);
+                    it.remove();
+                }
+            }
+            if (deHoje.isEmpty()) {
+                porDia.remove(hoje);
+            }
+        }
+        quantidade -= vencidas.size();
+        return vencidas;
+    }
+
+    /**
+     * Quantidade de locacoes no indice, ainda nao retiradas como vencidas
+     */
+    public synchronized int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Quantidade de dias distintos com locacoes a vencer
+     */
+    public synchronized int getQuantidadeDias() {
+        return porDia.size();
+    }
+
+}
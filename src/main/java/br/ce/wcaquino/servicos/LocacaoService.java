@@ -1,115 +1,714 @@
 package br.ce.wcaquino.servicos;
 
+import br.ce.wcaquino.daos.CatalogoFilmes;
 import br.ce.wcaquino.daos.LocacaoDao;
 import br.ce.wcaquino.entidades.Filme;
 import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+import br.ce.wcaquino.entidades.PedidoLocacao;
+import br.ce.wcaquino.entidades.ResultadoLocacao;
+import br.ce.wcaquino.entidades.ResultadoNotificacao;
 import br.ce.wcaquino.entidades.Usuario;
 import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
 import br.ce.wcaquino.exceptions.LocadoraException;
-import br.ce.wcaquino.utils.DataUtils;
+import br.ce.wcaquino.metricas.Etapa;
+import br.ce.wcaquino.metricas.MetricasLocacao;
+import br.ce.wcaquino.metricas.MotivoRejeicao;
+import br.ce.wcaquino.utils.CalendarioComercial;
 
-import java.util.Calendar;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import static br.ce.wcaquino.utils.DataUtils.adicionarDias;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class LocacaoService {
 
 	private final LocacaoDao locacaoDao;
 	private final SpcService spcService;
 	private final EmailService emailService;
+	private NotificadorAtrasos notificadorAtrasos;
+	private IndiceVencimentos indiceVencimentos;
+	private FilaGravacaoLocacoes filaGravacao;
+	private Executor executorSpc = ForkJoinPool.commonPool();
+	private Executor executorPersistencia = ForkJoinPool.commonPool();
+	private PricingEngine pricingEngine = PricingEngine.PADRAO;
+	private Clock clock = Clock.systemDefaultZone();
+	private CalendarioComercial calendarioComercial = CalendarioComercial.fechadoAosDomingos();
+	private int tamanhoLoteAtrasos = 1000;
+	private int limiteUsuariosDeduplicados = 100_000;
+	private EstoqueFilmes estoqueFilmes;
+	private CatalogoFilmes catalogoFilmes;
+	private MetricasLocacao metricas = MetricasLocacao.DESATIVADAS;
 
 	public LocacaoService(LocacaoDao locacaoDao, SpcService spcService, EmailService emailService) {
 		this.locacaoDao = locacaoDao;
 		this.spcService = spcService;
 		this.emailService = emailService;
+		this.notificadorAtrasos = new NotificadorAtrasos(emailService);
+	}
+
+	public LocacaoImutavel alugarFilmes(Usuario usuario, List<Filme> filmes) throws LocadoraException, FilmeSemEstoqueException {
+		validarLocacao(usuario, filmes);
+		EstoqueFilmes.Reserva reserva = reservarEstoque(filmes);
+		try {
+			verificarSpc(usuario, filmes);
+
+			LocacaoImutavel locacao = criarLocacao(usuario, filmes);
+
+			//Salvando a locacao...
+			salvar(locacao);
+
+			reserva.confirmar();
+			return locacao;
+		} finally {
+			reserva.liberar();
+		}
+	}
+
+	/**
+	 * Aluga filmes do catalogo informados pelos seus ids.
+	 * 	Estoque e preco sao lidos direto das colunas do {@link CatalogoFilmes}, sem boxing;
+	 * 	a locacao guarda o nome e o preco de cada filme no momento da locacao.
+	 * 	As copias sao reservadas no proprio catalogo, que e a fonte de verdade do estoque
+	 * 	desses filmes; o {@link EstoqueFilmes} configurado nao e usado aqui.
+	 *
+	 * @param usuario Usuario que esta alugando
+	 * @param idsFilmes Ids dos filmes no catalogo, na ordem de locacao
+	 * @throws IllegalStateException quando nenhum catalogo foi configurado
+	 * @throws IllegalArgumentException quando algum id nao existe no catalogo
+	 */
+	public LocacaoImutavel alugarFilmesDoCatalogo(Usuario usuario, int[] idsFilmes) throws LocadoraException, FilmeSemEstoqueException {
+		if (catalogoFilmes == null) {
+			throw new IllegalStateException("Catalogo de filmes nao configurado");
+		}
+		validarLocacao(usuario, idsFilmes);
+		List<Filme> filmes = catalogoFilmes.getFilmes(idsFilmes);
+		CatalogoFilmes.Reserva reserva = reservarEstoque(idsFilmes);
+		try {
+			verificarSpc(usuario, filmes);
+
+			long inicio = iniciarMedicao();
+			double valor = pricingEngine.calcularValor(catalogoFilmes, idsFilmes);
+			registrarLatencia(Etapa.CALCULO_VALOR, inicio);
+			LocacaoImutavel locacao = criarLocacao(usuario, filmes, valor);
+			salvar(locacao);
+
+			reserva.confirmar();
+			return locacao;
+		} finally {
+			reserva.liberar();
+		}
+	}
+
+	/**
+	 * Versao assincrona de {@link #alugarFilmes(Usuario, List)}.
+	 * 	As validacoes basicas sao feitas no proprio chamador; a consulta ao SPC e a persistencia
+	 * 	rodam nos executores configurados, de modo que a thread chamadora nunca bloqueia em I/O.
+	 * 	Com uma {@link FilaGravacaoLocacoes} configurada, a locacao e entregue a fila e o futuro
+	 * 	e completado quando o lote dela for gravado.
+	 * 	Em caso de erro o futuro e completado com a mesma {@link LocadoraException} ou
+	 * 	{@link FilmeSemEstoqueException} lancada pela versao sincrona.
+	 *
+	 * @param usuario Usuario que esta alugando
+	 * @param filmes Filmes a serem alugados
+	 * @return Futuro com a locacao ja persistida
+	 */
+	public CompletableFuture<LocacaoImutavel> alugarFilmesAsync(Usuario usuario, List<Filme> filmes) {
+		EstoqueFilmes.Reserva reserva;
+		try {
+			validarLocacao(usuario, filmes);
+			reserva = reservarEstoque(filmes);
+		} catch (LocadoraException | FilmeSemEstoqueException e) {
+			CompletableFuture<LocacaoImutavel> falha = new CompletableFuture<>();
+			falha.completeExceptionally(e);
+			return falha;
+		}
+
+		CompletableFuture<LocacaoImutavel> criada = CompletableFuture.supplyAsync(() -> {
+			try {
+				verificarSpc(usuario, filmes);
+			} catch (LocadoraException e) {
+				throw new CompletionException(e);
+			}
+			return criarLocacao(usuario, filmes);
+		}, executorSpc);
+
+		CompletableFuture<LocacaoImutavel> salva;
+		if (filaGravacao != null) {
+			FilaGravacaoLocacoes fila = filaGravacao;
+			salva = criada.thenCompose(locacao -> {
+				Locacao gravada = locacao.paraBean();
+				return fila.enfileirar(gravada).thenApply(confirmada -> {
+					indexar(gravada);
+					reserva.confirmar();
+					return locacao;
+				});
+			});
+		} else {
+			salva = criada.thenApplyAsync(locacao -> {
+				salvar(locacao);
+				reserva.confirmar();
+				return locacao;
+			}, executorPersistencia);
+		}
+		return salva.whenComplete((locacao, erro) -> reserva.liberar());
+	}
+
+	/**
+	 * Define o executor da consulta ao SPC nas operacoes assincronas.
+	 * 	Por se tratar de I/O remoto, prefira um pool dedicado (ou threads virtuais, quando disponiveis)
+	 * 	ao {@link ForkJoinPool#commonPool()} usado por padrao.
+	 */
+	public void setExecutorSpc(Executor executorSpc) {
+		this.executorSpc = executorSpc;
+	}
+
+	/**
+	 * Define o executor da persistencia nas operacoes assincronas.
+	 */
+	public void setExecutorPersistencia(Executor executorPersistencia) {
+		this.executorPersistencia = executorPersistencia;
+	}
+
+	/**
+	 * Define a tabela de descontos usada no calculo do valor das locacoes.
+	 */
+	public void setPricingEngine(PricingEngine pricingEngine) {
+		this.pricingEngine = pricingEngine;
+	}
+
+	/**
+	 * Define a fonte de data/hora usada nas locacoes, prorrogacoes e na verificacao de atrasos.
+	 * 	Nos testes, use {@link Clock#fixed} ou {@link Clock#offset} para simular datas especificas.
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Ativa a gravacao em lotes: as locacoes passam a ser entregues a fila, que as grava numa unica
+	 * 	thread em chamadas a {@link LocacaoDao#salvarTodos(List)}. As operacoes sincronas aguardam a
+	 * 	confirmacao da gravacao antes de retornar; a versao assincrona encadeia o seu futuro nela.
+	 */
+	public void setFilaGravacao(FilaGravacaoLocacoes filaGravacao) {
+		this.filaGravacao = filaGravacao;
+	}
+
+	/**
+	 * Define os dias em que a loja fecha; a devolucao e marcada para o primeiro dia aberto apos a locacao.
+	 * 	Por padrao a loja fecha apenas aos domingos.
+	 */
+	public void setCalendarioComercial(CalendarioComercial calendarioComercial) {
+		this.calendarioComercial = calendarioComercial;
+	}
+
+	/**
+	 * Define quantas locacoes atrasadas sao lidas do DAO por vez em {@link #notificarAtrasos()}.
+	 */
+	public void setTamanhoLoteAtrasos(int tamanhoLoteAtrasos) {
+		if (tamanhoLoteAtrasos <= 0) {
+			throw new IllegalArgumentException("Tamanho do lote deve ser positivo");
+		}
+		this.tamanhoLoteAtrasos = tamanhoLoteAtrasos;
+	}
+
+	/**
+	 * Define quantos usuarios ja notificados sao lembrados em uma chamada a {@link #notificarAtrasos()}
+	 * 	para nao receberem outra notificacao por locacoes de lotes seguintes. Passado o limite, os mais
+	 * 	antigos sao esquecidos e podem ser notificados de novo.
+	 */
+	public void setLimiteUsuariosDeduplicados(int limiteUsuariosDeduplicados) {
+		if (limiteUsuariosDeduplicados <= 0) {
+			throw new IllegalArgumentException("Limite de usuarios deve ser positivo");
+		}
+		this.limiteUsuariosDeduplicados = limiteUsuariosDeduplicados;
+	}
+
+	/**
+	 * Define como as notificacoes de atraso sao despachadas (concorrencia, lotes, limite de envio e tentativas).
+	 */
+	public void setNotificadorAtrasos(NotificadorAtrasos notificadorAtrasos) {
+		this.notificadorAtrasos = notificadorAtrasos;
+	}
+
+	/**
+	 * Ativa o indice de vencimentos: as locacoes salvas e prorrogadas por este servico passam a ser
+	 * 	indexadas pela data de retorno e {@link #notificarAtrasos()} deixa de consultar o DAO, notificando
+	 * 	apenas os usuarios com locacoes que venceram desde a verificacao anterior. Diferente da consulta
+	 * 	ao DAO, que notifica de novo a cada chamada enquanto a locacao estiver atrasada, com o indice cada
+	 * 	locacao gera um unico lembrete bem sucedido; notificacoes que falham sao repetidas na chamada seguinte.
+	 * 	Locacoes ja existentes devem ser carregadas com {@link IndiceVencimentos#adicionarTodas(Collection)}.
+	 */
+	public void setIndiceVencimentos(IndiceVencimentos indiceVencimentos) {
+		this.indiceVencimentos = indiceVencimentos;
 	}
 
-	public Locacao alugarFilmes(Usuario usuario, List<Filme> filmes) throws LocadoraException, FilmeSemEstoqueException {
+	/**
+	 * Ativa o controle de estoque: as copias de todos os filmes da locacao sao reservadas de forma
+	 * 	atomica antes da consulta ao SPC e devolvidas se a locacao nao for concluida.
+	 * 	Sem estoque configurado (padrao), apenas o estoque informado em cada {@link Filme} e verificado.
+	 * 	Locacoes do catalogo reservam no {@link CatalogoFilmes} e nao passam por este controle.
+	 */
+	public void setEstoqueFilmes(EstoqueFilmes estoqueFilmes) {
+		this.estoqueFilmes = estoqueFilmes;
+	}
+
+	/**
+	 * Define o catalogo usado por {@link #alugarFilmesDoCatalogo(Usuario, int[])}.
+	 */
+	public void setCatalogoFilmes(CatalogoFilmes catalogoFilmes) {
+		this.catalogoFilmes = catalogoFilmes;
+	}
+
+	/**
+	 * Define onde sao registradas as latencias de cada etapa da locacao e as rejeicoes por motivo.
+	 * 	Por padrao as metricas ficam desativadas e a instrumentacao nao le o relogio.
+	 */
+	public void setMetricas(MetricasLocacao metricas) {
+		this.metricas = metricas;
+	}
+
+	/**
+	 * Aluga os filmes de varios pedidos de uma vez.
+	 * 	O SPC e consultado uma unica vez por usuario distinto (ou por pedido, quando sua resposta
+	 * 	depende do valor da locacao) e as locacoes validas
+	 * 	sao persistidas numa unica chamada a {@link LocacaoDao#salvarTodos(List)}, ou entregues juntas
+	 * 	a {@link FilaGravacaoLocacoes} configurada.
+	 * 	Falhas de um pedido nao interrompem o processamento dos demais.
+	 *
+	 * @param pedidos Pedidos a serem processados
+	 * @return Um resultado por pedido, na mesma ordem recebida
+	 */
+	public List<ResultadoLocacao> alugarFilmesEmLote(Collection<PedidoLocacao> pedidos) {
+		List<ResultadoLocacao> resultados = new ArrayList<>(pedidos.size());
+		List<Locacao> locacoes = new ArrayList<>(pedidos.size());
+		List<EstoqueFilmes.Reserva> reservas = new ArrayList<>(pedidos.size());
+		Map<Usuario, MotivoRejeicao> consultasSpc = new HashMap<>();
+
+		for (PedidoLocacao pedido : pedidos) {
+			Usuario usuario = pedido.getUsuario();
+			List<Filme> filmes = pedido.getFilmes();
+			try {
+				validarLocacao(usuario, filmes);
+				MotivoRejeicao motivo;
+				if (isSpcDependenteDoValor()) {
+					motivo = consultarSpc(usuario, filmes);
+				} else {
+					if (!consultasSpc.containsKey(usuario)) {
+						consultasSpc.put(usuario, consultarSpc(usuario, filmes));
+					}
+					motivo = consultasSpc.get(usuario);
+				}
+				if (motivo != null) {
+					throw rejeitar(motivo);
+				}
+				reservas.add(reservarEstoque(filmes));
+				LocacaoImutavel locacao = criarLocacao(usuario, filmes);
+				locacoes.add(locacao.paraBean());
+				resultados.add(ResultadoLocacao.sucesso(locacao));
+			} catch (LocadoraException | FilmeSemEstoqueException e) {
+				resultados.add(ResultadoLocacao.falha(e));
+			}
+		}
+
+		try {
+			if (!locacoes.isEmpty()) {
+				salvarTodas(locacoes);
+				if (indiceVencimentos != null) {
+					indiceVencimentos.adicionarTodas(locacoes);
+				}
+			}
+			reservas.forEach(EstoqueFilmes.Reserva::confirmar);
+		} finally {
+			reservas.forEach(EstoqueFilmes.Reserva::liberar);
+		}
+		return resultados;
+	}
+
+	private void validarLocacao(Usuario usuario, List<Filme> filmes) throws LocadoraException, FilmeSemEstoqueException {
 		if (usuario == null) {
-			throw new LocadoraException("Usuario nao informado");
+			throw rejeitar(MotivoRejeicao.USUARIO_NAO_INFORMADO);
 		}
 		if (filmes == null || filmes.isEmpty()) {
-			throw new LocadoraException("Filme nao informado");
+			throw rejeitar(MotivoRejeicao.FILME_NAO_INFORMADO);
 		}
-		if (filmes.stream().anyMatch(filme -> filme.getEstoque() == 0)) {
-			throw new FilmeSemEstoqueException();
+		for (Filme filme : filmes) {
+			if (filme.getEstoque() == 0) {
+				throw semEstoque();
+			}
 		}
+	}
 
+	private void validarLocacao(Usuario usuario, int[] idsFilmes) throws LocadoraException, FilmeSemEstoqueException {
+		if (usuario == null) {
+			throw rejeitar(MotivoRejeicao.USUARIO_NAO_INFORMADO);
+		}
+		if (idsFilmes == null || idsFilmes.length == 0) {
+			throw rejeitar(MotivoRejeicao.FILME_NAO_INFORMADO);
+		}
+		for (int id : idsFilmes) {
+			if (catalogoFilmes.getEstoque(id) == 0) {
+				throw semEstoque();
+			}
+		}
+	}
+
+	private EstoqueFilmes.Reserva reservarEstoque(List<Filme> filmes) throws FilmeSemEstoqueException {
+		if (estoqueFilmes == null) {
+			return EstoqueFilmes.Reserva.NENHUMA;
+		}
+		try {
+			return estoqueFilmes.reservar(filmes);
+		} catch (FilmeSemEstoqueException e) {
+			metricas.registrarRejeicao(MotivoRejeicao.FILME_SEM_ESTOQUE);
+			throw e;
+		}
+	}
+
+	private CatalogoFilmes.Reserva reservarEstoque(int[] idsFilmes) throws FilmeSemEstoqueException {
+		try {
+			return catalogoFilmes.reservar(idsFilmes);
+		} catch (FilmeSemEstoqueException e) {
+			metricas.registrarRejeicao(MotivoRejeicao.FILME_SEM_ESTOQUE);
+			throw e;
+		}
+	}
+
+	private void verificarSpc(Usuario usuario, List<Filme> filmes) throws LocadoraException {
+		MotivoRejeicao motivo = consultarSpc(usuario, filmes);
+		if (motivo != null) {
+			throw rejeitar(motivo);
+		}
+	}
+
+	/**
+	 * Quando o SPC aceita o valor da locacao ({@link SpcServiceComValor}), o valor e calculado e enviado na consulta.
+	 *
+	 * @return o motivo que deve rejeitar a locacao ou <code>null</code> quando o usuario esta liberado
+	 */
+	private MotivoRejeicao consultarSpc(Usuario usuario, List<Filme> filmes) {
+		long inicio = iniciarMedicao();
 		boolean negativado;
 		try {
-			negativado = spcService.possuiNegativacao(usuario);
+			if (spcService instanceof SpcServiceComValor) {
+				negativado = ((SpcServiceComValor) spcService).possuiNegativacao(usuario, pricingEngine.calcularValor(filmes));
+			} else {
+				negativado = spcService.possuiNegativacao(usuario);
+			}
 		} catch (Exception e) {
-			throw new LocadoraException("Problemas com SPC, tente novamente mais tarde.");
+			return MotivoRejeicao.FALHA_SPC;
+		} finally {
+			registrarLatencia(Etapa.CONSULTA_SPC, inicio);
 		}
 
-		if (negativado) {
-			throw new LocadoraException("Usuario negativado junto ao SPC.");
+		return negativado ? MotivoRejeicao.USUARIO_NEGATIVADO : null;
+	}
+
+	private boolean isSpcDependenteDoValor() {
+		return spcService instanceof SpcServiceComValor && ((SpcServiceComValor) spcService).isDependenteDoValor();
+	}
+
+	private LocadoraException rejeitar(MotivoRejeicao motivo) {
+		metricas.registrarRejeicao(motivo);
+		switch (motivo) {
+			case USUARIO_NAO_INFORMADO:
+				return new LocadoraException("Usuario nao informado");
+			case FILME_NAO_INFORMADO:
+				return new LocadoraException("Filme nao informado");
+			case USUARIO_NEGATIVADO:
+				return new LocadoraException("Usuario negativado junto ao SPC.");
+			case FALHA_SPC:
+				return new LocadoraException("Problemas com SPC, tente novamente mais tarde.");
+			default:
+				throw new IllegalArgumentException("Motivo sem mensagem de rejeicao: " + motivo);
 		}
+	}
 
-		Locacao locacao = new Locacao();
-		locacao.setFilmes(filmes);
-		locacao.setUsuario(usuario);
-//		locacao.setDataLocacao(new Date());
-		locacao.setDataLocacao(Calendar.getInstance().getTime());
-		locacao.setValor(calcularValorLocacao(filmes));
+	private FilmeSemEstoqueException semEstoque() {
+		metricas.registrarRejeicao(MotivoRejeicao.FILME_SEM_ESTOQUE);
+		return new FilmeSemEstoqueException();
+	}
 
-		//Entrega no dia seguinte
-//		Date dataEntrega = new Date();
-		Date dataEntrega = Calendar.getInstance().getTime();
-		dataEntrega = adicionarDias(dataEntrega, 1);
-		if (DataUtils.verificarDiaSemana(dataEntrega, Calendar.SUNDAY)) {
-			dataEntrega = adicionarDias(dataEntrega, 1);
+	/*
+	 * Os DAOs, a fila e o indice recebem a locacao como bean
+	 */
+	private void salvar(LocacaoImutavel locacao) {
+		Locacao gravada = locacao.paraBean();
+		long inicio = iniciarMedicao();
+		if (filaGravacao != null) {
+			aguardarGravacao(filaGravacao.enfileirar(gravada));
+		} else {
+			this.locacaoDao.salvar(gravada);
 		}
-		locacao.setDataRetorno(dataEntrega);
+		registrarLatencia(Etapa.PERSISTENCIA, inicio);
+		indexar(gravada);
+	}
 
-		//Salvando a locacao...	
-		this.locacaoDao.salvar(locacao);
+	/*
+	 * Com a fila configurada todas as locacoes sao enfileiradas antes de aguardar, para que o
+	 * 	gravador as agrupe nos seus lotes junto com as demais gravacoes em andamento
+	 */
+	private void salvarTodas(List<Locacao> locacoes) {
+		long inicio = iniciarMedicao();
+		if (filaGravacao != null) {
+			List<CompletableFuture<Locacao>> gravacoes = new ArrayList<>(locacoes.size());
+			for (Locacao locacao : locacoes) {
+				gravacoes.add(filaGravacao.enfileirar(locacao));
+			}
+			for (CompletableFuture<Locacao> gravacao : gravacoes) {
+				aguardarGravacao(gravacao);
+			}
+		} else {
+			this.locacaoDao.salvarTodos(locacoes);
+		}
+		registrarLatencia(Etapa.PERSISTENCIA, inicio);
+	}
 
-		return locacao;
+	private void indexar(Locacao locacao) {
+		if (indiceVencimentos != null) {
+			indiceVencimentos.adicionar(locacao);
+		}
+	}
+
+	private static void aguardarGravacao(CompletableFuture<Locacao> gravacao) {
+		try {
+			gravacao.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/*
+	 * Com as metricas desativadas o relogio nao e lido e a medicao se resume a um teste
+	 */
+	private long iniciarMedicao() {
+		return metricas.isAtivo() ? System.nanoTime() : 0L;
+	}
+
+	private void registrarLatencia(Etapa etapa, long inicio) {
+		if (inicio != 0L) {
+			metricas.registrarLatencia(etapa, System.nanoTime() - inicio);
+		}
+	}
+
+	private LocacaoImutavel criarLocacao(Usuario usuario, List<Filme> filmes) {
+		long inicio = iniciarMedicao();
+		double valor = calcularValorLocacao(filmes);
+		registrarLatencia(Etapa.CALCULO_VALOR, inicio);
+		return criarLocacao(usuario, filmes, valor);
+	}
+
+	private LocacaoImutavel criarLocacao(Usuario usuario, List<Filme> filmes, double valor) {
+		LocacaoImutavel.Construtor locacao = LocacaoImutavel.nova()
+				.comUsuario(usuario)
+				.comFilmes(filmes)
+				.comValor(valor);
+
+		long inicio = iniciarMedicao();
+		ZonedDateTime agora = ZonedDateTime.now(clock);
+		locacao.comDataLocacao(agora.toInstant());
+
+		//Entrega no dia seguinte, ou no primeiro dia em que a loja abrir
+		long hoje = agora.toLocalDate().toEpochDay();
+		long diaEntrega = calendarioComercial.proximoDiaAberto(hoje + 1);
+		locacao.comDataRetorno(agora.plusDays(diaEntrega - hoje).toInstant());
+		registrarLatencia(Etapa.CALCULO_DATAS, inicio);
+		return locacao.construir();
 	}
 
 	private double calcularValorLocacao(List<Filme> filmes) {
-		System.out.println("Calculando valor locacao...");
-		AtomicInteger index = new AtomicInteger();
-		Double valorTotal = filmes.stream().map(filme -> {
-			double preco;
-			switch (index.get()) {
-				case 2 :
-					preco = filme.getPrecoLocacao() * 0.75;
-					break;
-				case 3 : preco = filme.getPrecoLocacao() * 0.50;
-					break;
-				case 4 : preco = filme.getPrecoLocacao() * 0.25;
-					break;
-				case 5 : preco = 0d;
-					break;
-				default : preco = filme.getPrecoLocacao();
-			};
-			index.getAndIncrement();
-			return preco;
-		}).reduce(Double::sum).get();
-		return valorTotal;
-	}
-
-	public void notificarAtrasos() {
-		List<Locacao> locacoes = this.locacaoDao.findLocacoesPendentes();
-		locacoes.stream()
-				.filter(locacao -> locacao.getDataRetorno().before(new Date()))
-				.map(Locacao::getUsuario)
-				.forEach(emailService::notificarAtraso);
-	}
-
-	public void prorrogarLocacao(Locacao locacao, int dias) {
-		Locacao novaLocacao = new Locacao();
-		novaLocacao.setUsuario(locacao.getUsuario());
-		novaLocacao.setFilmes(locacao.getFilmes());
-		novaLocacao.setDataLocacao(new Date());
-		novaLocacao.setDataRetorno(DataUtils.obterDataComDiferencaDias(dias));
-		novaLocacao.setValor(locacao.getValor() * dias);
-		locacaoDao.salvar(novaLocacao);
-	}
-
-}
\ No newline at end of file
+		return pricingEngine.calcularValor(filmes);
+	}
+
+	/**
+	 * Notifica os usuarios com locacoes atrasadas.
+	 * 	As locacoes sao lidas do DAO em lotes ja filtrados pela data atual, obtida uma unica vez, e cada
+	 * 	lote e despachado pelo {@link NotificadorAtrasos} configurado assim que lido, de modo que a memoria
+	 * 	usada nao cresce com o total de atrasadas.
+	 * 	Com um {@link IndiceVencimentos} configurado, sao lidas do indice apenas as locacoes que
+	 * 	venceram desde a chamada anterior: cada atraso e notificado uma unica vez, e as locacoes
+	 * 	dos usuarios cuja notificacao falhou voltam ao indice para a chamada seguinte.
+	 * 	Cada usuario recebe uma unica notificacao, mesmo com varias locacoes atrasadas em lotes diferentes,
+	 * 	enquanto nao passar de {@link #setLimiteUsuariosDeduplicados(int)} usuarios distintos por chamada.
+	 *
+	 * @return Quantidade de usuarios notificados e de notificacoes que falharam
+	 */
+	public ResultadoNotificacao notificarAtrasos() {
+		Date agora = Date.from(clock.instant());
+		Set<Usuario> notificados = conjuntoLimitado(limiteUsuariosDeduplicados);
+		if (indiceVencimentos != null) {
+			List<Locacao> vencidas = indiceVencimentos.retirarVencidas(agora);
+			ResultadoNotificacao resultado = null;
+			try {
+				resultado = notificarUsuariosDe(vencidas, notificados);
+			} finally {
+				// sem resultado nao se sabe quem foi notificado: todas as retiradas voltam ao indice
+				if (resultado == null) {
+					indiceVencimentos.adicionarTodas(vencidas);
+				}
+			}
+			devolverAoIndice(vencidas, resultado.getNaoNotificados());
+			return resultado;
+		}
+		ResultadoNotificacao.Acumulador acumulador = new ResultadoNotificacao.Acumulador();
+		this.locacaoDao.findLocacoesAtrasadas(agora, tamanhoLoteAtrasos,
+				lote -> acumulador.adicionar(notificarUsuariosDe(lote, notificados)));
+		return acumulador.getResultado();
+	}
+
+	/*
+	 * Notifica os usuarios do lote que ainda nao foram notificados nesta chamada
+	 */
+	private ResultadoNotificacao notificarUsuariosDe(List<Locacao> lote, Set<Usuario> notificados) {
+		Set<Usuario> usuarios = new LinkedHashSet<>();
+		for (Locacao locacao : lote) {
+			if (notificados.add(locacao.getUsuario())) {
+				usuarios.add(locacao.getUsuario());
+			}
+		}
+		if (usuarios.isEmpty()) {
+			return new ResultadoNotificacao(0, Collections.emptyList());
+		}
+		return notificadorAtrasos.notificar(usuarios);
+	}
+
+	/*
+	 * As locacoes de usuarios que nao foram notificados voltam ao indice, ainda vencidas,
+	 * para serem notificadas novamente na proxima chamada
+	 */
+	private void devolverAoIndice(List<Locacao> vencidas, List<Usuario> naoNotificados) {
+		if (naoNotificados.isEmpty()) {
+			return;
+		}
+		Set<Usuario> usuarios = new HashSet<>(naoNotificados);
+		for (Locacao locacao : vencidas) {
+			if (usuarios.contains(locacao.getUsuario())) {
+				indiceVencimentos.adicionar(locacao);
+			}
+		}
+	}
+
+	/*
+	 * Conjunto que esquece os elementos mais antigos ao passar do limite
+	 */
+	private static <T> Set<T> conjuntoLimitado(int limite) {
+		return Collections.newSetFromMap(new LinkedHashMap<T, Boolean>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<T, Boolean> maisAntigo) {
+				return size() > limite;
+			}
+		});
+	}
+
+	/**
+	 * Prorroga a locacao, com as mesmas validacoes de {@link #prorrogarLocacoes(Collection, int)}.
+	 * 	Com o {@link IndiceVencimentos} configurado, a locacao deve ser a instancia gravada (lida do DAO)
+	 * 	para que a original saia do indice.
+	 *
+	 * @return A nova locacao gerada pela prorrogacao
+	 * @throws LocadoraException quando a locacao esta incompleta (sem usuario, filmes ou valor)
+	 * @throws IllegalArgumentException quando a quantidade de dias nao e positiva
+	 */
+	public LocacaoImutavel prorrogarLocacao(Locacao locacao, int dias) throws LocadoraException {
+		validarDiasProrrogacao(dias);
+		validarProrrogacao(locacao);
+		LocacaoImutavel novaLocacao = prorrogar(locacao, ZonedDateTime.now(clock), dias);
+		salvar(novaLocacao);
+		if (indiceVencimentos != null) {
+			indiceVencimentos.remover(locacao);
+		}
+		return novaLocacao;
+	}
+
+	/**
+	 * Prorroga varias locacoes de uma vez, por exemplo quando a loja fecha num feriado.
+	 * 	As datas de todas as prorrogacoes partem de uma unica leitura do relogio e as novas
+	 * 	locacoes sao persistidas numa unica chamada a {@link LocacaoDao#salvarTodos(List)}, ou entregues
+	 * 	juntas a {@link FilaGravacaoLocacoes} configurada.
+	 * 	Locacoes incompletas (sem usuario, filmes ou valor) falham individualmente sem interromper as demais.
+	 *
+	 * @param locacoes Locacoes a serem prorrogadas
+	 * @param dias Quantidade de dias da prorrogacao
+	 * @return Um resultado por locacao, na mesma ordem recebida, com a nova locacao gerada
+	 */
+	public List<ResultadoLocacao> prorrogarLocacoes(Collection<Locacao> locacoes, int dias) {
+		validarDiasProrrogacao(dias);
+		ZonedDateTime agora = ZonedDateTime.now(clock);
+		List<ResultadoLocacao> resultados = new ArrayList<>(locacoes.size());
+		List<Locacao> originais = new ArrayList<>(locacoes.size());
+		List<Locacao> novasLocacoes = new ArrayList<>(locacoes.size());
+		for (Locacao locacao : locacoes) {
+			try {
+				validarProrrogacao(locacao);
+				LocacaoImutavel novaLocacao = prorrogar(locacao, agora, dias);
+				originais.add(locacao);
+				novasLocacoes.add(novaLocacao.paraBean());
+				resultados.add(ResultadoLocacao.sucesso(novaLocacao));
+			} catch (LocadoraException e) {
+				resultados.add(ResultadoLocacao.falha(e));
+			}
+		}
+
+		if (!novasLocacoes.isEmpty()) {
+			salvarTodas(novasLocacoes);
+			if (indiceVencimentos != null) {
+				indiceVencimentos.adicionarTodas(novasLocacoes);
+				for (Locacao original : originais) {
+					indiceVencimentos.remover(original);
+				}
+			}
+		}
+		return resultados;
+	}
+
+	private static void validarDiasProrrogacao(int dias) {
+		if (dias <= 0) {
+			throw new IllegalArgumentException("Quantidade de dias da prorrogacao deve ser positiva");
+		}
+	}
+
+	private void validarProrrogacao(Locacao locacao) throws LocadoraException {
+		if (locacao == null) {
+			throw new LocadoraException("Locacao nao informada");
+		}
+		if (locacao.getUsuario() == null) {
+			throw new LocadoraException("Usuario nao informado");
+		}
+		if (locacao.getFilmes() == null || locacao.getFilmes().isEmpty()) {
+			throw new LocadoraException("Filme nao informado");
+		}
+		if (locacao.getValor() == null) {
+			throw new LocadoraException("Valor da locacao nao informado");
+		}
+	}
+
+	private LocacaoImutavel prorrogar(Locacao locacao, ZonedDateTime agora, int dias) {
+		return LocacaoImutavel.nova()
+				.comUsuario(locacao.getUsuario())
+				.comFilmes(locacao.getFilmes())
+				.comDataLocacao(agora.toInstant())
+				.comDataRetorno(agora.plusDays(dias).toInstant())
+				.comValor(locacao.getValor() * dias)
+				.construir();
+	}
+
+}
@@ -0,0 +1,235 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.ResultadoNotificacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.NotificacaoParcialException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Envia as notificacoes de atraso em lotes, usando {@link EmailService#notificarAtrasos(Collection)}.
+ * 	Cada usuario e notificado uma unica vez por envio. Os lotes sao despachados por um numero limitado
+ * 	de threads, respeitando um limite opcional de notificacoes por segundo. Quando um lote falha, apenas
+ * 	os usuarios nao notificados (informados por {@link NotificacaoParcialException}) sao reenviados, ate o
+ * 	maximo de tentativas e com espera crescente entre elas; qualquer outra falha reenvia o lote inteiro.
+ * 	A ultima excecao de cada lote que termina com usuarios nao notificados e devolvida no resultado.
+ */
+public class NotificadorAtrasos {
+
+    private final EmailService emailService;
+    private int concorrencia = 4;
+    private int tamanhoLote = 100;
+    private int maximoTentativas = 3;
+    private long esperaEntreTentativasMillis = 200;
+    private double notificacoesPorSegundo;
+    private Executor executor;
+
+    public NotificadorAtrasos(EmailService emailService) {
+        this.emailService = emailService;
+    }
+
+    public NotificadorAtrasos comConcorrencia(int concorrencia) {
+        if (concorrencia <= 0) {
+            throw new IllegalArgumentException("Concorrencia deve ser positiva");
+        }
+        this.concorrencia = concorrencia;
+        return this;
+    }
+
+    public NotificadorAtrasos comTamanhoLote(int tamanhoLote) {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("Tamanho do lote deve ser positivo");
+        }
+        this.tamanhoLote = tamanhoLote;
+        return this;
+    }
+
+    public NotificadorAtrasos comMaximoTentativas(int maximoTentativas) {
+        if (maximoTentativas <= 0) {
+            throw new IllegalArgumentException("Maximo de tentativas deve ser positivo");
+        }
+        this.maximoTentativas = maximoTentativas;
+        return this;
+    }
+
+    /**
+     * Espera antes da segunda tentativa; dobra a cada nova tentativa do mesmo lote
+     */
+    public NotificadorAtrasos comEsperaEntreTentativas(long espera, TimeUnit unidade) {
+        this.esperaEntreTentativasMillis = unidade.toMillis(espera);
+        return this;
+    }
+
+    /**
+     * Limita a vazao de envio. Zero (padrao) significa sem limite.
+     */
+    public NotificadorAtrasos comLimiteNotificacoesPorSegundo(double notificacoesPorSegundo) {
+        if (notificacoesPorSegundo < 0) {
+            throw new IllegalArgumentException("Limite de notificacoes nao pode ser negativo");
+        }
+        this.notificacoesPorSegundo = notificacoesPorSegundo;
+        return this;
+    }
+
+    /**
+     * Executor dos envios. Por padrao e criado, no primeiro envio, um pool de threads daemon reaproveitado
+     * 	pelos envios seguintes; em qualquer caso, no maximo {@link #comConcorrencia(int)} lotes sao enviados ao mesmo tempo.
+     */
+    public NotificadorAtrasos comExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public ResultadoNotificacao notificar(Collection<Usuario> usuarios) {
+        List<List<Usuario>> lotes = dividirEmLotes(new LinkedHashSet<>(usuarios));
+        if (lotes.isEmpty()) {
+            return new ResultadoNotificacao(0, Collections.emptyList());
+        }
+
+        AtomicInteger proximoLote = new AtomicInteger();
+        // resultado de cada lote; null enquanto o lote nao termina
+        AtomicReferenceArray<ResultadoNotificacao> resultadosPorLote = new AtomicReferenceArray<>(lotes.size());
+        AtomicBoolean cancelado = new AtomicBoolean();
+        LimitadorTaxa limitador = new LimitadorTaxa(notificacoesPorSegundo);
+        // cada trabalhador retira o proximo lote ainda nao enviado: a concorrencia nao depende do executor
+        Runnable trabalhador = () -> {
+            int indice;
+            while (!cancelado.get() && (indice = proximoLote.getAndIncrement()) < lotes.size()) {
+                resultadosPorLote.set(indice, enviar(lotes.get(indice), limitador));
+            }
+        };
+        int trabalhadores = Math.min(concorrencia, lotes.size());
+        List<CompletableFuture<Void>> envios = new ArrayList<>(trabalhadores);
+        for (int i = 0; i < trabalhadores; i++) {
+            envios.add(CompletableFuture.runAsync(trabalhador, getExecutor()));
+        }
+        try {
+            for (CompletableFuture<Void> envio : envios) {
+                envio.get();
+            }
+        } catch (InterruptedException e) {
+            cancelado.set(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            cancelado.set(true);
+            throw new IllegalStateException("Falha inesperada ao notificar atrasos", e.getCause());
+        }
+        ResultadoNotificacao.Acumulador acumulador = new ResultadoNotificacao.Acumulador();
+        for (int i = 0; i < lotes.size(); i++) {
+            ResultadoNotificacao resultado = resultadosPorLote.get(i);
+            if (resultado == null) {
+                acumulador.adicionarFalhas(lotes.get(i));
+            } else {
+                acumulador.adicionar(resultado);
+            }
+        }
+        return acumulador.getResultado();
+    }
+
+    /*
+     * Reenvia apenas os usuarios que ficaram sem notificacao; cada tentativa passa pelo limitador
+     *
+     * @return resultado do lote, com os usuarios nao notificados apos todas as tentativas e a ultima falha
+     */
+    private ResultadoNotificacao enviar(List<Usuario> lote, LimitadorTaxa limitador) {
+        List<Usuario> pendentes = lote;
+        Exception ultimaFalha = null;
+        try {
+            long espera = esperaEntreTentativasMillis;
+            for (int tentativa = 1; ; tentativa++) {
+                limitador.adquirir(pendentes.size());
+                try {
+                    emailService.notificarAtrasos(pendentes);
+                    return new ResultadoNotificacao(lote.size(), Collections.emptyList());
+                } catch (NotificacaoParcialException e) {
+                    pendentes = e.getNaoNotificados();
+                    ultimaFalha = e;
+                } catch (RuntimeException e) {
+                    // falha sem detalhes: nenhum usuario foi notificado e os mesmos pendentes sao reenviados
+                    ultimaFalha = e;
+                }
+                if (pendentes.isEmpty() || tentativa >= maximoTentativas) {
+                    return resultadoDoLote(lote, pendentes, ultimaFalha);
+                }
+                TimeUnit.MILLISECONDS.sleep(espera);
+                espera *= 2;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return resultadoDoLote(lote, pendentes, e);
+        }
+    }
+
+    private static ResultadoNotificacao resultadoDoLote(List<Usuario> lote, List<Usuario> pendentes, Exception falha) {
+        List<Throwable> causas = pendentes.isEmpty() ? Collections.emptyList() : Collections.singletonList(falha);
+        return new ResultadoNotificacao(lote.size() - pendentes.size(), pendentes, causas);
+    }
+
+    private synchronized Executor getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(tarefa -> {
+                Thread thread = new Thread(tarefa, "notificador-atrasos");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private List<List<Usuario>> dividirEmLotes(Collection<Usuario> usuarios) {
+        List<List<Usuario>> lotes = new ArrayList<>();
+        List<Usuario> lote = new ArrayList<>(tamanhoLote);
+        for (Usuario usuario : usuarios) {
+            lote.add(usuario);
+            if (lote.size() == tamanhoLote) {
+                lotes.add(lote);
+                lote = new ArrayList<>(tamanhoLote);
+            }
+        }
+        if (!lote.isEmpty()) {
+            lotes.add(lote);
+        }
+        return lotes;
+    }
+
+    /*
+     * Distribui as permissoes em intervalos regulares: cada notificacao reserva
+     * o proximo intervalo livre e a thread dorme ate o inicio da sua reserva.
+     */
+    private static class LimitadorTaxa {
+        private final long intervaloNanos;
+        private long proximaLiberacao;
+
+        private LimitadorTaxa(double permissoesPorSegundo) {
+            this.intervaloNanos = permissoesPorSegundo > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permissoesPorSegundo) : 0;
+            this.proximaLiberacao = System.nanoTime();
+        }
+
+        private void adquirir(int permissoes) throws InterruptedException {
+            if (intervaloNanos == 0) {
+                return;
+            }
+            long espera;
+            synchronized (this) {
+                long agora = System.nanoTime();
+                espera = proximaLiberacao - agora;
+                proximaLiberacao = Math.max(proximaLiberacao, agora) + intervaloNanos * permissoes;
+            }
+            if (espera > 0) {
+                TimeUnit.NANOSECONDS.sleep(espera);
+            }
+        }
+    }
+}
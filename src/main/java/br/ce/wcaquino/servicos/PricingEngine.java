@@ -0,0 +1,105 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.CatalogoFilmes;
+import br.ce.wcaquino.entidades.Filme;
+
+import java.util.List;
+
+/**
+ * Calcula o valor de uma locacao aplicando um desconto progressivo conforme a posicao do filme no carrinho.
+ * 	A tabela de descontos e informada como dados: o fator da posicao <code>i</code> multiplica o preco
+ * 	do <code>i</code>-esimo filme (comecando em zero). Posicoes alem da tabela pagam o preco cheio.
+ * 	Os calculos usam apenas aritmetica primitiva e nao alocam objetos.
+ */
+public class PricingEngine {
+
+    /**
+     * Tabela padrao da locadora: 3o filme 25% de desconto, 4o 50%, 5o 75% e 6o gratuito.
+     */
+    public static final PricingEngine PADRAO = new PricingEngine(1.0, 1.0, 0.75, 0.50, 0.25, 0.0);
+
+    private final double[] fatores;
+
+    /**
+     * @param fatores Fator multiplicador do preco para cada posicao do carrinho
+     */
+    public PricingEngine(double... fatores) {
+        for (double fator : fatores) {
+            if (fator < 0 || Double.isNaN(fator)) {
+                throw new IllegalArgumentException("Fator de desconto invalido: " + fator);
+            }
+        }
+        this.fatores = fatores.clone();
+    }
+
+    /**
+     * Retorna o fator aplicado ao filme na posicao informada (comecando em zero)
+     */
+    public double fator(int posicao) {
+        return posicao < fatores.length ? fatores[posicao] : 1.0;
+    }
+
+    public double calcularValor(List<Filme> filmes) {
+        double total = 0;
+        int posicao = 0;
+        for (Filme filme : filmes) {
+            total += filme.getPrecoLocacao() * fator(posicao++);
+        }
+        return total;
+    }
+
+    /**
+     * Calcula o valor de um carrinho representado apenas pelos precos de cada filme, na ordem de locacao
+     */
+    public double calcularValor(double[] precos) {
+        double total = 0;
+        for (int i = 0; i < precos.length; i++) {
+            total += precos[i] * fator(i);
+        }
+        return total;
+    }
+
+    /**
+     * Calcula o valor de um carrinho de filmes do catalogo, lendo os precos direto das colunas
+     *
+     * @param ids Ids dos filmes no catalogo, na ordem de locacao
+     */
+    public double calcularValor(CatalogoFilmes catalogo, int[] ids) {
+        double total = 0;
+        for (int i = 0; i < ids.length; i++) {
+            total += catalogo.getPreco(ids[i]) * fator(i);
+        }
+        return total;
+    }
+
+    /**
+     * Calcula o valor de varios carrinhos de uma vez
+     *
+     * @param carrinhos Filmes de cada carrinho
+     * @return Valor de cada carrinho, na mesma ordem recebida
+     */
+    public double[] calcularValores(List<? extends List<Filme>> carrinhos) {
+        double[] valores = new double[carrinhos.size()];
+        int i = 0;
+        for (List<Filme> carrinho : carrinhos) {
+            valores[i++] = calcularValor(carrinho);
+        }
+        return valores;
+    }
+
+    /**
+     * Calcula o valor de varios carrinhos gravando o resultado em <code>destino</code>,
+     * 	permitindo reaproveitar o mesmo array entre chamadas.
+     *
+     * @param precos Precos dos filmes de cada carrinho
+     * @param destino Array que recebera o valor de cada carrinho; deve ter ao menos <code>precos.length</code> posicoes
+     */
+    public void calcularValores(double[][] precos, double[] destino) {
+        if (destino.length < precos.length) {
+            throw new IllegalArgumentException("Destino menor que a quantidade de carrinhos");
+        }
+        for (int i = 0; i < precos.length; i++) {
+            destino[i] = calcularValor(precos[i]);
+        }
+    }
+}
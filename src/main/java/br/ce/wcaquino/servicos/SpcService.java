@@ -2,6 +2,26 @@ package br.ce.wcaquino.servicos;
 
 import br.ce.wcaquino.entidades.Usuario;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 public interface SpcService {
     boolean possuiNegativacao(Usuario usuario) throws Exception;
+
+    /**
+     * Consulta varios usuarios de uma vez. A implementacao padrao faz uma consulta por usuario;
+     * 	clientes de SPC com consulta em lote devem sobrescrever este metodo.
+     *
+     * @return situacao de cada usuario consultado
+     */
+    default Map<Usuario, Boolean> possuiNegativacao(Collection<Usuario> usuarios) throws Exception {
+        Map<Usuario, Boolean> negativacoes = new HashMap<>();
+        for (Usuario usuario : usuarios) {
+            if (!negativacoes.containsKey(usuario)) {
+                negativacoes.put(usuario, possuiNegativacao(usuario));
+            }
+        }
+        return negativacoes;
+    }
 }
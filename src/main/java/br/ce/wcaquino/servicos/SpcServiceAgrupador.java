@@ -0,0 +1,205 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Usuario;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorator de {@link SpcService} que junta consultas simultaneas de usuarios diferentes em uma
+ * 	unica consulta em lote ({@link SpcService#possuiNegativacao(Collection)}).
+ * 	Cada chamador fica bloqueado ate a resposta do seu lote. Um lote e enviado quando atinge o
+ * 	tamanho maximo ou quando a espera maxima desde o primeiro pedido acaba, o que vier antes.
+ *
+ * 	Os lotes sao enviados por uma unica thread, um de cada vez: enquanto uma consulta em lote
+ * 	esta em andamento, os novos pedidos se acumulam para o proximo lote.
+ */
+public class SpcServiceAgrupador implements SpcService, Closeable {
+
+    private static final Pedido FIM = new Pedido(null);
+
+    private final SpcService spcService;
+    private final int tamanhoMaximoLote;
+    private final long esperaNanos;
+    private final BlockingQueue<Pedido> pedidos = new LinkedBlockingQueue<>();
+    private final Thread despachante;
+    private final LongAdder consultasEmLote = new LongAdder();
+    private final LongAdder usuariosConsultados = new LongAdder();
+    private volatile boolean encerrado;
+
+    /**
+     * @param tamanhoMaximoLote Quantidade de pedidos que dispara o envio imediato do lote
+     * @param esperaMaxima Tempo maximo que o primeiro pedido de um lote aguarda outros pedidos
+     */
+    public SpcServiceAgrupador(SpcService spcService, int tamanhoMaximoLote, long esperaMaxima, TimeUnit unidade) {
+        if (tamanhoMaximoLote <= 0) {
+            throw new IllegalArgumentException("Tamanho maximo do lote deve ser positivo");
+        }
+        this.spcService = spcService;
+        this.tamanhoMaximoLote = tamanhoMaximoLote;
+        this.esperaNanos = unidade.toNanos(esperaMaxima);
+        this.despachante = new Thread(this::despachar, "spc-agrupador");
+        this.despachante.setDaemon(true);
+        this.despachante.start();
+    }
+
+    @Override
+    public boolean possuiNegativacao(Usuario usuario) throws Exception {
+        Pedido pedido = new Pedido(usuario);
+        pedidos.add(pedido);
+        // se o encerramento aconteceu antes, o despachante pode nao ver mais a fila
+        if (encerrado && pedidos.remove(pedido)) {
+            throw new IllegalStateException("Agrupador de consultas ao SPC encerrado");
+        }
+        return aguardar(pedido.resposta);
+    }
+
+    /**
+     * Consultas em lote feitas diretamente ja estao agrupadas e vao direto ao servico decorado
+     */
+    @Override
+    public Map<Usuario, Boolean> possuiNegativacao(Collection<Usuario> usuarios) throws Exception {
+        return spcService.possuiNegativacao(usuarios);
+    }
+
+    public long getConsultasEmLote() {
+        return consultasEmLote.sum();
+    }
+
+    public long getUsuariosConsultados() {
+        return usuariosConsultados.sum();
+    }
+
+    /**
+     * Envia os pedidos ja recebidos e encerra o despachante; novos pedidos sao recusados
+     */
+    @Override
+    public synchronized void close() {
+        if (encerrado) {
+            return;
+        }
+        encerrado = true;
+        pedidos.add(FIM);
+        try {
+            despachante.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void despachar() {
+        List<Pedido> lote = new ArrayList<>(tamanhoMaximoLote);
+        boolean fim = false;
+        while (!fim) {
+            try {
+                Pedido primeiro = pedidos.take();
+                if (primeiro == FIM) {
+                    fim = true;
+                } else {
+                    lote.add(primeiro);
+                    fim = completarLote(lote, System.nanoTime() + esperaNanos);
+                }
+            } catch (InterruptedException e) {
+                fim = true;
+            }
+            enviar(lote);
+        }
+
+        // pedidos que entraram na fila junto com o encerramento
+        pedidos.drainTo(lote);
+        while (!lote.isEmpty()) {
+            enviar(lote.subList(0, Math.min(tamanhoMaximoLote, lote.size())));
+        }
+    }
+
+    /**
+     * Aguarda novos pedidos ate o lote encher ou o prazo acabar
+     *
+     * @return <code>true</code> se o encerramento foi pedido
+     */
+    private boolean completarLote(List<Pedido> lote, long limite) throws InterruptedException {
+        while (lote.size() < tamanhoMaximoLote) {
+            long restante = limite - System.nanoTime();
+            Pedido proximo = restante > 0 ? pedidos.poll(restante, TimeUnit.NANOSECONDS) : pedidos.poll();
+            if (proximo == null) {
+                return false;
+            }
+            if (proximo == FIM) {
+                return true;
+            }
+            lote.add(proximo);
+        }
+        return false;
+    }
+
+    /**
+     * Faz a consulta em lote e completa cada pedido; esvazia a lista recebida
+     */
+    private void enviar(List<Pedido> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        Map<Usuario, List<Pedido>> porUsuario = new LinkedHashMap<>();
+        for (Pedido pedido : lote) {
+            porUsuario.computeIfAbsent(pedido.usuario, u -> new ArrayList<>(1)).add(pedido);
+        }
+        lote.clear();
+
+        consultasEmLote.increment();
+        usuariosConsultados.add(porUsuario.size());
+        Map<Usuario, Boolean> negativacoes;
+        try {
+            negativacoes = spcService.possuiNegativacao(new ArrayList<>(porUsuario.keySet()));
+        } catch (Exception | Error e) {
+            for (List<Pedido> pedidosDoUsuario : porUsuario.values()) {
+                for (Pedido pedido : pedidosDoUsuario) {
+                    pedido.resposta.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+
+        for (Map.Entry<Usuario, List<Pedido>> entrada : porUsuario.entrySet()) {
+            Boolean negativado = negativacoes != null ? negativacoes.get(entrada.getKey()) : null;
+            for (Pedido pedido : entrada.getValue()) {
+                if (negativado != null) {
+                    pedido.resposta.complete(negativado);
+                } else {
+                    pedido.resposta.completeExceptionally(
+                            new IllegalStateException("SPC nao retornou a situacao do usuario " + entrada.getKey().getNome()));
+                }
+            }
+        }
+    }
+
+    private static boolean aguardar(CompletableFuture<Boolean> resposta) throws Exception {
+        try {
+            return resposta.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) {
+                throw (Exception) causa;
+            }
+            throw e;
+        }
+    }
+
+    private static class Pedido {
+        private final Usuario usuario;
+        private final CompletableFuture<Boolean> resposta = new CompletableFuture<>();
+
+        private Pedido(Usuario usuario) {
+            this.usuario = usuario;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Usuario;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Decorator de {@link SpcService} que mantem em memoria o resultado das consultas por usuario.
+ * 	Tanto usuarios negativados quanto liberados ficam em cache ate expirar o TTL; falhas da
+ * 	consulta nao sao guardadas. Quando o limite de entradas e atingido, a menos usada
+ * 	recentemente e descartada (LRU). Consultas simultaneas para o mesmo usuario sao
+ * 	agrupadas em uma unica chamada ao servico decorado.
+ */
+public class SpcServiceCache implements SpcService {
+
+    private final SpcService spcService;
+    private final long ttlNanos;
+    private final LongSupplier relogio;
+    private final Map<Usuario, Entrada> entradas;
+    private final ConcurrentMap<Usuario, CompletableFuture<Boolean>> consultasEmAndamento = new ConcurrentHashMap<>();
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+
+    public SpcServiceCache(SpcService spcService, long ttl, TimeUnit unidade, int tamanhoMaximo) {
+        this(spcService, ttl, unidade, tamanhoMaximo, System::nanoTime);
+    }
+
+    /**
+     * @param relogio Fonte de tempo em nanossegundos, substituivel nos testes
+     */
+    public SpcServiceCache(SpcService spcService, long ttl, TimeUnit unidade, int tamanhoMaximo, LongSupplier relogio) {
+        if (tamanhoMaximo <= 0) {
+            throw new IllegalArgumentException("Tamanho maximo deve ser positivo");
+        }
+        this.spcService = spcService;
+        this.ttlNanos = unidade.toNanos(ttl);
+        this.relogio = relogio;
+        this.entradas = new LinkedHashMap<Usuario, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Usuario, Entrada> maisAntiga) {
+                return size() > tamanhoMaximo;
+            }
+        };
+    }
+
+    @Override
+    public boolean possuiNegativacao(Usuario usuario) throws Exception {
+        Boolean emCache = buscar(usuario);
+        if (emCache != null) {
+            acertos.increment();
+            return emCache;
+        }
+        faltas.increment();
+
+        CompletableFuture<Boolean> consulta = new CompletableFuture<>();
+        CompletableFuture<Boolean> emAndamento = consultasEmAndamento.putIfAbsent(usuario, consulta);
+        if (emAndamento != null) {
+            return aguardar(emAndamento);
+        }
+
+        try {
+            // outra consulta pode ter terminado entre a busca no cache e o registro desta
+            Boolean concluida = buscar(usuario);
+            if (concluida != null) {
+                consulta.complete(concluida);
+                return concluida;
+            }
+            boolean negativado = spcService.possuiNegativacao(usuario);
+            guardar(usuario, negativado);
+            consulta.complete(negativado);
+            return negativado;
+        } catch (Exception | Error e) {
+            // com um Error a consulta tambem precisa ser concluida, ou quem a aguarda ficaria bloqueado
+            consulta.completeExceptionally(e);
+            throw e;
+        } finally {
+            consultasEmAndamento.remove(usuario, consulta);
+        }
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    /**
+     * Consultas que nao encontraram resultado valido no cache (cache misses)
+     */
+    public long getFaltas() {
+        return faltas.sum();
+    }
+
+    public int getTamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public void invalidar(Usuario usuario) {
+        synchronized (entradas) {
+            entradas.remove(usuario);
+        }
+    }
+
+    private Boolean buscar(Usuario usuario) {
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(usuario);
+            if (entrada == null) {
+                return null;
+            }
+            if (relogio.getAsLong() - entrada.criadaEm >= ttlNanos) {
+                entradas.remove(usuario);
+                return null;
+            }
+            return entrada.negativado;
+        }
+    }
+
+    private void guardar(Usuario usuario, boolean negativado) {
+        synchronized (entradas) {
+            entradas.put(usuario, new Entrada(negativado, relogio.getAsLong()));
+        }
+    }
+
+    private static boolean aguardar(CompletableFuture<Boolean> consulta) throws Exception {
+        try {
+            return consulta.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) {
+                throw (Exception) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw e;
+        }
+    }
+
+    private static class Entrada {
+        private final boolean negativado;
+        private final long criadaEm;
+
+        private Entrada(boolean negativado, long criadaEm) {
+            this.negativado = negativado;
+            this.criadaEm = criadaEm;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Usuario;
+
+/**
+ * {@link SpcService} que pode considerar o valor da locacao na resposta, por exemplo para
+ * 	liberar locacoes baratas quando o SPC esta fora do ar.
+ */
+public interface SpcServiceComValor extends SpcService {
+
+    boolean possuiNegativacao(Usuario usuario, double valorLocacao) throws Exception;
+
+    /**
+     * Indica se a resposta pode mudar conforme o valor. Quando <code>false</code> o chamador pode
+     * 	reaproveitar a resposta de um usuario para varias locacoes.
+     */
+    default boolean isDependenteDoValor() {
+        return true;
+    }
+}
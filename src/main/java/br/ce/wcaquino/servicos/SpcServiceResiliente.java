@@ -0,0 +1,336 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.SpcIndisponivelException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Decorator de {@link SpcService} que limita o tempo que um chamador pode ficar preso quando o SPC degrada.
+ * 	<ul>
+ * 	<li>Bulkhead: no maximo N consultas em andamento; as excedentes nao esperam.</li>
+ * 	<li>Timeout: cada consulta roda numa thread propria e o chamador desiste apos o prazo.
+ * 	A permissao do bulkhead so e devolvida quando a consulta realmente termina.</li>
+ * 	<li>Circuit breaker: se a taxa de falhas nas ultimas N consultas passar do limite, o circuito
+ * 	abre e as consultas falham na hora; apos um tempo uma unica consulta de teste decide se ele fecha.</li>
+ * 	</ul>
+ * 	Quando a consulta nao pode ser feita ou falha, a {@link PoliticaFallback} configurada decide a resposta.
+ */
+public class SpcServiceResiliente implements SpcServiceComValor {
+
+    public enum Estado {
+        FECHADO, ABERTO, MEIO_ABERTO
+    }
+
+    public enum PoliticaFallback {
+        /**
+         * Propaga uma {@link SpcIndisponivelException} (padrao)
+         */
+        REJEITAR,
+        /**
+         * Responde com a ultima resposta obtida do SPC para o usuario; sem resposta anterior, rejeita
+         */
+        ULTIMA_RESPOSTA,
+        /**
+         * Libera locacoes com valor abaixo do limite configurado; as demais sao rejeitadas
+         */
+        LIBERAR_ABAIXO_DO_LIMITE
+    }
+
+    private final SpcService spcService;
+    private final LongSupplier relogio;
+    private final ExecutorService executor = Executors.newCachedThreadPool(tarefa -> {
+        Thread thread = new Thread(tarefa, "spc-resiliente");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // configuracao que pode ser trocada com consultas em andamento
+    private volatile Semaphore permissoes = new Semaphore(10);
+    private volatile long timeoutNanos = TimeUnit.SECONDS.toNanos(2);
+    private volatile long tempoAbertoNanos = TimeUnit.SECONDS.toNanos(30);
+    private volatile PoliticaFallback politica = PoliticaFallback.REJEITAR;
+    private volatile double limiteLiberacao;
+    private double taxaFalhasMaxima = 0.5;
+    private int minimoChamadas = 10;
+
+    // janela deslizante e estado do circuito, protegidos pelo lock da instancia
+    private boolean[] janela = new boolean[20];
+    private int posicaoJanela;
+    private int chamadasNaJanela;
+    private int falhasNaJanela;
+    private Estado estado = Estado.FECHADO;
+    private long abertoEm;
+    private boolean consultaDeTesteEmAndamento;
+
+    private final Map<Usuario, Boolean> ultimasRespostas;
+
+    public SpcServiceResiliente(SpcService spcService) {
+        this(spcService, 10_000, System::nanoTime);
+    }
+
+    /**
+     * @param respostasGuardadas Quantidade de usuarios cuja ultima resposta e guardada para o fallback
+     * @param relogio Fonte de tempo em nanossegundos, substituivel nos testes
+     */
+    public SpcServiceResiliente(SpcService spcService, int respostasGuardadas, LongSupplier relogio) {
+        this.spcService = spcService;
+        this.relogio = relogio;
+        this.ultimasRespostas = new LinkedHashMap<Usuario, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Usuario, Boolean> maisAntiga) {
+                return size() > respostasGuardadas;
+            }
+        };
+    }
+
+    public SpcServiceResiliente comMaximoConcorrente(int maximo) {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("Maximo de consultas simultaneas deve ser positivo");
+        }
+        this.permissoes = new Semaphore(maximo);
+        return this;
+    }
+
+    public SpcServiceResiliente comTimeout(long timeout, TimeUnit unidade) {
+        this.timeoutNanos = unidade.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * @param tamanhoJanela Quantidade de consultas recentes consideradas
+     * @param taxaFalhasMaxima Fracao de falhas (0 a 1) a partir da qual o circuito abre
+     * @param minimoChamadas Consultas necessarias na janela antes de avaliar a taxa
+     */
+    public synchronized SpcServiceResiliente comJanela(int tamanhoJanela, double taxaFalhasMaxima, int minimoChamadas) {
+        if (tamanhoJanela <= 0 || minimoChamadas <= 0 || minimoChamadas > tamanhoJanela) {
+            throw new IllegalArgumentException("Janela invalida");
+        }
+        if (taxaFalhasMaxima <= 0 || taxaFalhasMaxima > 1) {
+            throw new IllegalArgumentException("Taxa de falhas deve estar entre 0 e 1");
+        }
+        this.janela = new boolean[tamanhoJanela];
+        this.taxaFalhasMaxima = taxaFalhasMaxima;
+        this.minimoChamadas = minimoChamadas;
+        limparJanela();
+        return this;
+    }
+
+    /**
+     * Tempo que o circuito fica aberto antes de permitir a consulta de teste
+     */
+    public SpcServiceResiliente comTempoAberto(long tempo, TimeUnit unidade) {
+        this.tempoAbertoNanos = unidade.toNanos(tempo);
+        return this;
+    }
+
+    public SpcServiceResiliente comFallback(PoliticaFallback politica) {
+        this.politica = politica;
+        return this;
+    }
+
+    /**
+     * Valor abaixo do qual a politica {@link PoliticaFallback#LIBERAR_ABAIXO_DO_LIMITE} libera a locacao
+     */
+    public SpcServiceResiliente comLimiteLiberacao(double limiteLiberacao) {
+        this.limiteLiberacao = limiteLiberacao;
+        return this;
+    }
+
+    @Override
+    public boolean possuiNegativacao(Usuario usuario) throws Exception {
+        return possuiNegativacao(usuario, Double.NaN);
+    }
+
+    @Override
+    public boolean possuiNegativacao(Usuario usuario, double valorLocacao) throws Exception {
+        Permissao permissao = permitirChamada();
+        if (permissao == Permissao.NEGADA) {
+            return fallback(usuario, valorLocacao, new SpcIndisponivelException("Circuito do SPC aberto"));
+        }
+        // so a consulta de teste decide o circuito meio aberto e so ela libera a vaga de teste
+        boolean deTeste = permissao == Permissao.CONSULTA_DE_TESTE;
+        Semaphore permissoesDaConsulta = permissoes;
+        if (!permissoesDaConsulta.tryAcquire()) {
+            if (deTeste) {
+                liberarConsultaDeTeste();
+            }
+            return fallback(usuario, valorLocacao, new SpcIndisponivelException("Limite de consultas simultaneas ao SPC atingido"));
+        }
+
+        // quem marcar a consulta como iniciada fica responsavel por devolver a permissao
+        AtomicBoolean iniciada = new AtomicBoolean();
+        Future<Boolean> consulta;
+        try {
+            consulta = executor.submit(() -> {
+                if (!iniciada.compareAndSet(false, true)) {
+                    return false;
+                }
+                try {
+                    return spcService.possuiNegativacao(usuario);
+                } finally {
+                    permissoesDaConsulta.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permissoesDaConsulta.release();
+            registrarResultado(deTeste, false);
+            return fallback(usuario, valorLocacao, new SpcIndisponivelException("Consulta ao SPC recusada", e));
+        }
+
+        try {
+            boolean negativado = consulta.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            registrarResultado(deTeste, true);
+            synchronized (ultimasRespostas) {
+                ultimasRespostas.put(usuario, negativado);
+            }
+            return negativado;
+        } catch (TimeoutException e) {
+            cancelar(consulta, iniciada, permissoesDaConsulta);
+            registrarResultado(deTeste, false);
+            return fallback(usuario, valorLocacao, new SpcIndisponivelException("Tempo limite da consulta ao SPC esgotado", e));
+        } catch (ExecutionException e) {
+            registrarResultado(deTeste, false);
+            return fallback(usuario, valorLocacao, new SpcIndisponivelException("Falha na consulta ao SPC", e.getCause()));
+        } catch (InterruptedException e) {
+            cancelar(consulta, iniciada, permissoesDaConsulta);
+            if (deTeste) {
+                liberarConsultaDeTeste();
+            }
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Somente a politica de liberacao por valor faz a resposta depender do valor da locacao
+     */
+    @Override
+    public boolean isDependenteDoValor() {
+        return politica == PoliticaFallback.LIBERAR_ABAIXO_DO_LIMITE;
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+
+    private static void cancelar(Future<Boolean> consulta, AtomicBoolean iniciada, Semaphore permissoes) {
+        consulta.cancel(true);
+        if (iniciada.compareAndSet(false, true)) {
+            permissoes.release();
+        }
+    }
+
+    private synchronized Permissao permitirChamada() {
+        switch (estado) {
+            case FECHADO:
+                return Permissao.CONSULTA;
+            case ABERTO:
+                if (relogio.getAsLong() - abertoEm < tempoAbertoNanos) {
+                    return Permissao.NEGADA;
+                }
+                estado = Estado.MEIO_ABERTO;
+                consultaDeTesteEmAndamento = true;
+                return Permissao.CONSULTA_DE_TESTE;
+            default:
+                if (consultaDeTesteEmAndamento) {
+                    return Permissao.NEGADA;
+                }
+                consultaDeTesteEmAndamento = true;
+                return Permissao.CONSULTA_DE_TESTE;
+        }
+    }
+
+    private synchronized void liberarConsultaDeTeste() {
+        consultaDeTesteEmAndamento = false;
+    }
+
+    private synchronized void registrarResultado(boolean deTeste, boolean sucesso) {
+        if (estado == Estado.MEIO_ABERTO) {
+            if (!deTeste) {
+                // consulta iniciada antes da abertura do circuito
+                return;
+            }
+            consultaDeTesteEmAndamento = false;
+            if (sucesso) {
+                estado = Estado.FECHADO;
+                limparJanela();
+            } else {
+                abrir();
+            }
+            return;
+        }
+        if (estado == Estado.ABERTO) {
+            // consulta iniciada antes da abertura do circuito
+            return;
+        }
+
+        if (chamadasNaJanela == janela.length) {
+            if (janela[posicaoJanela]) {
+                falhasNaJanela--;
+            }
+        } else {
+            chamadasNaJanela++;
+        }
+        janela[posicaoJanela] = !sucesso;
+        if (!sucesso) {
+            falhasNaJanela++;
+        }
+        posicaoJanela = (posicaoJanela + 1) % janela.length;
+
+        if (chamadasNaJanela >= minimoChamadas && falhasNaJanela >= taxaFalhasMaxima * chamadasNaJanela) {
+            abrir();
+        }
+    }
+
+    private void abrir() {
+        estado = Estado.ABERTO;
+        abertoEm = relogio.getAsLong();
+        limparJanela();
+    }
+
+    private void limparJanela() {
+        Arrays.fill(janela, false);
+        posicaoJanela = 0;
+        chamadasNaJanela = 0;
+        falhasNaJanela = 0;
+    }
+
+    private boolean fallback(Usuario usuario, double valorLocacao, SpcIndisponivelException causa) throws SpcIndisponivelException {
+        switch (politica) {
+            case ULTIMA_RESPOSTA:
+                Boolean ultima;
+                synchronized (ultimasRespostas) {
+                    ultima = ultimasRespostas.get(usuario);
+                }
+                if (ultima != null) {
+                    return ultima;
+                }
+                break;
+            case LIBERAR_ABAIXO_DO_LIMITE:
+                if (valorLocacao < limiteLiberacao) {
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+        throw causa;
+    }
+
+    private enum Permissao {
+        NEGADA, CONSULTA, CONSULTA_DE_TESTE
+    }
+}
@@ -0,0 +1,138 @@
+package br.ce.wcaquino.utils;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Dias de funcionamento de uma loja: dias da semana em que ela fecha e feriados.
+ * 	Para cada epoch day de uma janela de anos e pre-calculado o proximo dia aberto, de modo que
+ * 	{@link #proximoDiaAberto(long)} se resume a um acesso a vetor. Dias fora da janela sao
+ * 	calculados dia a dia. A tabela e refeita na primeira consulta apos qualquer alteracao.
+ *
+ * 	Cada loja deve ter a sua instancia. Alteracoes e consultas podem ser feitas de threads diferentes.
+ */
+public final class CalendarioComercial {
+
+	public static final LocalDate INICIO_JANELA_PADRAO = LocalDate.of(2010, 1, 1);
+	public static final int ANOS_JANELA_PADRAO = 30;
+
+	private final long inicioJanela;
+	private final int diasJanela;
+	private final EnumSet<DayOfWeek> diasFechados = EnumSet.noneOf(DayOfWeek.class);
+	private final Set<Long> feriados = new HashSet<>();
+	private volatile Tabela tabela;
+
+	public CalendarioComercial() {
+		this(INICIO_JANELA_PADRAO, ANOS_JANELA_PADRAO);
+	}
+
+	public CalendarioComercial(LocalDate inicioJanela, int anosJanela) {
+		if (anosJanela <= 0) {
+			throw new IllegalArgumentException("Janela do calendario deve ter ao menos um ano");
+		}
+		this.inicioJanela = inicioJanela.toEpochDay();
+		this.diasJanela = (int) (inicioJanela.plusYears(anosJanela).toEpochDay() - this.inicioJanela);
+	}
+
+	/**
+	 * Calendario que fecha apenas aos domingos, a regra usada pela locadora ate entao
+	 */
+	public static CalendarioComercial fechadoAosDomingos() {
+		return new CalendarioComercial().fecharDiaSemana(DayOfWeek.SUNDAY);
+	}
+
+	public synchronized CalendarioComercial fecharDiaSemana(DayOfWeek diaSemana) {
+		if (diasFechados.size() == 6 && !diasFechados.contains(diaSemana)) {
+			throw new IllegalArgumentException("A loja deve abrir ao menos um dia da semana");
+		}
+		diasFechados.add(diaSemana);
+		tabela = null;
+		return this;
+	}
+
+	public synchronized CalendarioComercial abrirDiaSemana(DayOfWeek diaSemana) {
+		diasFechados.remove(diaSemana);
+		tabela = null;
+		return this;
+	}
+
+	public synchronized CalendarioComercial adicionarFeriado(LocalDate feriado) {
+		feriados.add(feriado.toEpochDay());
+		tabela = null;
+		return this;
+	}
+
+	public synchronized CalendarioComercial removerFeriado(LocalDate feriado) {
+		feriados.remove(feriado.toEpochDay());
+		tabela = null;
+		return this;
+	}
+
+	public boolean isAberto(long diaEpoch) {
+		return proximoDiaAberto(diaEpoch) == diaEpoch;
+	}
+
+	/**
+	 * Retorna o proprio dia, se a loja abre nele, ou o primeiro dia aberto depois dele
+	 */
+	public long proximoDiaAberto(long diaEpoch) {
+		Tabela atual = tabela;
+		if (atual == null) {
+			atual = montarTabela();
+		}
+		long indice = diaEpoch - inicioJanela;
+		if (indice >= 0 && indice < diasJanela) {
+			return inicioJanela + atual.proximoAberto[(int) indice];
+		}
+		return atual.calcularProximoAberto(diaEpoch);
+	}
+
+	public LocalDate proximoDiaAberto(LocalDate data) {
+		return LocalDate.ofEpochDay(proximoDiaAberto(data.toEpochDay()));
+	}
+
+	private synchronized Tabela montarTabela() {
+		if (tabela == null) {
+			tabela = new Tabela(EnumSet.copyOf(diasFechados), new HashSet<>(feriados), inicioJanela, diasJanela);
+		}
+		return tabela;
+	}
+
+	/*
+	 * Copia imutavel da configuracao com o proximo dia aberto de cada dia da janela,
+	 * guardado como deslocamento em relacao ao inicio da janela
+	 */
+	private static final class Tabela {
+		private final Set<DayOfWeek> diasFechados;
+		private final Set<Long> feriados;
+		private final int[] proximoAberto;
+
+		private Tabela(Set<DayOfWeek> diasFechados, Set<Long> feriados, long inicioJanela, int diasJanela) {
+			this.diasFechados = diasFechados;
+			this.feriados = feriados;
+			this.proximoAberto = new int[diasJanela];
+			long seguinte = calcularProximoAberto(inicioJanela + diasJanela);
+			for (int i = diasJanela - 1; i >= 0; i--) {
+				if (isAberto(inicioJanela + i)) {
+					seguinte = inicioJanela + i;
+				}
+				proximoAberto[i] = (int) (seguinte - inicioJanela);
+			}
+		}
+
+		private boolean isAberto(long diaEpoch) {
+			return !diasFechados.contains(DiaEpoch.diaSemana(diaEpoch)) && !feriados.contains(diaEpoch);
+		}
+
+		private long calcularProximoAberto(long diaEpoch) {
+			long dia = diaEpoch;
+			while (!isAberto(dia)) {
+				dia++;
+			}
+			return dia;
+		}
+	}
+}
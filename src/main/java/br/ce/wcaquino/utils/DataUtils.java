@@ -1,13 +1,15 @@
 package br.ce.wcaquino.utils;
 
-import static java.util.Calendar.DAY_OF_MONTH;
-import static java.util.Calendar.DAY_OF_WEEK;
-import static java.util.Calendar.MONTH;
-import static java.util.Calendar.YEAR;
-
-import java.util.Calendar;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.Date;
 
+/*
+ * Implementado com java.time em vez de Calendar, evitando alocar um Calendar a cada chamada.
+ * Para trabalhar sem nenhuma alocacao, use os metodos de DiaEpoch sobre epoch days.
+ */
 public class DataUtils {
 	
 	/**
@@ -19,10 +21,7 @@ public class DataUtils {
 	 * @return
 	 */
 	public static Date adicionarDias(Date data, int dias) {
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(data);
-		calendar.add(DAY_OF_MONTH, dias);
-		return calendar.getTime();
+		return Date.from(data.toInstant().atZone(ZoneId.systemDefault()).plusDays(dias).toInstant());
 	}
 	
 	/**
@@ -45,11 +44,10 @@ public class DataUtils {
 	 * @return
 	 */
 	public static Date obterData(int dia, int mes, int ano){
-		Calendar calendar = Calendar.getInstance();
-		calendar.set(DAY_OF_MONTH, dia);
-		calendar.set(MONTH, mes - 1);
-		calendar.set(YEAR, ano);
-		return calendar.getTime();
+		// assim como o Calendar, aceita dias e meses fora do intervalo (ex: 32/01 vira 01/02) e mantem a hora atual
+		LocalDate data = LocalDate.of(ano, 1, 1).plusMonths(mes - 1).plusDays(dia - 1);
+		ZoneId zona = ZoneId.systemDefault();
+		return Date.from(data.atTime(LocalTime.now(zona)).atZone(zona).toInstant());
 	}
 	
 	/**
@@ -61,25 +59,25 @@ public class DataUtils {
 	 * @return
 	 */
 	public static boolean isMesmaData(Date data1, Date data2) {
-		Calendar calendar1 = Calendar.getInstance();
-		calendar1.setTime(data1);
-		Calendar calendar2 = Calendar.getInstance();
-		calendar2.setTime(data2);
-		return (calendar1.get(DAY_OF_MONTH) == calendar2.get(DAY_OF_MONTH))
-				&& (calendar1.get(MONTH) == calendar2.get(MONTH))
-				&& (calendar1.get(YEAR) == calendar2.get(YEAR));
+		ZoneId zona = ZoneId.systemDefault();
+		return DiaEpoch.de(data1, zona) == DiaEpoch.de(data2, zona);
 	}
 	
 	/**
 	 * Verifica se uma determinada data é o dia da semana desejado
 	 * 
 	 * @param data Data a ser avaliada
-	 * @param diaSemana <code>true</code> caso seja o dia da semana desejado, <code>false</code> em caso contrário 
-	 * @return
+	 * @param diaSemana Dia da semana segundo as constantes de <code>Calendar</code> (ex: <code>Calendar.SUNDAY</code>)
+	 * @return <code>true</code> caso seja o dia da semana desejado, <code>false</code> em caso contrário
 	 */
 	public static boolean verificarDiaSemana(Date data, int diaSemana) {
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(data);
-		return calendar.get(DAY_OF_WEEK) == diaSemana;
+		return DiaEpoch.verificarDiaSemana(DiaEpoch.de(data, ZoneId.systemDefault()), paraDayOfWeek(diaSemana));
+	}
+
+	/**
+	 * Converte as constantes de dia da semana do <code>Calendar</code> (domingo = 1) para {@link DayOfWeek}
+	 */
+	public static DayOfWeek paraDayOfWeek(int diaSemanaCalendar) {
+		return DayOfWeek.of((diaSemanaCalendar + 5) % 7 + 1);
 	}
 }
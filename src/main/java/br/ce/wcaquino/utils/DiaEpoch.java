@@ -0,0 +1,116 @@
+package br.ce.wcaquino.utils;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+
+/**
+ * Utilitario de datas baseado em java.time que representa cada dia como um <code>long</code>
+ * 	com a quantidade de dias desde 01/01/1970 (epoch day). Comparar datas, somar dias e
+ * 	descobrir o dia da semana sao operacoes aritmeticas, sem alocacao de objetos.
+ * 	A data atual vem de um {@link Clock} injetavel, o que permite fixar o "hoje" nos testes.
+ */
+public final class DiaEpoch {
+
+	private static final long MILLIS_POR_DIA = 86_400_000L;
+	private static final long SEGUNDOS_POR_DIA = 86_400L;
+
+	private final Clock clock;
+	private final ZoneRules regras;
+	private final long deslocamentoFixoMillis;
+
+	public DiaEpoch(Clock clock) {
+		this.clock = clock;
+		this.regras = clock.getZone().getRules();
+		this.deslocamentoFixoMillis = regras.isFixedOffset()
+				? regras.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L
+				: Long.MIN_VALUE;
+	}
+
+	/**
+	 * Retorna uma instancia baseada no relogio e fuso horario do sistema
+	 */
+	public static DiaEpoch sistema() {
+		return new DiaEpoch(Clock.systemDefaultZone());
+	}
+
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Retorna o dia atual segundo o relogio desta instancia
+	 */
+	public long hoje() {
+		return deMillis(clock.millis());
+	}
+
+	/**
+	 * Retorna o dia atual com a diferenca de dias enviada por parametro
+	 * 	(futuro quando positivo, passado quando negativo)
+	 */
+	public long comDiferencaDias(int dias) {
+		return hoje() + dias;
+	}
+
+	/**
+	 * Converte um instante em milissegundos para o dia correspondente no fuso do relogio
+	 */
+	public long deMillis(long millis) {
+		long deslocamento = deslocamentoFixoMillis != Long.MIN_VALUE
+				? deslocamentoFixoMillis
+				: regras.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L;
+		return Math.floorDiv(millis + deslocamento, MILLIS_POR_DIA);
+	}
+
+	public long de(Date data) {
+		return deMillis(data.getTime());
+	}
+
+	/**
+	 * Retorna o inicio (meia-noite) do dia informado no fuso do relogio
+	 */
+	public Date paraDate(long diaEpoch) {
+		return Date.from(LocalDate.ofEpochDay(diaEpoch).atStartOfDay(clock.getZone()).toInstant());
+	}
+
+	/**
+	 * Converte uma data para o dia correspondente no fuso informado
+	 */
+	public static long de(Date data, ZoneId zona) {
+		long segundos = Math.floorDiv(data.getTime(), 1000L);
+		int deslocamento = zona.getRules().getOffset(Instant.ofEpochSecond(segundos)).getTotalSeconds();
+		return Math.floorDiv(segundos + deslocamento, SEGUNDOS_POR_DIA);
+	}
+
+	public static long adicionarDias(long diaEpoch, int dias) {
+		return diaEpoch + dias;
+	}
+
+	public static boolean isMesmaData(long diaEpoch1, long diaEpoch2) {
+		return diaEpoch1 == diaEpoch2;
+	}
+
+	/**
+	 * Retorna o dia da semana do dia informado. 01/01/1970 (dia zero) foi uma quinta-feira.
+	 */
+	public static DayOfWeek diaSemana(long diaEpoch) {
+		return DayOfWeek.of((int) Math.floorMod(diaEpoch + 3, 7L) + 1);
+	}
+
+	public static boolean verificarDiaSemana(long diaEpoch, DayOfWeek diaSemana) {
+		return diaSemana(diaEpoch) == diaSemana;
+	}
+
+	public static long obterData(int dia, int mes, int ano) {
+		return LocalDate.of(ano, mes, dia).toEpochDay();
+	}
+
+	public static LocalDate paraLocalDate(long diaEpoch) {
+		return LocalDate.ofEpochDay(diaEpoch);
+	}
+}
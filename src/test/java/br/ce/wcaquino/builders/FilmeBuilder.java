@@ -36,6 +36,11 @@ public class FilmeBuilder {
         return this;
     }
 
+    public FilmeBuilder comNome(String nome) {
+        filme.setNome(nome);
+        return this;
+    }
+
     public Filme get() {
         return this.filme;
     }
@@ -35,6 +35,11 @@ public class LocacaoBuilder {
         return this;
     }
 
+    public LocacaoBuilder comDataRetorno(Date dataRetorno) {
+        this.locacao.setDataRetorno(dataRetorno);
+        return this;
+    }
+
     public LocacaoBuilder atrasada() {
         this.locacao.setDataLocacao(DataUtils.obterDataComDiferencaDias(-4));
         this.locacao.setDataRetorno(DataUtils.obterDataComDiferencaDias(-2));
@@ -0,0 +1,123 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class CatalogoFilmesTest {
+
+    private CatalogoFilmes catalogo;
+
+    @Before
+    public void setup() {
+        catalogo = new CatalogoFilmes(2);
+    }
+
+    @Test
+    public void deveCadastrarFilmesEmColunasCrescendoACapacidade() {
+        // acao
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, catalogo.cadastrar("Filme " + i, i % 3, i * 1.5));
+        }
+
+        // verificacao
+        Assert.assertEquals(100, catalogo.getQuantidade());
+        Assert.assertEquals("Filme 42", catalogo.getNome(42));
+        Assert.assertEquals(0, catalogo.getEstoque(42));
+        Assert.assertEquals(63.0, catalogo.getPreco(42), 0.01);
+        Assert.assertEquals(57, catalogo.buscarId("Filme 57"));
+        Assert.assertEquals(-1, catalogo.buscarId("Inexistente"));
+    }
+
+    @Test
+    public void deveManterUmIdPorTitulo() {
+        // cenario
+        int id = catalogo.cadastrar("Filme 1", 1, 4.0);
+
+        // acao
+        int recadastrado = catalogo.cadastrar(new Filme("Filme 1", 5, 3.0));
+
+        // verificacao
+        Assert.assertEquals(id, recadastrado);
+        Assert.assertEquals(1, catalogo.getQuantidade());
+        Assert.assertEquals(5, catalogo.getEstoque(id));
+        Assert.assertSame(catalogo.getNome(id), catalogo.getFilme(id).getNome());
+    }
+
+    @Test
+    public void deveRefletirAlteracoesNasVisoes() {
+        // cenario
+        int id = catalogo.cadastrar("Filme 1", 1, 4.0);
+        Filme filme = catalogo.getFilme(id);
+        List<Filme> carrinho = catalogo.getFilmes(new int[]{id, id});
+
+        // acao
+        filme.setEstoque(3);
+        catalogo.definirPreco(id, 2.5);
+
+        // verificacao
+        Assert.assertEquals(Integer.valueOf(3), carrinho.get(1).getEstoque());
+        Assert.assertEquals(Double.valueOf(2.5), filme.getPrecoLocacao());
+        Assert.assertEquals(id, ((CatalogoFilmes.FilmeCatalogado) carrinho.get(0)).getId());
+    }
+
+    @Test
+    public void deveRejeitarIdInexistente() {
+        catalogo.cadastrar("Filme 1", 1, 4.0);
+
+        try {
+            catalogo.getFilmes(new int[]{0, 1});
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Filme nao encontrado no catalogo: 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void deveReservarTodasAsCopiasOuNenhuma() throws Exception {
+        // cenario
+        int filme1 = catalogo.cadastrar("Filme 1", 2, 4.0);
+        int filme2 = catalogo.cadastrar("Filme 2", 1, 4.0);
+
+        // acao
+        try {
+            catalogo.reservar(new int[]{filme1, filme2, filme2});
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (FilmeSemEstoqueException e) {
+            Assert.assertEquals("Filme sem estoque", e.getMessage());
+        }
+        CatalogoFilmes.Reserva reserva = catalogo.reservar(new int[]{filme1, filme2, filme1});
+
+        // verificacao
+        Assert.assertEquals(0, catalogo.getEstoque(filme1));
+        Assert.assertEquals(0, catalogo.getEstoque(filme2));
+        reserva.liberar();
+        reserva.liberar();
+        Assert.assertEquals(2, catalogo.getEstoque(filme1));
+        Assert.assertEquals(1, catalogo.getEstoque(filme2));
+        catalogo.reservar(new int[]{filme2}).confirmar();
+        Assert.assertEquals(0, catalogo.getEstoque(filme2));
+    }
+
+    @Test
+    public void deveRenomearFilmeDoCatalogo() {
+        int id = catalogo.cadastrar("Filme 1", 1, 4.0);
+        catalogo.cadastrar("Filme 2", 1, 4.0);
+
+        catalogo.getFilme(id).setNome("Outro nome");
+
+        Assert.assertEquals("Outro nome", catalogo.getNome(id));
+        Assert.assertEquals(id, catalogo.buscarId("Outro nome"));
+        Assert.assertEquals(-1, catalogo.buscarId("Filme 1"));
+        try {
+            catalogo.getFilme(id).setNome("Filme 2");
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Ja existe um filme com o nome: Filme 2", e.getMessage());
+        }
+    }
+}
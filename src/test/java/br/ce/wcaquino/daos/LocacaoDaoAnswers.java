@@ -0,0 +1,41 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ * Respostas para mocks de LocacaoDao.
+ * Fica fora das classes de teste preparadas pelo PowerMock, que nao consegue
+ * interceptar chamadas feitas a lambdas.
+ */
+public class LocacaoDaoAnswers {
+
+    private LocacaoDaoAnswers() {}
+
+    /**
+     * Simula {@link LocacaoDao#findLocacoesAtrasadas} filtrando as locacoes informadas pela data limite
+     */
+    public static Answer<Void> atrasadasDe(List<Locacao> pendentes) {
+        return invocation -> {
+            Date dataLimite = (Date) invocation.getArguments()[0];
+            int tamanhoLote = (Integer) invocation.getArguments()[1];
+            @SuppressWarnings("unchecked")
+            Consumer<List<Locacao>> consumidor = (Consumer<List<Locacao>>) invocation.getArguments()[2];
+            List<Locacao> atrasadas = new ArrayList<>();
+            for (Locacao locacao : pendentes) {
+                if (locacao.getDataRetorno().before(dataLimite)) {
+                    atrasadas.add(locacao);
+                }
+            }
+            for (int i = 0; i < atrasadas.size(); i += tamanhoLote) {
+                consumidor.accept(new ArrayList<>(atrasadas.subList(i, Math.min(i + tamanhoLote, atrasadas.size()))));
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.utils.DataUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+
+public class LocacaoDaoEmMemoriaTest {
+
+    private LocacaoDaoEmMemoria dao;
+
+    @Before
+    public void setup() {
+        dao = new LocacaoDaoEmMemoria();
+    }
+
+    @Test
+    public void deveBuscarAtrasadasPorIntervaloDeDataRetorno() {
+        // cenario
+        Locacao emDia = umaLocacao().get();
+        Locacao atrasadaHaDoisDias = umaLocacao().atrasada().get();
+        Locacao atrasadaHaCincoDias = umaLocacao().get();
+        atrasadaHaCincoDias.setDataRetorno(DataUtils.obterDataComDiferencaDias(-5));
+        dao.salvar(emDia);
+        dao.salvar(atrasadaHaDoisDias);
+        dao.salvar(atrasadaHaCincoDias);
+
+        // acao
+        List<List<Locacao>> lotes = new ArrayList<>();
+        dao.findLocacoesAtrasadas(new Date(), 1, lotes::add);
+
+        // verificacao: em ordem de data de retorno, um lote por locacao
+        Assert.assertEquals(2, lotes.size());
+        Assert.assertSame(atrasadaHaCincoDias, lotes.get(0).get(0));
+        Assert.assertSame(atrasadaHaDoisDias, lotes.get(1).get(0));
+        Assert.assertEquals(3, dao.findLocacoesPendentes().size());
+    }
+
+    @Test
+    public void deveBuscarLocacoesPorUsuario() {
+        // cenario
+        Usuario usuario1 = umUsuario().get();
+        Usuario usuario2 = umUsuario().comNome("Usuario 2").get();
+        Locacao locacao1 = umaLocacao().comUsuario(usuario1).get();
+        Locacao locacao2 = umaLocacao().comUsuario(usuario2).get();
+        Locacao locacao3 = umaLocacao().comUsuario(usuario1).atrasada().get();
+
+        // acao
+        dao.salvarTodos(Arrays.asList(locacao1, locacao2, locacao3));
+
+        // verificacao
+        Assert.assertEquals(Arrays.asList(locacao1, locacao3), dao.findLocacoesPorUsuario(umUsuario().get()));
+        Assert.assertEquals(Arrays.asList(locacao2), dao.findLocacoesPorUsuario(usuario2));
+        Assert.assertTrue(dao.findLocacoesPorUsuario(umUsuario().comNome("Sem locacoes").get()).isEmpty());
+    }
+
+    @Test
+    public void deveRemoverApenasALocacaoInformada() {
+        // cenario
+        Locacao locacao1 = umaLocacao().get();
+        Locacao locacao2 = umaLocacao().get();
+        dao.salvar(locacao1);
+        dao.salvar(locacao2);
+
+        // acao
+        boolean removida = dao.remover(locacao1);
+        boolean removidaNovamente = dao.remover(locacao1);
+
+        // verificacao
+        Assert.assertTrue(removida);
+        Assert.assertFalse(removidaNovamente);
+        Assert.assertEquals(Arrays.asList(locacao2), dao.findLocacoesPendentes());
+        Assert.assertEquals(Arrays.asList(locacao2), dao.findLocacoesPorUsuario(umUsuario().get()));
+    }
+
+    @Test
+    public void deveSalvarDeVariasThreadsSemPerderLocacoes() throws Exception {
+        // cenario
+        int threads = 8;
+        int locacoesPorThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            // acao
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Usuario usuario = umUsuario().comNome("Usuario " + t).get();
+                tarefas.add(executor.submit(() -> {
+                    for (int i = 0; i < locacoesPorThread; i++) {
+                        dao.salvar(umaLocacao().comUsuario(usuario).get());
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // verificacao
+        Assert.assertEquals(threads * locacoesPorThread, dao.getQuantidade());
+        Assert.assertEquals(locacoesPorThread, dao.findLocacoesPorUsuario(umUsuario().comNome("Usuario 3").get()).size());
+    }
+}
@@ -0,0 +1,172 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.utils.DataUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+
+public class LocacaoDaoJournalTest {
+
+    @Rule
+    public TemporaryFolder pasta = new TemporaryFolder();
+
+    private Path arquivo;
+
+    @Before
+    public void setup() throws Exception {
+        arquivo = pasta.getRoot().toPath().resolve("locacoes.journal");
+    }
+
+    @Test
+    public void deveReaplicarLocacoesAoReabrirJournal() throws Exception {
+        // cenario
+        Locacao locacao = umaLocacao().comFilmes(umFilme().comNome("Filme 1").get(), umFilme().comValor(3.5).get()).get();
+        Locacao atrasada = umaLocacao().comUsuario(umUsuario().comNome("Usuario 2").get()).atrasada().get();
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            dao.salvar(locacao);
+            dao.salvarTodos(Arrays.asList(atrasada, umaLocacao().get()));
+        }
+
+        // acao
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+
+            // verificacao
+            Assert.assertEquals(3, dao.getQuantidade());
+            Locacao recuperada = dao.findLocacoesPorUsuario(umUsuario().get()).get(0);
+            Assert.assertEquals(umUsuario().get(), recuperada.getUsuario());
+            Assert.assertEquals(5.0, recuperada.getValor(), 0.01);
+            Assert.assertEquals(locacao.getDataLocacao(), recuperada.getDataLocacao());
+            Assert.assertEquals(locacao.getDataRetorno(), recuperada.getDataRetorno());
+            Assert.assertEquals(2, recuperada.getFilmes().size());
+            Assert.assertEquals("Filme 1", recuperada.getFilmes().get(0).getNome());
+            Assert.assertEquals(3.5, recuperada.getFilmes().get(1).getPrecoLocacao(), 0.01);
+
+            List<Locacao> atrasadas = new ArrayList<>();
+            dao.findLocacoesAtrasadas(DataUtils.obterDataComDiferencaDias(0), 10, atrasadas::addAll);
+            Assert.assertEquals(1, atrasadas.size());
+            Assert.assertEquals("Usuario 2", atrasadas.get(0).getUsuario().getNome());
+        }
+    }
+
+    @Test
+    public void naoDeveReaplicarLocacaoRemovida() throws Exception {
+        // cenario
+        Locacao removida = umaLocacao().comUsuario(umUsuario().comNome("Usuario 2").get()).get();
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            dao.salvarTodos(Arrays.asList(umaLocacao().get(), removida));
+
+            // acao
+            Assert.assertTrue(dao.remover(removida));
+            Assert.assertFalse(dao.remover(removida));
+        }
+
+        // verificacao
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            Assert.assertEquals(1, dao.getQuantidade());
+            Assert.assertTrue(dao.findLocacoesPorUsuario(umUsuario().comNome("Usuario 2").get()).isEmpty());
+
+            Locacao recuperada = dao.findLocacoesPendentes().get(0);
+            Assert.assertTrue(dao.remover(recuperada));
+        }
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            Assert.assertEquals(0, dao.getQuantidade());
+        }
+    }
+
+    @Test
+    public void deveDescartarRegistroCorrompidoNoFimDoJournal() throws Exception {
+        // cenario
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            dao.salvar(umaLocacao().get());
+            dao.salvar(umaLocacao().comUsuario(umUsuario().comNome("Usuario 2").get()).get());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(arquivo.toFile(), "rw")) {
+            raf.seek(12);
+            int tamanhoPrimeiro = raf.readInt();
+            long dadosSegundo = 12 + 8 + tamanhoPrimeiro + 8;
+            raf.seek(dadosSegundo + 6);
+            raf.writeByte(raf.readByte() ^ 0xFF);
+        }
+
+        // acao
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            Assert.assertEquals(1, dao.getQuantidade());
+            dao.salvar(umaLocacao().comUsuario(umUsuario().comNome("Usuario 3").get()).get());
+        }
+
+        // verificacao
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            Assert.assertEquals(2, dao.getQuantidade());
+            Assert.assertEquals(1, dao.findLocacoesPorUsuario(new Usuario("Usuario 3")).size());
+            Assert.assertTrue(dao.findLocacoesPorUsuario(new Usuario("Usuario 2")).isEmpty());
+        }
+    }
+
+    @Test
+    public void deveAvancarParaNovaRegiaoQuandoARegiaoEncher() throws Exception {
+        // cenario
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo, 256, 1, TimeUnit.MILLISECONDS, true)) {
+
+            // acao
+            for (int i = 0; i < 50; i++) {
+                dao.salvar(umaLocacao().comUsuario(umUsuario().comNome("Usuario " + i).get()).get());
+            }
+        }
+
+        // verificacao
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            Assert.assertEquals(50, dao.getQuantidade());
+            Assert.assertEquals(1, dao.findLocacoesPorUsuario(new Usuario("Usuario 49")).size());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void deveGravarDeVariasThreadsAguardandoSincronizacao() throws Exception {
+        // cenario
+        int threads = 4;
+        int locacoesPorThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo, 64 * 1024, 5, TimeUnit.MILLISECONDS, true)) {
+            // acao
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Usuario usuario = umUsuario().comNome("Usuario " + t).get();
+                tarefas.add(executor.submit(() -> {
+                    for (int i = 0; i < locacoesPorThread; i++) {
+                        dao.salvar(umaLocacao().comUsuario(usuario).get());
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // verificacao
+        try (LocacaoDaoJournal dao = new LocacaoDaoJournal(arquivo)) {
+            Assert.assertEquals(threads * locacoesPorThread, dao.getQuantidade());
+            Assert.assertEquals(locacoesPorThread, dao.findLocacoesPorUsuario(new Usuario("Usuario 2")).size());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+
+public class LocacaoDaoParticionadoTest {
+
+    private static final int USUARIOS = 200;
+
+    private LocacaoDaoParticionado dao;
+    private Map<String, LocacaoDaoEmMemoria> particoes;
+
+    @Before
+    public void setup() {
+        dao = new LocacaoDaoParticionado();
+        particoes = new LinkedHashMap<>();
+        for (int i = 1; i <= 3; i++) {
+            adicionar("particao-" + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dao.close();
+    }
+
+    @Test
+    public void deveGravarTodasAsLocacoesDoUsuarioNaMesmaParticao() {
+        // acao
+        salvarDuasPorUsuario();
+
+        // verificacao
+        for (int i = 0; i < USUARIOS; i++) {
+            Usuario usuario = usuario(i);
+            Assert.assertEquals(2, ((LocacaoDaoEmMemoria) dao.getParticao(usuario)).findLocacoesPorUsuario(usuario).size());
+        }
+        for (LocacaoDaoEmMemoria particao : particoes.values()) {
+            Assert.assertTrue(particao.getQuantidade() > USUARIOS * 2 / 10);
+        }
+        Assert.assertEquals(USUARIOS * 2, dao.findLocacoesPendentes().size());
+    }
+
+    @Test
+    public void deveReunirAtrasadasDeTodasAsParticoesNaThreadDoChamador() {
+        // cenario
+        List<Locacao> locacoes = new ArrayList<>();
+        for (int i = 0; i < USUARIOS; i++) {
+            locacoes.add(umaLocacao().comUsuario(usuario(i)).atrasada().get());
+            locacoes.add(umaLocacao().comUsuario(usuario(i)).get());
+        }
+        dao.salvarTodos(locacoes);
+        Thread chamador = Thread.currentThread();
+        List<Locacao> atrasadas = new ArrayList<>();
+
+        // acao
+        dao.findLocacoesAtrasadas(new Date(), 7, lote -> {
+            Assert.assertSame(chamador, Thread.currentThread());
+            Assert.assertTrue(lote.size() <= 7);
+            atrasadas.addAll(lote);
+        });
+
+        // verificacao
+        Assert.assertEquals(USUARIOS, atrasadas.size());
+    }
+
+    @Test
+    public void deveMoverApenasUsuariosDaNovaParticaoAoAdicionar() {
+        // cenario
+        salvarDuasPorUsuario();
+
+        // acao
+        int movidas = adicionar("particao-4");
+
+        // verificacao
+        Assert.assertTrue(movidas > 0);
+        Assert.assertTrue(movidas < USUARIOS);
+        Assert.assertEquals(movidas, particoes.get("particao-4").getQuantidade());
+        verificarCadaUsuarioNaSuaParticao();
+    }
+
+    @Test
+    public void deveRedistribuirLocacoesAoRemoverParticao() {
+        // cenario
+        salvarDuasPorUsuario();
+
+        // acao
+        dao.removerParticao("particao-2");
+        particoes.remove("particao-2");
+
+        // verificacao
+        Assert.assertEquals(2, dao.getQuantidadeParticoes());
+        verificarCadaUsuarioNaSuaParticao();
+    }
+
+    @Test
+    public void deveDesfazerAdicaoQuandoRemocaoNaOrigemFalha() {
+        // cenario
+        AtomicInteger remocoesPermitidas = new AtomicInteger(3);
+        LocacaoDaoEmMemoria instavel = new LocacaoDaoEmMemoria() {
+            @Override
+            public boolean remover(Locacao locacao) {
+                if (remocoesPermitidas.getAndDecrement() <= 0) {
+                    throw new IllegalStateException("Particao indisponivel");
+                }
+                return super.remover(locacao);
+            }
+        };
+        LocacaoDaoEmMemoria nova = new LocacaoDaoEmMemoria();
+        try (LocacaoDaoParticionado particionado = new LocacaoDaoParticionado()) {
+            particionado.adicionarParticao("a", instavel);
+            for (int i = 0; i < USUARIOS; i++) {
+                particionado.salvar(umaLocacao().comUsuario(usuario(i)).get());
+            }
+
+            // acao
+            try {
+                particionado.adicionarParticao("b", nova);
+                Assert.fail("Deveria ter lancado excecao");
+            } catch (IllegalStateException e) {
+                // verificacao
+                Assert.assertEquals(1, particionado.getQuantidadeParticoes());
+                Assert.assertEquals(USUARIOS, instavel.getQuantidade());
+                Assert.assertEquals(0, nova.getQuantidade());
+            }
+        }
+    }
+
+    @Test
+    public void naoDeveBloquearGravacoesEnquantoConsumidorDeAtrasadasTrabalha() throws Exception {
+        // cenario
+        salvarDuasPorUsuario();
+        CountDownLatch consumidorOcupado = new CountDownLatch(1);
+        CountDownLatch liberarConsumidor = new CountDownLatch(1);
+        ExecutorService busca = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> atrasadas = busca.submit(() -> dao.findLocacoesAtrasadas(new Date(), 1, lote -> {
+                consumidorOcupado.countDown();
+                try {
+                    liberarConsumidor.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            Assert.assertTrue(consumidorOcupado.await(5, TimeUnit.SECONDS));
+
+            // acao
+            List<Locacao> novas = new ArrayList<>();
+            for (int i = 0; i < USUARIOS; i++) {
+                novas.add(umaLocacao().comUsuario(usuario(i)).get());
+            }
+            CompletableFuture<Void> gravacao = CompletableFuture.runAsync(() -> {
+                adicionar("particao-4");
+                dao.salvarTodos(novas);
+            }, tarefa -> new Thread(tarefa, "gravacao-teste").start());
+
+            // verificacao
+            gravacao.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(USUARIOS * 3, dao.findLocacoesPendentes().size());
+            liberarConsumidor.countDown();
+            atrasadas.get(5, TimeUnit.SECONDS);
+        } finally {
+            liberarConsumidor.countDown();
+            busca.shutdown();
+        }
+    }
+
+    @Test
+    public void deveDesfazerRemocaoQuandoGravacaoFalha() {
+        // cenario
+        AtomicBoolean indisponivel = new AtomicBoolean();
+        LocacaoDaoEmMemoria instavel = new LocacaoDaoEmMemoria() {
+            @Override
+            public void salvar(Locacao locacao) {
+                if (indisponivel.get()) {
+                    throw new IllegalStateException("Particao indisponivel");
+                }
+                super.salvar(locacao);
+            }
+        };
+        particoes.put("particao-4", instavel);
+        dao.adicionarParticao("particao-4", instavel);
+        salvarDuasPorUsuario();
+        indisponivel.set(true);
+
+        // acao
+        try {
+            dao.removerParticao("particao-1");
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (IllegalStateException e) {
+            // verificacao
+            Assert.assertEquals("Particao indisponivel", e.getMessage());
+            Assert.assertEquals(4, dao.getQuantidadeParticoes());
+            verificarCadaUsuarioNaSuaParticao();
+        }
+    }
+
+    private int adicionar(String id) {
+        LocacaoDaoEmMemoria particao = new LocacaoDaoEmMemoria();
+        particoes.put(id, particao);
+        return dao.adicionarParticao(id, particao);
+    }
+
+    private void salvarDuasPorUsuario() {
+        for (int i = 0; i < USUARIOS; i++) {
+            dao.salvar(umaLocacao().comUsuario(usuario(i)).get());
+            dao.salvar(umaLocacao().comUsuario(usuario(i)).atrasada().get());
+        }
+    }
+
+    private void verificarCadaUsuarioNaSuaParticao() {
+        int total = 0;
+        for (LocacaoDaoEmMemoria particao : particoes.values()) {
+            total += particao.getQuantidade();
+            for (Locacao locacao : particao.findLocacoesPendentes()) {
+                Assert.assertSame(particao, dao.getParticao(locacao.getUsuario()));
+            }
+        }
+        Assert.assertEquals(USUARIOS * 2, total);
+    }
+
+    private static Usuario usuario(int i) {
+        return umUsuario().comNome("Usuario " + i).get();
+    }
+}
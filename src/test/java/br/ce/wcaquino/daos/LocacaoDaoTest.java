@@ -0,0 +1,45 @@
+package br.ce.wcaquino.daos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+
+public class LocacaoDaoTest {
+
+    @Test
+    public void deveEntregarAtrasadasEmLotesPeloMetodoPadrao() {
+        // cenario
+        Locacao atrasada1 = umaLocacao().atrasada().get();
+        Locacao emDia = umaLocacao().get();
+        Locacao atrasada2 = umaLocacao().atrasada().get();
+        Locacao atrasada3 = umaLocacao().atrasada().get();
+        List<Locacao> pendentes = Arrays.asList(atrasada1, emDia, atrasada2, atrasada3);
+
+        LocacaoDao dao = new LocacaoDao() {
+            @Override
+            public void salvar(Locacao locacao) {
+            }
+
+            @Override
+            public List<Locacao> findLocacoesPendentes() {
+                return pendentes;
+            }
+        };
+
+        // acao
+        List<List<Locacao>> lotes = new ArrayList<>();
+        dao.findLocacoesAtrasadas(new Date(), 2, lotes::add);
+
+        // verificacao
+        Assert.assertEquals(2, lotes.size());
+        Assert.assertEquals(Arrays.asList(atrasada1, atrasada2), lotes.get(0));
+        Assert.assertEquals(Arrays.asList(atrasada3), lotes.get(1));
+    }
+}
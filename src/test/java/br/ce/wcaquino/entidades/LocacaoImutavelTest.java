@@ -0,0 +1,97 @@
+package br.ce.wcaquino.entidades;
+
+import br.ce.wcaquino.utils.DataUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+
+public class LocacaoImutavelTest {
+
+    @Test
+    public void naoDeveSerAfetadaPorAlteracoesNaListaENasDatasRecebidas() {
+        // cenario
+        List<Filme> filmes = new ArrayList<>(Arrays.asList(umFilme().get()));
+        Instant agora = Instant.parse("2017-04-28T10:00:00Z");
+        LocacaoImutavel locacao = LocacaoImutavel.nova()
+                .comUsuario(umUsuario().get())
+                .comFilmes(filmes)
+                .comDataLocacao(agora)
+                .comValor(4.0)
+                .construir();
+
+        // acao
+        filmes.add(umFilme().get());
+        locacao.getDataLocacao().setTime(0);
+
+        // verificacao
+        Assert.assertEquals(1, locacao.getFilmes().size());
+        Assert.assertEquals(agora, locacao.getDataLocacao().toInstant());
+        Assert.assertEquals(4.0, locacao.getValor(), 0.0);
+        Assert.assertNull(locacao.getDataRetorno());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void naoDevePermitirAlterarFilmes() {
+        LocacaoImutavel.nova().comFilmes(Arrays.asList(umFilme().get())).construir().getFilmes().clear();
+    }
+
+    @Test
+    public void naoDeveSerAfetadaPorAlteracoesNosFilmesRecebidos() {
+        // cenario
+        Filme filme = umFilme().comValor(4.0).get();
+        LocacaoImutavel locacao = LocacaoImutavel.nova().comFilmes(Arrays.asList(filme)).construir();
+
+        // acao
+        filme.setNome("Outro nome");
+        filme.setPrecoLocacao(1.0);
+
+        // verificacao
+        Assert.assertEquals(new FilmeLocado("Filme 1", 4.0), locacao.getFilmes().get(0));
+    }
+
+    @Test
+    public void deveCopiarLocacaoMutavel() {
+        // cenario
+        Locacao original = umaLocacao().atrasada().comFilmes(umFilme().get()).get();
+
+        // acao
+        LocacaoImutavel copia = LocacaoImutavel.de(original);
+        LocacaoImutavel prorrogada = copia.copiar().comValor(10.0).construir();
+
+        // verificacao
+        Assert.assertEquals(copia, LocacaoImutavel.de(original));
+        Assert.assertEquals(original.getUsuario(), copia.getUsuario());
+        Assert.assertEquals(Arrays.asList(FilmeLocado.de(original.getFilmes().get(0))), copia.getFilmes());
+        Assert.assertTrue(DataUtils.isMesmaData(original.getDataRetorno(), copia.getDataRetorno()));
+        Assert.assertEquals(5.0, copia.getValor(), 0.0);
+        Assert.assertEquals(10.0, prorrogada.getValor(), 0.0);
+        Assert.assertNotEquals(copia, prorrogada);
+        Assert.assertEquals(copia.getInstanteRetorno(), prorrogada.getInstanteRetorno());
+    }
+
+    @Test
+    public void deveGerarCopiaAlteravel() {
+        // cenario
+        LocacaoImutavel locacao = LocacaoImutavel.de(umaLocacao().comFilmes(umFilme().get()).get());
+
+        // acao
+        Locacao bean = locacao.paraBean();
+        bean.setValor(10.0);
+        bean.getFilmes().clear();
+
+        // verificacao
+        Assert.assertEquals(5.0, locacao.getValor(), 0.0);
+        Assert.assertEquals(1, locacao.getFilmes().size());
+        Assert.assertEquals(locacao.getDataRetorno(), bean.getDataRetorno());
+        Assert.assertSame(locacao.getUsuario(), bean.getUsuario());
+        Assert.assertEquals(locacao, LocacaoImutavel.de(locacao.paraBean()));
+    }
+}
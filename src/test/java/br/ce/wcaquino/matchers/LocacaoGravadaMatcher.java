@@ -0,0 +1,25 @@
+package br.ce.wcaquino.matchers;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+import org.hamcrest.Description;
+import org.hamcrest.TypeSafeMatcher;
+
+public class LocacaoGravadaMatcher extends TypeSafeMatcher<Locacao> {
+
+    private LocacaoImutavel locacao;
+
+    public LocacaoGravadaMatcher(LocacaoImutavel locacao) {
+        this.locacao = locacao;
+    }
+
+    @Override
+    protected boolean matchesSafely(Locacao gravada) {
+        return locacao.equals(LocacaoImutavel.de(gravada));
+    }
+
+    @Override
+    public void describeTo(Description description) {
+        description.appendText("gravada como ").appendValue(locacao);
+    }
+}
@@ -1,5 +1,7 @@
 package br.ce.wcaquino.matchers;
 
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+
 import java.util.Calendar;
 
 public class OwnMatchers {
@@ -19,4 +21,8 @@ public class OwnMatchers {
     public static DataDiferencaDiasMatcher ehHoje() {
         return new DataDiferencaDiasMatcher(0);
     }
+
+    public static LocacaoGravadaMatcher gravadaComo(LocacaoImutavel locacao) {
+        return new LocacaoGravadaMatcher(locacao);
+    }
 }
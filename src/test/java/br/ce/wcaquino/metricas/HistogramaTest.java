@@ -0,0 +1,61 @@
+package br.ce.wcaquino.metricas;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramaTest {
+
+    @Test
+    public void deveCalcularPercentisComErroRelativoLimitado() {
+        // cenario
+        Histograma histograma = new Histograma();
+
+        // acao
+        for (long valor = 1; valor <= 100_000; valor++) {
+            histograma.registrar(valor);
+        }
+
+        // verificacao
+        Assert.assertEquals(100_000, histograma.getQuantidade());
+        Assert.assertEquals(100_000, histograma.getMaximo());
+        Assert.assertEquals(50_000.5, histograma.getMedia(), 0.01);
+        Assert.assertEquals(50_000, histograma.percentil(50), 50_000 * 0.016);
+        Assert.assertEquals(99_000, histograma.percentil(99), 99_000 * 0.016);
+        Assert.assertEquals(100_000, histograma.percentil(100));
+        Assert.assertEquals(1, histograma.percentil(0));
+    }
+
+    @Test
+    public void deveMapearCadaValorParaUmaFaixaQueOContem() {
+        long anterior = -1;
+        for (long valor = 0; valor < 1_000_000; valor += valor < 1000 ? 1 : 997) {
+            int indice = Histograma.indice(valor);
+            Assert.assertTrue(valor <= Histograma.maiorValorDaFaixa(indice));
+            Assert.assertTrue(indice == 0 || valor > Histograma.maiorValorDaFaixa(indice - 1));
+            Assert.assertTrue(indice >= anterior);
+            anterior = indice;
+        }
+    }
+
+    @Test
+    public void deveLimitarValoresForaDaFaixa() {
+        // cenario
+        Histograma histograma = new Histograma();
+
+        // acao
+        histograma.registrar(-5);
+        histograma.registrar(Long.MAX_VALUE);
+
+        // verificacao
+        Assert.assertEquals(2, histograma.getQuantidade());
+        Assert.assertEquals(Histograma.VALOR_MAXIMO, histograma.getMaximo());
+        Assert.assertEquals(0, histograma.percentil(50));
+        Assert.assertEquals(Histograma.VALOR_MAXIMO, histograma.percentil(100));
+    }
+
+    @Test
+    public void deveRetornarZeroSemRegistros() {
+        Assert.assertEquals(0, new Histograma().percentil(99));
+        Assert.assertEquals(0.0, new Histograma().getMedia(), 0.0);
+    }
+}
@@ -0,0 +1,114 @@
+package br.ce.wcaquino.runners;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Executa uma classe de teste numa JVM propria, iniciada pela {@link SuiteParalela}. Os eventos da
+ * 	execucao sao escritos na saida padrao, uma linha por evento com o prefixo {@link #PREFIXO},
+ * 	para que a suite os repasse ao seu {@link org.junit.runner.notification.RunNotifier}.
+ * 	O primeiro argumento e o nome da classe; os seguintes, quando houver, sao os nomes codificados dos
+ * 	testes que restaram depois do filtro da suite, e apenas eles sao executados.
+ */
+public final class ExecucaoIsolada {
+
+    static final String PREFIXO = "##suite-paralela## ";
+    static final String INICIO = "inicio";
+    static final String FALHA = "falha";
+    static final String HIPOTESE = "hipotese";
+    static final String IGNORADO = "ignorado";
+    static final String FIM = "fim";
+
+    private ExecucaoIsolada() {}
+
+    public static void main(String[] args) throws ClassNotFoundException {
+        PrintStream saida = System.out;
+        JUnitCore junit = new JUnitCore();
+        junit.addListener(new RunListener() {
+            @Override
+            public void testStarted(Description descricao) {
+                emitir(saida, INICIO, descricao);
+            }
+
+            @Override
+            public void testFailure(Failure falha) {
+                emitir(saida, FALHA, falha.getDescription(), falha.getException().getClass().getName(), falha.getTrace());
+            }
+
+            @Override
+            public void testAssumptionFailure(Failure falha) {
+                emitir(saida, HIPOTESE, falha.getDescription(), falha.getTrace());
+            }
+
+            @Override
+            public void testIgnored(Description descricao) {
+                emitir(saida, IGNORADO, descricao);
+            }
+
+            @Override
+            public void testFinished(Description descricao) {
+                emitir(saida, FIM, descricao);
+            }
+        });
+        Request pedido = Request.aClass(Class.forName(args[0]));
+        if (args.length > 1) {
+            pedido = pedido.filterWith(selecionados(args));
+        }
+        junit.run(pedido);
+        System.exit(0);
+    }
+
+    private static Filter selecionados(String[] args) {
+        Set<String> testes = new HashSet<>();
+        for (int i = 1; i < args.length; i++) {
+            testes.add(decodificar(args[i]));
+        }
+        return new Filter() {
+            @Override
+            public boolean shouldRun(Description descricao) {
+                if (descricao.isTest()) {
+                    return testes.contains(descricao.getDisplayName());
+                }
+                for (Description filho : descricao.getChildren()) {
+                    if (shouldRun(filho)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public String describe() {
+                return "testes selecionados pela suite";
+            }
+        };
+    }
+
+    private static void emitir(PrintStream saida, String evento, Description descricao, String... campos) {
+        StringBuilder linha = new StringBuilder(PREFIXO).append(evento).append(' ').append(codificar(descricao.getDisplayName()));
+        for (String campo : campos) {
+            if (campo != null) {
+                linha.append(' ').append(codificar(campo));
+            }
+        }
+        saida.println(linha);
+    }
+
+    static String codificar(String texto) {
+        return Base64.getEncoder().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodificar(String texto) {
+        return new String(Base64.getDecoder().decode(texto), StandardCharsets.UTF_8);
+    }
+}
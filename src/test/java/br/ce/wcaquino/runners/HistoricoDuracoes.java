@@ -0,0 +1,93 @@
+package br.ce.wcaquino.runners;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Duracao da ultima execucao de cada teste, guardada entre execucoes num arquivo de propriedades
+ * 	(por padrao <code>target/duracoes-testes.properties</code>, ou o caminho da propriedade de sistema
+ * 	<code>duracoes.testes</code>). Usado pelo {@link ParallelRunner} para iniciar os testes mais longos primeiro.
+ */
+public class HistoricoDuracoes {
+
+    public static final long DESCONHECIDA = -1;
+
+    private static final HistoricoDuracoes PADRAO =
+            new HistoricoDuracoes(Paths.get(System.getProperty("duracoes.testes", "target/duracoes-testes.properties")));
+
+    private final Path arquivo;
+    private final Map<String, Long> duracoes = new ConcurrentHashMap<>();
+
+    public HistoricoDuracoes(Path arquivo) {
+        this.arquivo = arquivo;
+        carregar();
+    }
+
+    public static HistoricoDuracoes padrao() {
+        return PADRAO;
+    }
+
+    /**
+     * @return duracao em nanossegundos, ou {@link #DESCONHECIDA} se o teste nunca foi medido
+     */
+    public long getDuracao(String teste) {
+        Long duracao = duracoes.get(teste);
+        return duracao != null ? duracao : DESCONHECIDA;
+    }
+
+    public void registrar(String teste, long duracaoNanos) {
+        duracoes.put(teste, duracaoNanos);
+    }
+
+    /**
+     * Grava o historico; falhas de escrita sao ignoradas, pois o historico so afeta a ordem dos testes
+     */
+    public synchronized void salvar() {
+        Properties propriedades = new Properties();
+        for (Map.Entry<String, Long> duracao : duracoes.entrySet()) {
+            propriedades.setProperty(duracao.getKey(), Long.toString(duracao.getValue()));
+        }
+        try {
+            Path diretorio = arquivo.toAbsolutePath().getParent();
+            Files.createDirectories(diretorio);
+            Path temporario = Files.createTempFile(diretorio, "duracoes", ".tmp");
+            try {
+                try (OutputStream saida = Files.newOutputStream(temporario)) {
+                    propriedades.store(saida, "Duracao dos testes em nanossegundos");
+                }
+                Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        } catch (IOException e) {
+            // sem historico os testes apenas rodam na ordem padrao
+        }
+    }
+
+    private void carregar() {
+        if (!Files.isRegularFile(arquivo)) {
+            return;
+        }
+        Properties propriedades = new Properties();
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            propriedades.load(entrada);
+        } catch (IOException e) {
+            return;
+        }
+        for (String teste : propriedades.stringPropertyNames()) {
+            try {
+                duracoes.put(teste, Long.parseLong(propriedades.getProperty(teste)));
+            } catch (NumberFormatException e) {
+                // entrada corrompida: o teste e tratado como desconhecido
+            }
+        }
+    }
+}
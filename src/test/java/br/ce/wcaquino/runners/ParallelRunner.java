@@ -1,40 +1,123 @@
 package br.ce.wcaquino.runners;
 
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.RunnerScheduler;
+import org.junit.runners.model.Statement;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Executa os metodos de teste da classe em paralelo num {@link ForkJoinPool} compartilhado por todas
+ * 	as classes, com uma thread por processador. Os testes mais longos da execucao anterior
+ * 	(segundo o {@link HistoricoDuracoes}) sao iniciados primeiro e os nunca medidos vem antes de todos.
+ * 	Ao final da classe, o tempo de cada teste e impresso e gravado no historico.
+ */
 public class ParallelRunner extends BlockJUnit4ClassRunner {
 
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+    private static final HistoricoDuracoes HISTORICO = HistoricoDuracoes.padrao();
+    private final Map<String, Long> duracoes = new ConcurrentHashMap<>();
+
     public ParallelRunner(Class<?> testClass) throws InitializationError {
         super(testClass);
-        setScheduler(new ThreadPool());
+        setScheduler(new Agendador());
+    }
+
+    /**
+     * Mantem o agendador proprio mesmo quando o surefire (<code>parallel=methods/all</code>) tenta
+     * 	trocar o agendador dos metodos; a classe em si continua agendada pelo surefire.
+     */
+    @Override
+    public void setScheduler(RunnerScheduler scheduler) {
+        if (scheduler instanceof Agendador) {
+            super.setScheduler(scheduler);
+        }
     }
 
-    private static class ThreadPool implements RunnerScheduler {
-        private ExecutorService executorService;
+    @Override
+    protected List<FrameworkMethod> getChildren() {
+        List<FrameworkMethod> metodos = new ArrayList<>(super.getChildren());
+        metodos.sort(Comparator.comparingLong(this::duracaoAnterior).reversed());
+        return metodos;
+    }
 
-        public ThreadPool() {
-            this.executorService = Executors.newFixedThreadPool(5);
+    @Override
+    protected void runChild(FrameworkMethod metodo, RunNotifier notifier) {
+        long inicio = System.nanoTime();
+        try {
+            super.runChild(metodo, notifier);
+        } finally {
+            long duracao = System.nanoTime() - inicio;
+            duracoes.put(metodo.getName(), duracao);
+            HISTORICO.registrar(chave(metodo), duracao);
         }
+    }
+
+    @Override
+    protected Statement classBlock(RunNotifier notifier) {
+        Statement classe = super.classBlock(notifier);
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                try {
+                    classe.evaluate();
+                } finally {
+                    relatar();
+                    HISTORICO.salvar();
+                }
+            }
+        };
+    }
+
+    private long duracaoAnterior(FrameworkMethod metodo) {
+        long duracao = HISTORICO.getDuracao(chave(metodo));
+        return duracao == HistoricoDuracoes.DESCONHECIDA ? Long.MAX_VALUE : duracao;
+    }
+
+    private String chave(FrameworkMethod metodo) {
+        return getTestClass().getName() + "#" + metodo.getName();
+    }
+
+    private void relatar() {
+        if (duracoes.isEmpty()) {
+            return;
+        }
+        StringBuilder relatorio = new StringBuilder("Tempo por teste em ").append(getTestClass().getName()).append(':');
+        duracoes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(duracao -> relatorio.append(System.lineSeparator())
+                        .append(String.format("  %8d ms  %s", TimeUnit.NANOSECONDS.toMillis(duracao.getValue()), duracao.getKey())));
+        System.out.println(relatorio);
+    }
+
+    private static class Agendador implements RunnerScheduler {
+        private final List<ForkJoinTask<?>> testes = new ArrayList<>();
 
         @Override
-        public void schedule(Runnable run) {
-            this.executorService.submit(run);
+        public synchronized void schedule(Runnable teste) {
+            testes.add(POOL.submit(teste));
         }
 
         @Override
         public void finished() {
-            this.executorService.shutdown();
-            try {
-                this.executorService.awaitTermination(10, TimeUnit.MINUTES);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
+            List<ForkJoinTask<?>> agendados;
+            synchronized (this) {
+                agendados = new ArrayList<>(testes);
+            }
+            for (ForkJoinTask<?> teste : agendados) {
+                teste.quietlyJoin();
             }
         }
     }
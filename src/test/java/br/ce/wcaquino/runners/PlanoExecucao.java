@@ -0,0 +1,78 @@
+package br.ce.wcaquino.runners;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Distribui tarefas de custo conhecido entre trabalhadores pela heuristica LPT: em ordem
+ * 	decrescente de custo, cada tarefa vai para o trabalhador com menor carga ate o momento.
+ * 	O makespan resultante fica a no maximo 4/3 do otimo.
+ */
+final class PlanoExecucao<T> {
+
+    private final List<Grupo<T>> grupos;
+
+    private PlanoExecucao(List<Grupo<T>> grupos) {
+        this.grupos = grupos;
+    }
+
+    static <T> PlanoExecucao<T> distribuir(Map<T, Long> custos, int trabalhadores) {
+        if (trabalhadores <= 0) {
+            throw new IllegalArgumentException("Quantidade de trabalhadores deve ser positiva");
+        }
+        List<Map.Entry<T, Long>> tarefas = new ArrayList<>(custos.entrySet());
+        tarefas.sort(Map.Entry.<T, Long>comparingByValue().reversed());
+
+        int quantidade = Math.max(1, Math.min(trabalhadores, tarefas.size()));
+        PriorityQueue<Grupo<T>> porCarga = new PriorityQueue<>(quantidade, Comparator.comparingLong(Grupo::getCusto));
+        List<Grupo<T>> grupos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            Grupo<T> grupo = new Grupo<>();
+            grupos.add(grupo);
+            porCarga.add(grupo);
+        }
+        for (Map.Entry<T, Long> tarefa : tarefas) {
+            Grupo<T> menosCarregado = porCarga.poll();
+            menosCarregado.adicionar(tarefa.getKey(), tarefa.getValue());
+            porCarga.add(menosCarregado);
+        }
+        return new PlanoExecucao<>(grupos);
+    }
+
+    List<Grupo<T>> getGrupos() {
+        return Collections.unmodifiableList(grupos);
+    }
+
+    /**
+     * Custo do grupo mais carregado, ou seja, a duracao estimada da execucao
+     */
+    long getMakespan() {
+        long makespan = 0;
+        for (Grupo<T> grupo : grupos) {
+            makespan = Math.max(makespan, grupo.getCusto());
+        }
+        return makespan;
+    }
+
+    static final class Grupo<T> {
+        private final List<T> tarefas = new ArrayList<>();
+        private long custo;
+
+        private void adicionar(T tarefa, long custoTarefa) {
+            tarefas.add(tarefa);
+            custo += custoTarefa;
+        }
+
+        List<T> getTarefas() {
+            return Collections.unmodifiableList(tarefas);
+        }
+
+        long getCusto() {
+            return custo;
+        }
+    }
+}
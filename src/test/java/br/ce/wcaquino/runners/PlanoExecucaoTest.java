@@ -0,0 +1,39 @@
+package br.ce.wcaquino.runners;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PlanoExecucaoTest {
+
+    @Test
+    public void deveIsolarClasseLentaEmUmTrabalhador() {
+        // cenario
+        Map<String, Long> custos = new LinkedHashMap<>();
+        custos.put("Rapida1", 2L);
+        custos.put("Rapida2", 1L);
+        custos.put("Lenta", 11L);
+        custos.put("Media", 5L);
+        custos.put("Rapida3", 3L);
+
+        // acao
+        PlanoExecucao<String> plano = PlanoExecucao.distribuir(custos, 2);
+
+        // verificacao
+        Assert.assertEquals(11, plano.getMakespan());
+        Assert.assertEquals(Collections.singletonList("Lenta"), plano.getGrupos().get(0).getTarefas());
+        Assert.assertEquals(Arrays.asList("Media", "Rapida3", "Rapida1", "Rapida2"), plano.getGrupos().get(1).getTarefas());
+    }
+
+    @Test
+    public void naoDeveCriarMaisGruposQueTarefas() {
+        PlanoExecucao<String> plano = PlanoExecucao.distribuir(Collections.singletonMap("Unica", 7L), 8);
+
+        Assert.assertEquals(1, plano.getGrupos().size());
+        Assert.assertEquals(7, plano.getMakespan());
+    }
+}
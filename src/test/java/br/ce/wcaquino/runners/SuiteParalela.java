@@ -0,0 +1,486 @@
+package br.ce.wcaquino.runners;
+
+import org.junit.AssumptionViolatedException;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.manipulation.Sorter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.Statement;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Suite que descobre no classpath as classes de teste (nome terminado em <code>Test</code>) do pacote
+ * 	indicado em {@link Pacote} e as executa em paralelo. A duracao de cada classe fica no
+ * 	{@link HistoricoDuracoes}; antes da execucao as classes sao distribuidas entre os trabalhadores pelo
+ * 	{@link PlanoExecucao}, para que uma classe lenta nao fique no fim da fila de um trabalhador ja carregado.
+ * 	Ao final sao impressos o makespan estimado e o real.
+ *
+ * 	A quantidade de trabalhadores e a de processadores, ou o valor da propriedade de sistema
+ * 	<code>suite.trabalhadores</code>. Os trabalhadores sao threads da mesma JVM, exceto para as classes
+ * 	do PowerMock, executadas numa JVM propria pela {@link ExecucaoIsolada}. Filtros aplicados a suite
+ * 	(por exemplo <code>-Dtest=</code>) retiram do plano as classes sem testes selecionados, e as classes
+ * 	isoladas recebem a lista dos testes que devem executar. Ordenacoes valem dentro de cada classe
+ * 	executada nesta JVM; a ordem entre as classes e a do plano.
+ */
+public class SuiteParalela extends ParentRunner<Runner> {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface Pacote {
+        String value();
+    }
+
+    private static final long DURACAO_PADRAO = TimeUnit.SECONDS.toNanos(1);
+
+    private List<Runner> classes;
+    private boolean filtrada;
+    // o PowerMockRunner nao devolve a descricao depois de executado, entao os nomes sao lidos antes
+    private final Map<Runner, String> nomes = new IdentityHashMap<>();
+    private final Map<Runner, Description> descricoes = new IdentityHashMap<>();
+    private final Set<String> isoladas = new HashSet<>();
+    private final HistoricoDuracoes historico = HistoricoDuracoes.padrao();
+
+    public SuiteParalela(Class<?> suite, RunnerBuilder builder) throws InitializationError {
+        super(suite);
+        Pacote pacote = suite.getAnnotation(Pacote.class);
+        String nomePacote = pacote != null ? pacote.value() : suite.getPackage().getName();
+        Class<?>[] descobertas = descobrir(nomePacote, suite.getClassLoader());
+        for (Class<?> classe : descobertas) {
+            if (isIsolada(classe)) {
+                isoladas.add(classe.getName());
+            }
+        }
+        this.classes = builder.runners(suite, descobertas);
+        for (Runner classe : classes) {
+            nomes.put(classe, classe.getDescription().getClassName());
+            descricoes.put(classe, classe.getDescription());
+        }
+    }
+
+    @Override
+    protected List<Runner> getChildren() {
+        return classes;
+    }
+
+    @Override
+    protected Description describeChild(Runner classe) {
+        return descricoes.get(classe);
+    }
+
+    /**
+     * Aplica o filtro a cada classe e mantem apenas as que ainda tem testes, para que o plano seja
+     * 	montado so com elas
+     */
+    @Override
+    public void filter(Filter filter) throws NoTestsRemainException {
+        List<Runner> restantes = new ArrayList<>();
+        Set<Description> mantidas = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Runner classe : classes) {
+            if (!filter.shouldRun(describeChild(classe))) {
+                continue;
+            }
+            try {
+                filter.apply(classe);
+            } catch (NoTestsRemainException e) {
+                continue;
+            }
+            Description descricao = selecionar(describeChild(classe), filter);
+            if (descricao == null) {
+                continue;
+            }
+            restantes.add(classe);
+            descricoes.put(classe, descricao);
+            mantidas.add(descricao);
+        }
+        classes = restantes;
+        filtrada = true;
+        // as classes ja foram filtradas: o ParentRunner so precisa descartar as que sairam
+        super.filter(new Filter() {
+            @Override
+            public boolean shouldRun(Description descricao) {
+                return mantidas.contains(descricao);
+            }
+
+            @Override
+            public void apply(Object classe) {
+            }
+
+            @Override
+            public String describe() {
+                return filter.describe();
+            }
+        });
+    }
+
+    /*
+     * Copia da descricao so com os testes aceitos pelo filtro. Ela e montada aqui porque o PowerMockRunner
+     * 	continua devolvendo a descricao completa depois de filtrado
+     */
+    private static Description selecionar(Description descricao, Filter filter) {
+        if (descricao.isTest()) {
+            return filter.shouldRun(descricao) ? descricao : null;
+        }
+        Description copia = descricao.childlessCopy();
+        for (Description filho : descricao.getChildren()) {
+            Description selecionado = selecionar(filho, filter);
+            if (selecionado != null) {
+                copia.addChild(selecionado);
+            }
+        }
+        return copia.getChildren().isEmpty() ? null : copia;
+    }
+
+    @Override
+    public void sort(Sorter sorter) {
+        super.sort(sorter);
+        classes.sort(Comparator.comparing(this::describeChild, sorter));
+    }
+
+    @Override
+    protected void runChild(Runner classe, RunNotifier notifier) {
+        if (isoladas.contains(nome(classe))) {
+            executarEmOutraJvm(classe, notifier);
+        } else {
+            classe.run(notifier);
+        }
+    }
+
+    @Override
+    protected Statement childrenInvoker(RunNotifier notifier) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                executar(notifier);
+            }
+        };
+    }
+
+    private void executar(RunNotifier notifier) throws Exception {
+        int trabalhadores = Integer.getInteger("suite.trabalhadores", Runtime.getRuntime().availableProcessors());
+        PlanoExecucao<Runner> plano = PlanoExecucao.distribuir(estimarDuracoes(), trabalhadores);
+
+        AtomicInteger numero = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(plano.getGrupos().size(),
+                tarefa -> new Thread(tarefa, "suite-paralela-" + numero.incrementAndGet()));
+        long inicio = System.nanoTime();
+        try {
+            List<Future<?>> execucoes = new ArrayList<>();
+            for (PlanoExecucao.Grupo<Runner> grupo : plano.getGrupos()) {
+                execucoes.add(executor.submit(() -> {
+                    for (Runner classe : grupo.getTarefas()) {
+                        long inicioClasse = System.nanoTime();
+                        runChild(classe, notifier);
+                        historico.registrar(nome(classe), System.nanoTime() - inicioClasse);
+                    }
+                }));
+            }
+            for (Future<?> execucao : execucoes) {
+                aguardar(execucao);
+            }
+        } finally {
+            executor.shutdownNow();
+            historico.salvar();
+        }
+        long real = System.nanoTime() - inicio;
+
+        System.out.println(String.format("Suite %s: %d classes em %d trabalhadores, makespan estimado %d ms, real %d ms",
+                getName(), classes.size(), plano.getGrupos().size(),
+                TimeUnit.NANOSECONDS.toMillis(plano.getMakespan()), TimeUnit.NANOSECONDS.toMillis(real)));
+    }
+
+    /**
+     * Executa a classe com {@link ExecucaoIsolada} numa nova JVM, com o mesmo classpath, e repassa os
+     * 	eventos ao notifier. A saida dos testes e copiada para a saida desta JVM.
+     */
+    private void executarEmOutraJvm(Runner classe, RunNotifier notifier) {
+        Description descricao = descricoes.get(classe);
+        Map<String, Description> testes = new HashMap<>();
+        indexar(descricao, testes);
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> comando = new ArrayList<>();
+        Collections.addAll(comando, java, "-cp", System.getProperty("java.class.path"),
+                ExecucaoIsolada.class.getName(), nome(classe));
+        if (filtrada) {
+            listarTestes(descricao, comando);
+        }
+        ProcessBuilder processo = new ProcessBuilder(comando).redirectErrorStream(true);
+        try {
+            Process jvm = processo.start();
+            try (BufferedReader saida = new BufferedReader(new InputStreamReader(jvm.getInputStream(), StandardCharsets.UTF_8))) {
+                String linha;
+                while ((linha = saida.readLine()) != null) {
+                    int evento = linha.indexOf(ExecucaoIsolada.PREFIXO);
+                    if (evento < 0) {
+                        System.out.println(linha);
+                    } else {
+                        notificar(linha.substring(evento + ExecucaoIsolada.PREFIXO.length()), descricao, testes, notifier);
+                    }
+                }
+            }
+            int codigo = jvm.waitFor();
+            if (codigo != 0) {
+                notifier.fireTestFailure(new Failure(descricao,
+                        new IllegalStateException("JVM da classe " + nome(classe) + " terminou com codigo " + codigo)));
+            }
+        } catch (IOException e) {
+            notifier.fireTestFailure(new Failure(descricao, e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            notifier.fireTestFailure(new Failure(descricao, e));
+        }
+    }
+
+    private static void notificar(String evento, Description classe, Map<String, Description> testes, RunNotifier notifier) {
+        String[] partes = evento.split(" ");
+        Description teste = testes.getOrDefault(ExecucaoIsolada.decodificar(partes[1]), classe);
+        switch (partes[0]) {
+            case ExecucaoIsolada.INICIO:
+                notifier.fireTestStarted(teste);
+                break;
+            case ExecucaoIsolada.FALHA:
+                notifier.fireTestFailure(new Failure(teste,
+                        new FalhaEmOutraJvm(ExecucaoIsolada.decodificar(partes[2]), ExecucaoIsolada.decodificar(partes[3]))));
+                break;
+            case ExecucaoIsolada.HIPOTESE:
+                notifier.fireTestAssumptionFailed(new Failure(teste, new AssumptionViolatedException(ExecucaoIsolada.decodificar(partes[2]))));
+                break;
+            case ExecucaoIsolada.IGNORADO:
+                notifier.fireTestIgnored(teste);
+                break;
+            case ExecucaoIsolada.FIM:
+                notifier.fireTestFinished(teste);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void indexar(Description descricao, Map<String, Description> testes) {
+        testes.put(descricao.getDisplayName(), descricao);
+        for (Description filho : descricao.getChildren()) {
+            indexar(filho, testes);
+        }
+    }
+
+    /**
+     * Acrescenta ao comando os testes que restaram na classe depois do filtro
+     */
+    private static void listarTestes(Description descricao, List<String> comando) {
+        if (descricao.isTest()) {
+            comando.add(ExecucaoIsolada.codificar(descricao.getDisplayName()));
+        }
+        for (Description filho : descricao.getChildren()) {
+            listarTestes(filho, comando);
+        }
+    }
+
+    /**
+     * Classes sem historico recebem a media das conhecidas
+     */
+    private Map<Runner, Long> estimarDuracoes() {
+        Map<Runner, Long> duracoes = new LinkedHashMap<>();
+        long soma = 0;
+        int conhecidas = 0;
+        for (Runner classe : classes) {
+            long duracao = historico.getDuracao(nome(classe));
+            duracoes.put(classe, duracao);
+            if (duracao != HistoricoDuracoes.DESCONHECIDA) {
+                soma += duracao;
+                conhecidas++;
+            }
+        }
+        long media = conhecidas > 0 ? soma / conhecidas : DURACAO_PADRAO;
+        duracoes.replaceAll((classe, duracao) -> duracao == HistoricoDuracoes.DESCONHECIDA ? media : duracao);
+        return duracoes;
+    }
+
+    private String nome(Runner classe) {
+        return nomes.get(classe);
+    }
+
+    private static void aguardar(Future<?> execucao) throws Exception {
+        try {
+            execucao.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) {
+                throw (Exception) causa;
+            }
+            throw e;
+        }
+    }
+
+    private static Class<?>[] descobrir(String pacote, ClassLoader loader) throws InitializationError {
+        String caminho = pacote.replace('.', '/');
+        TreeSet<String> nomes = new TreeSet<>();
+        try {
+            Enumeration<URL> recursos = loader.getResources(caminho);
+            while (recursos.hasMoreElements()) {
+                URL recurso = recursos.nextElement();
+                if ("file".equals(recurso.getProtocol())) {
+                    listarDiretorio(Paths.get(recurso.toURI()), pacote, nomes);
+                } else if ("jar".equals(recurso.getProtocol())) {
+                    listarJar((JarURLConnection) recurso.openConnection(), caminho, nomes);
+                }
+            }
+        } catch (IOException | URISyntaxException | UncheckedIOException e) {
+            throw new InitializationError(e);
+        }
+
+        List<Class<?>> classes = new ArrayList<>();
+        for (String nome : nomes) {
+            try {
+                Class<?> classe = Class.forName(nome, false, loader);
+                if (isClasseDeTeste(classe)) {
+                    classes.add(classe);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new InitializationError(e);
+            }
+        }
+        return classes.toArray(new Class<?>[0]);
+    }
+
+    private static void listarDiretorio(Path raiz, String pacote, TreeSet<String> nomes) throws IOException {
+        try (Stream<Path> arquivos = Files.walk(raiz)) {
+            arquivos.map(raiz::relativize)
+                    .map(Path::toString)
+                    .filter(SuiteParalela::isArquivoDeTeste)
+                    .forEach(arquivo -> nomes.add(pacote + "." + nomeDaClasse(arquivo.replace(File.separatorChar, '/'))));
+        }
+    }
+
+    private static void listarJar(JarURLConnection conexao, String caminho, TreeSet<String> nomes) throws IOException {
+        conexao.setUseCaches(false);
+        try (JarFile jar = conexao.getJarFile()) {
+            Enumeration<JarEntry> entradas = jar.entries();
+            while (entradas.hasMoreElements()) {
+                String entrada = entradas.nextElement().getName();
+                if (entrada.startsWith(caminho + "/") && isArquivoDeTeste(entrada)) {
+                    nomes.add(nomeDaClasse(entrada));
+                }
+            }
+        }
+    }
+
+    private static boolean isArquivoDeTeste(String arquivo) {
+        return arquivo.endsWith("Test.class") && arquivo.indexOf('$') < 0;
+    }
+
+    private static String nomeDaClasse(String arquivo) {
+        return arquivo.substring(0, arquivo.length() - ".class".length()).replace('/', '.');
+    }
+
+    /**
+     * Classes do PowerMock rodam numa JVM propria: a manipulacao de bytecode e os mocks estaticos
+     * 	nao sao confiaveis com outras classes de teste rodando ao mesmo tempo na mesma JVM
+     */
+    private static boolean isIsolada(Class<?> classe) {
+        RunWith runWith = classe.getAnnotation(RunWith.class);
+        return runWith != null && runWith.value().getName().startsWith("org.powermock.");
+    }
+
+    /**
+     * Ignora classes abstratas e outras suites, para nao executar testes duas vezes
+     */
+    private static boolean isClasseDeTeste(Class<?> classe) {
+        if (Modifier.isAbstract(classe.getModifiers()) || !Modifier.isPublic(classe.getModifiers())) {
+            return false;
+        }
+        RunWith runWith = classe.getAnnotation(RunWith.class);
+        return runWith == null || runWith.value() != Suite.class && runWith.value() != SuiteParalela.class;
+    }
+
+    /**
+     * Falha ocorrida na JVM de uma classe isolada. Mantem o nome da classe da excecao original e
+     * 	imprime o rastro completo recebido daquela JVM.
+     */
+    static final class FalhaEmOutraJvm extends AssertionError {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String classe;
+        private final String rastro;
+
+        FalhaEmOutraJvm(String classe, String rastro) {
+            super(mensagem(classe, rastro));
+            this.classe = classe;
+            this.rastro = rastro;
+            setStackTrace(new StackTraceElement[0]);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage() != null ? classe + ": " + getMessage() : classe;
+        }
+
+        @Override
+        public void printStackTrace(PrintStream saida) {
+            saida.print(rastro);
+        }
+
+        @Override
+        public void printStackTrace(PrintWriter saida) {
+            saida.print(rastro);
+        }
+
+        /*
+         * A primeira linha do rastro e o toString() da excecao: "classe: mensagem"
+         */
+        private static String mensagem(String classe, String rastro) {
+            int fim = rastro.indexOf('\n');
+            String primeiraLinha = (fim < 0 ? rastro : rastro.substring(0, fim)).trim();
+            String prefixo = classe + ": ";
+            return primeiraLinha.startsWith(prefixo) ? primeiraLinha.substring(prefixo.length()) : null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package br.ce.wcaquino.serializacao;
+
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.utils.DataUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+
+public class LocacaoCodecTest {
+
+    @Test
+    public void deveLerALocacaoEscrita() {
+        // cenario
+        Locacao locacao = umaLocacao().atrasada()
+                .comFilmes(umFilme().comNome("Filme 1").comValor(3.99).get(), umFilme().comNome("Filme 2").comValor(Math.PI).get())
+                .get();
+        locacao.getFilmes().get(1).setEstoque(-3);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // acao
+        new LocacaoCodec().escreverLocacao(locacao, buffer);
+        buffer.flip();
+        Locacao lida = new LocacaoCodec().lerLocacao(buffer);
+
+        // verificacao
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(locacao.getUsuario(), lida.getUsuario());
+        Assert.assertTrue(DataUtils.isMesmaData(locacao.getDataLocacao(), lida.getDataLocacao()));
+        Assert.assertTrue(DataUtils.isMesmaData(locacao.getDataRetorno(), lida.getDataRetorno()));
+        Assert.assertEquals(locacao.getValor(), lida.getValor());
+        Assert.assertEquals("Filme 1", lida.getFilmes().get(0).getNome());
+        Assert.assertEquals(Double.valueOf(3.99), lida.getFilmes().get(0).getPrecoLocacao());
+        Assert.assertEquals(Double.valueOf(Math.PI), lida.getFilmes().get(1).getPrecoLocacao());
+        Assert.assertEquals(Integer.valueOf(-3), lida.getFilmes().get(1).getEstoque());
+    }
+
+    @Test
+    public void devePreservarOHorarioDasDatas() {
+        // cenario
+        ZonedDateTime locacaoEm = ZonedDateTime.of(2017, 4, 28, 10, 15, 30, 123_000_000, ZoneId.of("America/Sao_Paulo"));
+        Locacao locacao = umaLocacao().get();
+        locacao.setDataLocacao(Date.from(locacaoEm.toInstant()));
+        locacao.setDataRetorno(Date.from(locacaoEm.plusDays(1).toInstant()));
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        // acao
+        new LocacaoCodec().escreverLocacao(locacao, buffer);
+        buffer.flip();
+        Locacao lida = new LocacaoCodec().lerLocacao(buffer);
+
+        // verificacao
+        Assert.assertEquals(locacao.getDataLocacao(), lida.getDataLocacao());
+        Assert.assertEquals(locacao.getDataRetorno(), lida.getDataRetorno());
+    }
+
+    @Test
+    public void deveLerDatasDaVersaoEmDias() {
+        // cenario: mensagem da versao 1 somente com as datas, gravadas como dia epoch
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) 1).put((byte) 0b110);
+        LocacaoCodec.escreverVarLongZigZag(LocalDate.of(2017, 4, 28).toEpochDay(), buffer);
+        LocacaoCodec.escreverVarLongZigZag(LocalDate.of(2017, 4, 29).toEpochDay(), buffer);
+        buffer.flip();
+
+        // acao
+        Locacao lida = new LocacaoCodec(ZoneOffset.UTC, 16).lerLocacao(buffer);
+
+        // verificacao
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(Date.from(ZonedDateTime.of(2017, 4, 28, 0, 0, 0, 0, ZoneOffset.UTC).toInstant()), lida.getDataLocacao());
+        Assert.assertEquals(Date.from(ZonedDateTime.of(2017, 4, 29, 0, 0, 0, 0, ZoneOffset.UTC).toInstant()), lida.getDataRetorno());
+    }
+
+    @Test
+    public void deveManterCamposNulos() {
+        // cenario
+        Locacao locacao = new Locacao();
+        locacao.setUsuario(new Usuario());
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        // acao
+        new LocacaoCodec().escreverLocacao(locacao, buffer);
+        buffer.flip();
+        Locacao lida = new LocacaoCodec().lerLocacao(buffer);
+
+        // verificacao
+        Assert.assertEquals(3, buffer.limit());
+        Assert.assertNull(lida.getUsuario().getNome());
+        Assert.assertNull(lida.getDataLocacao());
+        Assert.assertNull(lida.getDataRetorno());
+        Assert.assertNull(lida.getValor());
+        Assert.assertNull(lida.getFilmes());
+    }
+
+    @Test
+    public void deveGravarNomesRepetidosApenasComoReferencia() {
+        // cenario
+        LocacaoCodec escritor = new LocacaoCodec();
+        LocacaoCodec leitor = new LocacaoCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        Locacao locacao = umaLocacao().comFilmes(umFilme().get(), umFilme().get()).get();
+
+        // acao
+        escritor.escreverLocacao(locacao, buffer);
+        int primeira = buffer.position();
+        escritor.escreverLocacao(locacao, buffer);
+        int segunda = buffer.position() - primeira;
+        buffer.flip();
+
+        // verificacao
+        Assert.assertEquals(primeira - "Usuario 1".length() - "Filme 1".length() - 2, segunda);
+        Assert.assertEquals(2, escritor.getTamanhoDicionario());
+        Assert.assertEquals("Filme 1", leitor.lerLocacao(buffer).getFilmes().get(1).getNome());
+        Assert.assertEquals("Usuario 1", leitor.lerLocacao(buffer).getUsuario().getNome());
+    }
+
+    @Test
+    public void deveDesfazerDicionarioQuandoLocacaoNaoCabeNoBuffer() {
+        // cenario
+        LocacaoCodec escritor = new LocacaoCodec();
+        Locacao locacao = umaLocacao().comFilmes(umFilme().get()).get();
+
+        // acao
+        try {
+            escritor.escreverLocacao(locacao, ByteBuffer.allocate(16));
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (BufferOverflowException e) {
+            // esperado
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        escritor.escreverLocacao(locacao, buffer);
+        buffer.flip();
+
+        // verificacao: o leitor, que nunca viu a tentativa anterior, le a locacao
+        Assert.assertEquals("Filme 1", new LocacaoCodec().lerLocacao(buffer).getFilmes().get(0).getNome());
+    }
+
+    @Test
+    public void deveRespeitarTamanhoMaximoDoDicionario() {
+        // cenario
+        LocacaoCodec escritor = new LocacaoCodec(ZoneId.systemDefault(), 1);
+        LocacaoCodec leitor = new LocacaoCodec(ZoneId.systemDefault(), 1);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // acao
+        escritor.escreverUsuario(new Usuario("Usuario 1"), buffer);
+        escritor.escreverFilme(umFilme().get(), buffer);
+        escritor.escreverUsuario(new Usuario("Usuario 1"), buffer);
+        escritor.escreverFilme(umFilme().get(), buffer);
+        buffer.flip();
+
+        // verificacao
+        Assert.assertEquals(1, escritor.getTamanhoDicionario());
+        Assert.assertEquals("Usuario 1", leitor.lerUsuario(buffer).getNome());
+        Assert.assertEquals("Filme 1", leitor.lerFilme(buffer).getNome());
+        Assert.assertEquals("Usuario 1", leitor.lerUsuario(buffer).getNome());
+        Assert.assertEquals("Filme 1", leitor.lerFilme(buffer).getNome());
+    }
+
+    @Test
+    public void deveRejeitarVersaoDesconhecida() {
+        // cenario
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{LocacaoCodec.VERSAO + 1, 0});
+
+        // acao
+        try {
+            new LocacaoCodec().lerLocacao(buffer);
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (IllegalArgumentException e) {
+            // verificacao
+            Assert.assertEquals("Versao de serializacao nao suportada: " + (LocacaoCodec.VERSAO + 1), e.getMessage());
+        }
+    }
+
+    @Test
+    public void deveCodificarVarintsNosLimites() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long[] valores = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE, -719528};
+        for (long valor : valores) {
+            LocacaoCodec.escreverVarLongZigZag(valor, buffer);
+        }
+        LocacaoCodec.escreverVarInt(Integer.MAX_VALUE, buffer);
+        buffer.flip();
+
+        for (long valor : valores) {
+            Assert.assertEquals(valor, LocacaoCodec.lerVarLongZigZag(buffer));
+        }
+        Assert.assertEquals(Integer.MAX_VALUE, LocacaoCodec.lerVarInt(buffer));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+}
@@ -2,7 +2,7 @@ package br.ce.wcaquino.servicos;
 
 import br.ce.wcaquino.daos.LocacaoDao;
 import br.ce.wcaquino.entidades.Filme;
-import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
 import br.ce.wcaquino.entidades.Usuario;
 import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
 import br.ce.wcaquino.exceptions.LocadoraException;
@@ -77,7 +77,7 @@ public class DDT_CalculoValorLocacaoTest {
         Usuario usuario = new Usuario("Usuaro 1");
 
         // acao
-        Locacao locacao = this.service.alugarFilmes(usuario, this.filmes);
+        LocacaoImutavel locacao = this.service.alugarFilmes(usuario, this.filmes);
 
         // verificacao
         Assert.assertEquals(this.valorLocacao, locacao.getValor(), 0.01);
@@ -0,0 +1,161 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+
+public class EstoqueFilmesTest {
+
+    private EstoqueFilmes estoque;
+
+    @Before
+    public void setup() {
+        estoque = new EstoqueFilmes();
+    }
+
+    @Test
+    public void deveReservarTodosOsFilmesOuNenhum() {
+        // cenario
+        Filme filme1 = umFilme().comNome("Filme 1").get();
+        Filme filme2 = umFilme().comNome("Filme 2").get();
+        estoque.definirEstoque("Filme 1", 2);
+        estoque.definirEstoque("Filme 2", 1);
+
+        // acao
+        try {
+            estoque.reservar(Arrays.asList(filme1, filme2, filme2));
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (FilmeSemEstoqueException e) {
+            Assert.assertEquals("Filme sem estoque", e.getMessage());
+        }
+
+        // verificacao
+        Assert.assertEquals(Integer.valueOf(2), estoque.getEstoque("Filme 1"));
+        Assert.assertEquals(Integer.valueOf(1), estoque.getEstoque("Filme 2"));
+    }
+
+    @Test
+    public void deveDevolverCopiasSomenteQuandoReservaNaoConfirmada() throws Exception {
+        // cenario
+        Filme filme = umFilme().get();
+        estoque.definirEstoque("Filme 1", 3);
+
+        // acao
+        EstoqueFilmes.Reserva liberada = estoque.reservar(Arrays.asList(filme, filme));
+        liberada.liberar();
+        liberada.liberar();
+        EstoqueFilmes.Reserva confirmada = estoque.reservar(Arrays.asList(filme));
+        confirmada.confirmar();
+        confirmada.liberar();
+
+        // verificacao
+        Assert.assertEquals(Integer.valueOf(2), estoque.getEstoque("Filme 1"));
+    }
+
+    @Test
+    public void deveUsarEstoqueDoFilmeParaTitulosNaoCadastrados() throws Exception {
+        // cenario
+        Filme filme = umFilme().comNome("Novo").get();
+
+        // acao
+        estoque.reservar(Arrays.asList(filme)).confirmar();
+
+        // verificacao
+        Assert.assertEquals(Integer.valueOf(0), estoque.getEstoque("Novo"));
+    }
+
+    @Test
+    public void deveReservarUmDosCarrinhosComTitulosEmOrdemInversa() throws Exception {
+        // cenario
+        int rodadas = 500;
+        estoque.definirEstoque("Filme A", 1);
+        estoque.definirEstoque("Filme B", 1);
+        List<Filme> carrinhoAB = Arrays.asList(umFilme().comNome("Filme A").get(), umFilme().comNome("Filme B").get());
+        List<Filme> carrinhoBA = Arrays.asList(umFilme().comNome("Filme B").get(), umFilme().comNome("Filme A").get());
+        CyclicBarrier largada = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (int i = 0; i < rodadas; i++) {
+                // acao
+                Future<EstoqueFilmes.Reserva> reservaAB = executor.submit(() -> reservarAposLargada(largada, carrinhoAB));
+                Future<EstoqueFilmes.Reserva> reservaBA = executor.submit(() -> reservarAposLargada(largada, carrinhoBA));
+                EstoqueFilmes.Reserva primeira = reservaAB.get();
+                EstoqueFilmes.Reserva segunda = reservaBA.get();
+
+                // verificacao
+                Assert.assertTrue("Rodada " + i, (primeira == null) != (segunda == null));
+                (primeira != null ? primeira : segunda).liberar();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(Integer.valueOf(1), estoque.getEstoque("Filme A"));
+        Assert.assertEquals(Integer.valueOf(1), estoque.getEstoque("Filme B"));
+    }
+
+    private EstoqueFilmes.Reserva reservarAposLargada(CyclicBarrier largada, List<Filme> carrinho) throws Exception {
+        largada.await();
+        try {
+            return estoque.reservar(carrinho);
+        } catch (FilmeSemEstoqueException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void naoDeveReservarMaisCopiasQueOEstoqueComVariasThreads() throws Exception {
+        // cenario
+        int threads = 8;
+        int tentativasPorThread = 500;
+        int copias = 1000;
+        estoque.definirEstoque("Filme 1", copias);
+        List<Filme> carrinho = Arrays.asList(umFilme().get());
+        AtomicInteger reservadas = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            // acao
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < tentativasPorThread; i++) {
+                        try {
+                            estoque.reservar(carrinho).confirmar();
+                            reservadas.incrementAndGet();
+                        } catch (FilmeSemEstoqueException e) {
+                            // estoque esgotado
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // verificacao
+        Assert.assertEquals(copias, reservadas.get());
+        Assert.assertEquals(Integer.valueOf(0), estoque.getEstoque("Filme 1"));
+    }
+}
@@ -0,0 +1,253 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.LocacaoDaoEmMemoria;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+import br.ce.wcaquino.entidades.PedidoLocacao;
+import br.ce.wcaquino.entidades.ResultadoLocacao;
+import br.ce.wcaquino.servicos.FilaGravacaoLocacoes.PoliticaFilaCheia;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static org.mockito.Mockito.mock;
+
+public class FilaGravacaoLocacoesTest {
+
+    private final LocacaoDaoLento dao = new LocacaoDaoLento();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private FilaGravacaoLocacoes fila;
+
+    @After
+    public void encerrar() {
+        dao.liberar.countDown();
+        executor.shutdownNow();
+        if (fila != null) {
+            fila.close();
+        }
+    }
+
+    @Test
+    public void deveGravarEmLotesAsLocacoesDeVariosProdutores() throws Exception {
+        // cenario
+        fila = new FilaGravacaoLocacoes(dao, 1024, 64, PoliticaFilaCheia.BLOQUEAR);
+        List<Future<CompletableFuture<Locacao>>> envios = new ArrayList<>();
+
+        // acao
+        for (int produtor = 0; produtor < 4; produtor++) {
+            envios.add(executor.submit(() -> {
+                CompletableFuture<Locacao> ultima = null;
+                for (int i = 0; i < 100; i++) {
+                    ultima = fila.enfileirar(umaLocacao().get());
+                }
+                return ultima;
+            }));
+        }
+        List<CompletableFuture<Locacao>> confirmacoes = new ArrayList<>();
+        for (Future<CompletableFuture<Locacao>> envio : envios) {
+            confirmacoes.add(envio.get(5, TimeUnit.SECONDS));
+        }
+        aguardarGravadorOcupado();
+        dao.liberar.countDown();
+
+        // verificacao
+        for (CompletableFuture<Locacao> confirmacao : confirmacoes) {
+            Assert.assertNotNull(confirmacao.get(5, TimeUnit.SECONDS));
+        }
+        fila.close();
+        Assert.assertEquals(400, dao.getQuantidade());
+        Assert.assertTrue(fila.getTamanhoLote().getQuantidade() <= 1 + 399 / 64 + 1);
+        Assert.assertTrue(fila.getTamanhoLote().getMaximo() <= 64);
+        Assert.assertEquals(0, fila.getProfundidade());
+    }
+
+    @Test
+    public void deveRejeitarQuandoFilaEstiverCheia() throws Exception {
+        // cenario
+        fila = new FilaGravacaoLocacoes(dao, 2, 10, PoliticaFilaCheia.REJEITAR);
+        fila.enfileirar(umaLocacao().get());
+        aguardarGravadorOcupado();
+        fila.enfileirar(umaLocacao().get());
+        fila.enfileirar(umaLocacao().get());
+
+        // acao
+        CompletableFuture<Locacao> rejeitada = fila.enfileirar(umaLocacao().get());
+
+        // verificacao
+        try {
+            rejeitada.get(5, TimeUnit.SECONDS);
+            Assert.fail("Deveria ter rejeitado a locacao");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertEquals(2, fila.getProfundidade());
+        Assert.assertEquals(1, fila.getRejeitadas());
+    }
+
+    @Test
+    public void deveGravarNoChamadorQuandoFilaEstiverCheia() throws Exception {
+        // cenario
+        fila = new FilaGravacaoLocacoes(dao, 2, 10, PoliticaFilaCheia.EXECUTAR_NO_CHAMADOR);
+        fila.enfileirar(umaLocacao().get());
+        aguardarGravadorOcupado();
+        fila.enfileirar(umaLocacao().get());
+        fila.enfileirar(umaLocacao().get());
+        Locacao locacao = umaLocacao().get();
+
+        // acao
+        CompletableFuture<Locacao> gravada = fila.enfileirar(locacao);
+
+        // verificacao
+        Assert.assertSame(locacao, gravada.getNow(null));
+        Assert.assertEquals(1, dao.getQuantidade());
+        Assert.assertEquals(1, fila.getGravadasNoChamador());
+    }
+
+    @Test
+    public void deveUsarAoMenosDuasPosicoes() {
+        fila = new FilaGravacaoLocacoes(dao, 1, 10, PoliticaFilaCheia.REJEITAR);
+
+        Assert.assertEquals(2, fila.getCapacidade());
+    }
+
+    @Test
+    public void deveCompletarTodoOLoteComOErroDaGravacao() throws Exception {
+        // cenario
+        IllegalStateException erro = new IllegalStateException("Banco indisponivel");
+        dao.erro = erro;
+        fila = new FilaGravacaoLocacoes(dao, 8, 8, PoliticaFilaCheia.BLOQUEAR);
+        fila.enfileirar(umaLocacao().get());
+        aguardarGravadorOcupado();
+        CompletableFuture<Locacao> segunda = fila.enfileirar(umaLocacao().get());
+        CompletableFuture<Locacao> terceira = fila.enfileirar(umaLocacao().get());
+
+        // acao
+        dao.liberar.countDown();
+
+        // verificacao
+        for (CompletableFuture<Locacao> confirmacao : Arrays.asList(segunda, terceira)) {
+            try {
+                confirmacao.get(5, TimeUnit.SECONDS);
+                Assert.fail("Deveria ter propagado o erro da gravacao");
+            } catch (ExecutionException e) {
+                Assert.assertSame(erro, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void deveGravarPendentesAoEncerrarERecusarNovas() throws Exception {
+        // cenario
+        fila = new FilaGravacaoLocacoes(dao, 8, 8, PoliticaFilaCheia.BLOQUEAR);
+        dao.liberar.countDown();
+        CompletableFuture<Locacao> pendente = fila.enfileirar(umaLocacao().get());
+
+        // acao
+        fila.close();
+        CompletableFuture<Locacao> recusada = fila.enfileirar(umaLocacao().get());
+
+        // verificacao
+        Assert.assertTrue(pendente.isDone() && !pendente.isCompletedExceptionally());
+        Assert.assertTrue(recusada.isCompletedExceptionally());
+        Assert.assertEquals(1, dao.getQuantidade());
+    }
+
+    @Test
+    public void deveAlugarPelaFilaDeGravacao() throws Exception {
+        // cenario
+        dao.liberar.countDown();
+        fila = new FilaGravacaoLocacoes(dao, 8, 8, PoliticaFilaCheia.BLOQUEAR);
+        LocacaoService service = new LocacaoService(dao, mock(SpcService.class), mock(EmailService.class));
+        service.setFilaGravacao(fila);
+
+        // acao
+        LocacaoImutavel sincrona = service.alugarFilmes(umUsuario().get(), Collections.singletonList(umFilme().get()));
+        LocacaoImutavel assincrona = service.alugarFilmesAsync(umUsuario().get(), Collections.singletonList(umFilme().get()))
+                .get(5, TimeUnit.SECONDS);
+
+        // verificacao
+        Assert.assertEquals(Arrays.asList(sincrona, assincrona),
+                dao.findLocacoesPendentes().stream().map(LocacaoImutavel::de).collect(Collectors.toList()));
+        Assert.assertEquals(2, fila.getTamanhoLote().getQuantidade());
+    }
+
+    @Test
+    public void deveCompletarConfirmacoesForaDoGravador() throws Exception {
+        // cenario
+        fila = new FilaGravacaoLocacoes(dao, 8, 8, PoliticaFilaCheia.BLOQUEAR, executor);
+        CompletableFuture<String> continuacao = fila.enfileirar(umaLocacao().get())
+                .thenApply(locacao -> Thread.currentThread().getName());
+        aguardarGravadorOcupado();
+
+        // acao
+        dao.liberar.countDown();
+
+        // verificacao
+        Assert.assertNotEquals("locacao-gravador", continuacao.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deveAlugarEmLotePelaFilaDeGravacao() throws Exception {
+        // cenario
+        dao.liberar.countDown();
+        fila = new FilaGravacaoLocacoes(dao, 8, 8, PoliticaFilaCheia.BLOQUEAR);
+        LocacaoService service = new LocacaoService(dao, mock(SpcService.class), mock(EmailService.class));
+        service.setFilaGravacao(fila);
+        List<PedidoLocacao> pedidos = Arrays.asList(
+                new PedidoLocacao(umUsuario().get(), Collections.singletonList(umFilme().get())),
+                new PedidoLocacao(umUsuario().comNome("Usuario 2").get(), Collections.singletonList(umFilme().get())));
+
+        // acao
+        List<ResultadoLocacao> resultados = service.alugarFilmesEmLote(pedidos);
+
+        // verificacao
+        List<LocacaoImutavel> gravadas = dao.findLocacoesPendentes().stream().map(LocacaoImutavel::de).collect(Collectors.toList());
+        Assert.assertEquals(2, gravadas.size());
+        Assert.assertTrue(gravadas.containsAll(Arrays.asList(resultados.get(0).getLocacao(), resultados.get(1).getLocacao())));
+        Assert.assertTrue(fila.getTamanhoLote().getQuantidade() >= 1);
+    }
+
+    private void aguardarGravadorOcupado() throws InterruptedException {
+        Assert.assertTrue(dao.gravando.await(5, TimeUnit.SECONDS));
+    }
+
+    /*
+     * Segura o primeiro lote ate o teste liberar, para que os seguintes se acumulem na fila
+     */
+    private static class LocacaoDaoLento extends LocacaoDaoEmMemoria {
+        private final CountDownLatch gravando = new CountDownLatch(1);
+        private final CountDownLatch liberar = new CountDownLatch(1);
+        private volatile RuntimeException erro;
+
+        @Override
+        public void salvarTodos(List<Locacao> locacoes) {
+            gravando.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (erro != null) {
+                throw erro;
+            }
+            super.salvarTodos(locacoes);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Locacao;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+
+public class IndiceVencimentosTest {
+
+    private IndiceVencimentos indice;
+
+    @Before
+    public void setup() {
+        indice = new IndiceVencimentos(ZoneOffset.UTC);
+    }
+
+    private static Date em(int dia, int hora) {
+        return Date.from(ZonedDateTime.of(2017, 4, dia, hora, 0, 0, 0, ZoneOffset.UTC).toInstant());
+    }
+
+    @Test
+    public void deveRetirarCadaLocacaoVencidaUmaUnicaVez() {
+        // cenario
+        Locacao vencidaOntem = umaLocacao().comDataRetorno(em(27, 10)).get();
+        Locacao vencidaHoje = umaLocacao().comDataRetorno(em(28, 8)).get();
+        Locacao venceHojeMaisTarde = umaLocacao().comDataRetorno(em(28, 18)).get();
+        Locacao venceAmanha = umaLocacao().comDataRetorno(em(29, 10)).get();
+        indice.adicionarTodas(Arrays.asList(venceAmanha, venceHojeMaisTarde, vencidaHoje, vencidaOntem));
+
+        // acao
+        List<Locacao> primeira = indice.retirarVencidas(em(28, 10));
+        List<Locacao> segunda = indice.retirarVencidas(em(28, 12));
+
+        // verificacao
+        Assert.assertEquals(Arrays.asList(vencidaOntem, vencidaHoje), primeira);
+        Assert.assertEquals(Collections.emptyList(), segunda);
+        Assert.assertEquals(2, indice.getQuantidade());
+    }
+
+    @Test
+    public void deveRetirarLocacoesQueVenceramEntreVerificacoes() {
+        // cenario
+        Locacao venceHojeMaisTarde = umaLocacao().comDataRetorno(em(28, 18)).get();
+        Locacao venceAmanha = umaLocacao().comDataRetorno(em(29, 10)).get();
+        indice.adicionarTodas(Arrays.asList(venceHojeMaisTarde, venceAmanha));
+        indice.retirarVencidas(em(28, 10));
+
+        // acao
+        List<Locacao> vencidas = indice.retirarVencidas(em(30, 0));
+
+        // verificacao
+        Assert.assertEquals(Arrays.asList(venceHojeMaisTarde, venceAmanha), vencidas);
+        Assert.assertEquals(0, indice.getQuantidade());
+        Assert.assertEquals(0, indice.getQuantidadeDias());
+    }
+
+    @Test
+    public void deveRemoverApenasAMesmaInstancia() {
+        // cenario
+        Locacao locacao = umaLocacao().comDataRetorno(em(29, 10)).get();
+        Locacao outra = umaLocacao().comDataRetorno(em(29, 10)).get();
+        indice.adicionar(locacao);
+        indice.adicionar(outra);
+
+        // acao
+        boolean removida = indice.remover(locacao);
+
+        // verificacao
+        Assert.assertTrue(removida);
+        Assert.assertFalse(indice.remover(locacao));
+        Assert.assertEquals(Collections.singletonList(outra), indice.retirarVencidas(em(30, 0)));
+    }
+}
@@ -0,0 +1,271 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.LocacaoDao;
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.entidades.FilmeLocado;
+import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+import br.ce.wcaquino.entidades.ResultadoLocacao;
+import br.ce.wcaquino.entidades.ResultadoNotificacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.NotificacaoParcialException;
+import br.ce.wcaquino.runners.ParallelRunner;
+import br.ce.wcaquino.utils.CalendarioComercial;
+import br.ce.wcaquino.utils.DataUtils;
+import org.hamcrest.MatcherAssert;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static br.ce.wcaquino.matchers.OwnMatchers.caiNumaSegundaFeira;
+import static org.mockito.Mockito.mock;
+
+/*
+ * Cenarios dependentes de data usando um Clock fixo no lugar do PowerMock,
+ * por isso rodam com o runner padrao (aqui, em paralelo) e sem manipulacao de bytecode.
+ */
+@RunWith(ParallelRunner.class)
+public class LocacaoServiceClockTest {
+
+    private LocacaoService service;
+    private LocacaoDao dao;
+    private EmailService emailService;
+
+    @Before
+    public void setup() {
+        dao = mock(LocacaoDao.class);
+        emailService = mock(EmailService.class);
+        service = new LocacaoService(dao, mock(SpcService.class), emailService);
+    }
+
+    private static Clock relogioEm(int dia, int mes, int ano) {
+        ZoneId zona = ZoneId.systemDefault();
+        return Clock.fixed(ZonedDateTime.of(ano, mes, dia, 10, 0, 0, 0, zona).toInstant(), zona);
+    }
+
+    @Test
+    public void deveFazerLocarComSucesso() throws Exception {
+        // cenario
+        service.setClock(relogioEm(28, 4, 2017));
+        Usuario usuario = umUsuario().get();
+        Filme filme1 = umFilme().comValor(5.0).get();
+
+        // acao
+        LocacaoImutavel locacao = service.alugarFilmes(usuario, Arrays.asList(filme1));
+
+        // verificacao
+        Assert.assertEquals(5.0, locacao.getValor(), 0.01);
+        Assert.assertTrue(DataUtils.isMesmaData(locacao.getDataLocacao(), DataUtils.obterData(28, 4, 2017)));
+        Assert.assertTrue(DataUtils.isMesmaData(locacao.getDataRetorno(), DataUtils.obterData(29, 4, 2017)));
+    }
+
+    @Test
+    public void deveCriarLocacaoImutavelComCopiaDosFilmes() throws Exception {
+        // cenario
+        service.setClock(relogioEm(28, 4, 2017));
+        Filme filme = umFilme().get();
+        List<Filme> filmes = new ArrayList<>(Arrays.asList(filme));
+
+        // acao
+        LocacaoImutavel locacao = service.alugarFilmes(umUsuario().get(), filmes);
+        filmes.clear();
+        filme.setNome("Outro nome");
+        filme.setPrecoLocacao(1.0);
+
+        // verificacao
+        Assert.assertEquals(1, locacao.getFilmes().size());
+        Assert.assertEquals(new FilmeLocado("Filme 1", 4.0), locacao.getFilmes().get(0));
+    }
+
+    @Test
+    public void deveDevolverNaSegundaAoAlugarNoSabado() throws Exception {
+        // cenario
+        service.setClock(relogioEm(29, 4, 2017));
+        Usuario usuario = umUsuario().get();
+
+        // acao
+        LocacaoImutavel locacao = service.alugarFilmes(usuario, Arrays.asList(umFilme().get()));
+
+        // verificacao
+        Assert.assertTrue(DataUtils.verificarDiaSemana(locacao.getDataRetorno(), Calendar.MONDAY));
+        MatcherAssert.assertThat(locacao.getDataRetorno(), caiNumaSegundaFeira());
+    }
+
+    @Test
+    public void deveDevolverNoPrimeiroDiaAbertoDoCalendarioDaLoja() throws Exception {
+        // cenario
+        service.setClock(relogioEm(28, 4, 2017));
+        service.setCalendarioComercial(CalendarioComercial.fechadoAosDomingos()
+                .fecharDiaSemana(DayOfWeek.SATURDAY)
+                .adicionarFeriado(LocalDate.of(2017, 5, 1)));
+
+        // acao
+        LocacaoImutavel locacao = service.alugarFilmes(umUsuario().get(), Arrays.asList(umFilme().get()));
+
+        // verificacao
+        Assert.assertTrue(DataUtils.isMesmaData(locacao.getDataRetorno(), DataUtils.obterData(2, 5, 2017)));
+    }
+
+    @Test
+    public void deveProrrogarLocacaoAPartirDoRelogio() throws Exception {
+        // cenario
+        service.setClock(relogioEm(28, 4, 2017));
+        Locacao locacao = umaLocacao().comFilmes(umFilme().get()).get();
+
+        // acao
+        service.prorrogarLocacao(locacao, 3);
+
+        // verificacao
+        ArgumentCaptor<Locacao> argument = ArgumentCaptor.forClass(Locacao.class);
+        Mockito.verify(dao).salvar(argument.capture());
+        Assert.assertTrue(DataUtils.isMesmaData(argument.getValue().getDataLocacao(), DataUtils.obterData(28, 4, 2017)));
+        Assert.assertTrue(DataUtils.isMesmaData(argument.getValue().getDataRetorno(), DataUtils.obterData(1, 5, 2017)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deveConsiderarAtrasoEmRelacaoAoRelogio() {
+        // cenario
+        Clock relogio = relogioEm(28, 4, 2017);
+        service.setClock(relogio);
+
+        // acao
+        service.notificarAtrasos();
+
+        // verificacao
+        ArgumentCaptor<Date> dataLimite = ArgumentCaptor.forClass(Date.class);
+        Mockito.verify(dao).findLocacoesAtrasadas(dataLimite.capture(), Mockito.eq(1000), Mockito.any(Consumer.class));
+        Assert.assertEquals(relogio.millis(), dataLimite.getValue().getTime());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deveNotificarApenasNovosAtrasosPeloIndiceDeVencimentos() throws Exception {
+        // cenario
+        service.setIndiceVencimentos(new IndiceVencimentos());
+        service.setClock(relogioEm(27, 4, 2017));
+        Usuario usuario1 = umUsuario().comNome("Usuario 1").get();
+        Usuario usuario2 = umUsuario().comNome("Usuario 2").get();
+        service.alugarFilmes(usuario1, Arrays.asList(umFilme().get()));
+        service.alugarFilmes(usuario2, Arrays.asList(umFilme().get()));
+        ArgumentCaptor<Locacao> gravadas = ArgumentCaptor.forClass(Locacao.class);
+        Mockito.verify(dao, Mockito.times(2)).salvar(gravadas.capture());
+        service.prorrogarLocacao(gravadas.getAllValues().get(0), 5);
+
+        // acao
+        service.setClock(relogioEm(29, 4, 2017));
+        service.notificarAtrasos();
+        service.notificarAtrasos();
+
+        // verificacao
+        Mockito.verify(emailService).notificarAtrasos(Arrays.asList(usuario2));
+        Mockito.verifyNoMoreInteractions(emailService);
+        Mockito.verify(dao, Mockito.never()).findLocacoesAtrasadas(Mockito.any(Date.class), Mockito.anyInt(), Mockito.any(Consumer.class));
+    }
+
+    @Test
+    public void deveRenotificarPeloIndiceQuemNaoFoiNotificado() throws Exception {
+        // cenario
+        service.setIndiceVencimentos(new IndiceVencimentos());
+        service.setNotificadorAtrasos(new NotificadorAtrasos(emailService).comMaximoTentativas(1));
+        service.setClock(relogioEm(27, 4, 2017));
+        Usuario usuario1 = umUsuario().comNome("Usuario 1").get();
+        Usuario usuario2 = umUsuario().comNome("Usuario 2").get();
+        service.alugarFilmes(usuario1, Arrays.asList(umFilme().get()));
+        service.alugarFilmes(usuario2, Arrays.asList(umFilme().get()));
+        Mockito.doThrow(new NotificacaoParcialException(Arrays.asList(usuario2), new RuntimeException("Caixa cheia")))
+                .when(emailService).notificarAtrasos(Arrays.asList(usuario1, usuario2));
+
+        // acao
+        service.setClock(relogioEm(29, 4, 2017));
+        ResultadoNotificacao primeira = service.notificarAtrasos();
+        ResultadoNotificacao segunda = service.notificarAtrasos();
+        ResultadoNotificacao terceira = service.notificarAtrasos();
+
+        // verificacao
+        Assert.assertEquals(Arrays.asList(usuario2), primeira.getNaoNotificados());
+        Assert.assertEquals(1, segunda.getEnviados());
+        Assert.assertEquals(0, terceira.getEnviados() + terceira.getFalhas());
+        Mockito.verify(emailService).notificarAtrasos(Arrays.asList(usuario1, usuario2));
+        Mockito.verify(emailService).notificarAtrasos(Arrays.asList(usuario2));
+        Mockito.verifyNoMoreInteractions(emailService);
+    }
+
+    @Test
+    public void deveDevolverAoIndiceAsVencidasQuandoNotificacaoFalha() throws Exception {
+        // cenario
+        IndiceVencimentos indice = new IndiceVencimentos();
+        NotificadorAtrasos notificador = mock(NotificadorAtrasos.class);
+        service.setIndiceVencimentos(indice);
+        service.setNotificadorAtrasos(notificador);
+        service.setClock(relogioEm(27, 4, 2017));
+        service.alugarFilmes(umUsuario().comNome("Usuario 1").get(), Arrays.asList(umFilme().get()));
+        service.alugarFilmes(umUsuario().comNome("Usuario 2").get(), Arrays.asList(umFilme().get()));
+        Mockito.when(notificador.notificar(Mockito.anyCollectionOf(Usuario.class)))
+                .thenThrow(new IllegalStateException("Falha inesperada ao notificar atrasos"))
+                .thenReturn(new ResultadoNotificacao(2, Collections.emptyList()));
+
+        // acao
+        service.setClock(relogioEm(29, 4, 2017));
+        try {
+            service.notificarAtrasos();
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Falha inesperada ao notificar atrasos", e.getMessage());
+        }
+
+        // verificacao
+        Assert.assertEquals(2, indice.getQuantidade());
+        Assert.assertEquals(2, service.notificarAtrasos().getEnviados());
+        Assert.assertEquals(0, indice.getQuantidade());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deveProrrogarLocacoesEmLoteComUmaUnicaGravacao() {
+        // cenario
+        service.setClock(relogioEm(28, 4, 2017));
+        Locacao locacao1 = umaLocacao().comFilmes(umFilme().get()).get();
+        Locacao locacao2 = umaLocacao().comUsuario(umUsuario().comNome("Usuario 2").get()).comFilmes(umFilme().get()).get();
+        Locacao semFilmes = umaLocacao().get();
+
+        // acao
+        List<ResultadoLocacao> resultados = service.prorrogarLocacoes(Arrays.asList(locacao1, semFilmes, locacao2), 3);
+
+        // verificacao
+        Assert.assertTrue(resultados.get(0).isSucesso());
+        Assert.assertFalse(resultados.get(1).isSucesso());
+        Assert.assertEquals("Filme nao informado", resultados.get(1).getErro().getMessage());
+        Assert.assertTrue(resultados.get(2).isSucesso());
+        Assert.assertEquals(15.0, resultados.get(2).getLocacao().getValor(), 0.01);
+
+        ArgumentCaptor<List<Locacao>> argument = ArgumentCaptor.forClass((Class<List<Locacao>>) (Class<?>) List.class);
+        Mockito.verify(dao).salvarTodos(argument.capture());
+        Mockito.verify(dao, Mockito.never()).salvar(Mockito.any(Locacao.class));
+        List<Locacao> salvas = argument.getValue();
+        Assert.assertEquals(Arrays.asList(resultados.get(0).getLocacao(), resultados.get(2).getLocacao()),
+                salvas.stream().map(LocacaoImutavel::de).collect(Collectors.toList()));
+        Assert.assertEquals(salvas.get(0).getDataLocacao(), salvas.get(1).getDataLocacao());
+        Assert.assertTrue(DataUtils.isMesmaData(salvas.get(1).getDataRetorno(), DataUtils.obterData(1, 5, 2017)));
+    }
+}
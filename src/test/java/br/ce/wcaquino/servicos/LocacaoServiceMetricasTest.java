@@ -0,0 +1,100 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.LocacaoDao;
+import br.ce.wcaquino.entidades.Filme;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.metricas.Etapa;
+import br.ce.wcaquino.metricas.MetricasLocacao;
+import br.ce.wcaquino.metricas.MotivoRejeicao;
+import br.ce.wcaquino.metricas.RegistroMetricas;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilmeSemEstoque;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+public class LocacaoServiceMetricasTest {
+
+    private LocacaoService service;
+    private SpcService spcService;
+    private RegistroMetricas metricas;
+
+    @Before
+    public void setup() {
+        spcService = mock(SpcService.class);
+        service = new LocacaoService(mock(LocacaoDao.class), spcService, mock(EmailService.class));
+        metricas = new RegistroMetricas();
+        service.setMetricas(metricas);
+    }
+
+    @Test
+    public void deveRegistrarLatenciaDeCadaEtapa() throws Exception {
+        // acao
+        service.alugarFilmes(umUsuario().get(), Arrays.asList(umFilme().get(), umFilme().get()));
+
+        // verificacao
+        for (Etapa etapa : Etapa.values()) {
+            Assert.assertEquals(etapa.name(), 1, metricas.getLatencia(etapa).getQuantidade());
+        }
+    }
+
+    @Test
+    public void deveContarRejeicoesPorMotivo() throws Exception {
+        // cenario
+        Usuario negativado = umUsuario().comNome("Negativado").get();
+        Usuario comErroNoSpc = umUsuario().comNome("Erro no SPC").get();
+        Mockito.when(spcService.possuiNegativacao(negativado)).thenReturn(true);
+        Mockito.when(spcService.possuiNegativacao(comErroNoSpc)).thenThrow(new RuntimeException("Falha"));
+        List<Filme> filmes = Arrays.asList(umFilme().get());
+
+        // acao
+        tentarAlugar(null, filmes);
+        tentarAlugar(umUsuario().get(), Collections.emptyList());
+        tentarAlugar(umUsuario().get(), Arrays.asList(umFilmeSemEstoque().get()));
+        tentarAlugar(negativado, filmes);
+        tentarAlugar(negativado, filmes);
+        tentarAlugar(comErroNoSpc, filmes);
+
+        // verificacao
+        Assert.assertEquals(1, metricas.getRejeicoes(MotivoRejeicao.USUARIO_NAO_INFORMADO));
+        Assert.assertEquals(1, metricas.getRejeicoes(MotivoRejeicao.FILME_NAO_INFORMADO));
+        Assert.assertEquals(1, metricas.getRejeicoes(MotivoRejeicao.FILME_SEM_ESTOQUE));
+        Assert.assertEquals(2, metricas.getRejeicoes(MotivoRejeicao.USUARIO_NEGATIVADO));
+        Assert.assertEquals(1, metricas.getRejeicoes(MotivoRejeicao.FALHA_SPC));
+        Assert.assertEquals(3, metricas.getLatencia(Etapa.CONSULTA_SPC).getQuantidade());
+        Assert.assertEquals(0, metricas.getLatencia(Etapa.PERSISTENCIA).getQuantidade());
+    }
+
+    @Test
+    public void naoDeveMedirLatenciaComMetricasDesativadas() throws Exception {
+        // cenario
+        MetricasLocacao desativadas = mock(MetricasLocacao.class);
+        service.setMetricas(desativadas);
+
+        // acao
+        service.alugarFilmes(umUsuario().get(), Arrays.asList(umFilme().get()));
+
+        // verificacao
+        Mockito.verify(desativadas, never()).registrarLatencia(any(Etapa.class), anyLong());
+    }
+
+    private void tentarAlugar(Usuario usuario, List<Filme> filmes) {
+        try {
+            service.alugarFilmes(usuario, filmes);
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (Exception e) {
+            // rejeicao esperada
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package br.ce.wcaquino.servicos;
 
+import br.ce.wcaquino.daos.CatalogoFilmes;
 import br.ce.wcaquino.daos.LocacaoDao;
 import br.ce.wcaquino.entidades.Filme;
 import br.ce.wcaquino.entidades.Locacao;
+import br.ce.wcaquino.entidades.LocacaoImutavel;
+import br.ce.wcaquino.entidades.PedidoLocacao;
+import br.ce.wcaquino.entidades.ResultadoLocacao;
+import br.ce.wcaquino.entidades.ResultadoNotificacao;
 import br.ce.wcaquino.entidades.Usuario;
 import br.ce.wcaquino.exceptions.FilmeSemEstoqueException;
 import br.ce.wcaquino.exceptions.LocadoraException;
@@ -25,12 +30,17 @@ import org.powermock.reflect.Whitebox;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
 import static br.ce.wcaquino.builders.FilmeBuilder.umFilmeSemEstoque;
 import static br.ce.wcaquino.builders.LocacaoBuilder.umaLocacao;
 import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static br.ce.wcaquino.daos.LocacaoDaoAnswers.atrasadasDe;
 import static br.ce.wcaquino.matchers.OwnMatchers.*;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Matchers.any;
@@ -88,6 +98,7 @@ public class LocacaoServiceTest {
 //    public void tearDown() {}
 
     @Test
+    @Ignore // Ignorado pois o LocacaoService nao usa mais Calendar; o teste foi movido para a classe LocacaoServiceClockTest
     public void deveFazerLocarComSucesso() throws Exception {
         // Sem PowerMock: Assume que só deve executar quando o new Date() nao for Sabado
 //        Assume.assumeFalse(DataUtils.verificarDiaSemana(new Date(), Calendar.SATURDAY));
@@ -107,7 +118,7 @@ public class LocacaoServiceTest {
         Filme filme1 = umFilme().comValor(5.0).get();
 
         //acao
-        Locacao locacao = service.alugarFilmes(usuario, Arrays.asList(filme1));
+        LocacaoImutavel locacao = service.alugarFilmes(usuario, Arrays.asList(filme1));
 
         // verificacao via @Rule ErrorCollector
         this.error.checkThat(locacao.getValor(), is(5.0));
@@ -134,7 +145,7 @@ public class LocacaoServiceTest {
         PowerMockito.doReturn(1.0).when(service, "calcularValorLocacao", filmes);
 
         // acao
-        Locacao locacao = service.alugarFilmes(usuario, filmes);
+        LocacaoImutavel locacao = service.alugarFilmes(usuario, filmes);
 
         // verificacao
         Assert.assertThat(locacao.getValor(), is(1.0));
@@ -231,7 +242,7 @@ public class LocacaoServiceTest {
         Filme filme3 = umFilme().get();
 
         // acao
-        Locacao locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3));
+        LocacaoImutavel locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3));
 
         // verificacao
         Assert.assertEquals(11.0, locacao.getValor(), 0.01);
@@ -249,7 +260,7 @@ public class LocacaoServiceTest {
         Filme filme4 = umFilme().get();
 
         // acao
-        Locacao locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3, filme4));
+        LocacaoImutavel locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3, filme4));
 
         // verificacao
         Assert.assertEquals(13.0, locacao.getValor(), 0.01);
@@ -268,7 +279,7 @@ public class LocacaoServiceTest {
         Filme filme5 = umFilme().get();
 
         // acao
-        Locacao locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3, filme4, filme5));
+        LocacaoImutavel locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3, filme4, filme5));
 
         // verificacao
         Assert.assertEquals(14.0, locacao.getValor(), 0.01);
@@ -288,13 +299,14 @@ public class LocacaoServiceTest {
         Filme filme6 = umFilme().get();
 
         // acao
-        Locacao locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3, filme4, filme5, filme6));
+        LocacaoImutavel locacao = this.service.alugarFilmes(usuario, Arrays.asList(filme1, filme2, filme3, filme4, filme5, filme6));
 
         // verificacao
         Assert.assertEquals(14.0, locacao.getValor(), 0.01);
     }
 
     @Test
+    @Ignore // Ignorado pois o LocacaoService nao usa mais Calendar; o teste foi movido para a classe LocacaoServiceClockTest
     public void deveDevolverNaSegundaAoAlugarNoSabado() throws Exception {
         // Sem PowerMock: Assume que só deve executar quando o Date() for Sabádo
 //        Assume.assumeTrue(DataUtils.verificarDiaSemana(new Date(), Calendar.SATURDAY));
@@ -316,7 +328,7 @@ public class LocacaoServiceTest {
         Filme filme1 = umFilme().get();
 
         // acao
-        Locacao locacao = service.alugarFilmes(usuario, Arrays.asList(filme1));
+        LocacaoImutavel locacao = service.alugarFilmes(usuario, Arrays.asList(filme1));
 
         // verificacao
         boolean ehSegunda = DataUtils.verificarDiaSemana(locacao.getDataRetorno(), Calendar.MONDAY);
@@ -352,6 +364,104 @@ public class LocacaoServiceTest {
         }
     }
 
+    @Test
+    public void deveDevolverEstoqueReservadoQuandoUsuarioNegativado() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        Filme filme = umFilme().comNome("Filme reservado").get();
+        EstoqueFilmes estoque = new EstoqueFilmes();
+        estoque.definirEstoque("Filme reservado", 1);
+        service.setEstoqueFilmes(estoque);
+
+        // cenario - mock
+        Mockito.when(spcService.possuiNegativacao(usuario)).thenReturn(true);
+
+        // acao
+        try {
+            service.alugarFilmes(usuario, Arrays.asList(filme));
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (LocadoraException e) {
+            Assert.assertEquals("Usuario negativado junto ao SPC.", e.getMessage());
+        }
+
+        // verificacao
+        Assert.assertEquals(Integer.valueOf(1), estoque.getEstoque("Filme reservado"));
+        Mockito.when(spcService.possuiNegativacao(usuario)).thenReturn(false);
+        service.alugarFilmes(usuario, Arrays.asList(filme));
+        Assert.assertEquals(Integer.valueOf(0), estoque.getEstoque("Filme reservado"));
+    }
+
+    @Test
+    public void deveAlugarFilmesDoCatalogoPorId() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        CatalogoFilmes catalogo = new CatalogoFilmes();
+        int filme1 = catalogo.cadastrar("Filme 1", 2, 4.0);
+        int filme2 = catalogo.cadastrar("Filme 2", 1, 6.0);
+        service.setCatalogoFilmes(catalogo);
+
+        // acao
+        LocacaoImutavel locacao = service.alugarFilmesDoCatalogo(usuario, new int[]{filme2, filme1, filme1});
+
+        // verificacao
+        catalogo.renomear(filme2, "Filme 2 remasterizado");
+        Assert.assertEquals(6.0 + 4.0 + 3.0, locacao.getValor(), 0.01);
+        Assert.assertEquals("Filme 2", locacao.getFilmes().get(0).getNome());
+        Assert.assertEquals(3, locacao.getFilmes().size());
+        Assert.assertEquals(0, catalogo.getEstoque(filme1));
+        Assert.assertEquals(0, catalogo.getEstoque(filme2));
+        Mockito.verify(dao).salvar(Mockito.argThat(gravadaComo(locacao)));
+    }
+
+    @Test
+    public void deveDevolverEstoqueDoCatalogoQuandoUsuarioNegativado() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        CatalogoFilmes catalogo = new CatalogoFilmes();
+        int filme = catalogo.cadastrar("Filme 1", 1, 4.0);
+        service.setCatalogoFilmes(catalogo);
+        Mockito.when(spcService.possuiNegativacao(usuario)).thenReturn(true);
+
+        // acao
+        try {
+            service.alugarFilmesDoCatalogo(usuario, new int[]{filme});
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (LocadoraException e) {
+            Assert.assertEquals("Usuario negativado junto ao SPC.", e.getMessage());
+        }
+
+        // verificacao
+        Assert.assertEquals(1, catalogo.getEstoque(filme));
+        Mockito.when(spcService.possuiNegativacao(usuario)).thenReturn(false);
+        service.alugarFilmesDoCatalogo(usuario, new int[]{filme});
+        Assert.assertEquals(0, catalogo.getEstoque(filme));
+        try {
+            service.alugarFilmesDoCatalogo(usuario, new int[]{filme});
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (FilmeSemEstoqueException e) {
+            Assert.assertEquals("Filme sem estoque", e.getMessage());
+        }
+    }
+
+    @Test
+    public void naoDeveAlugarFilmeDoCatalogoSemEstoque() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        CatalogoFilmes catalogo = new CatalogoFilmes();
+        int filme = catalogo.cadastrar("Filme 1", 0, 4.0);
+        service.setCatalogoFilmes(catalogo);
+
+        // acao
+        try {
+            service.alugarFilmesDoCatalogo(usuario, new int[]{filme});
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (FilmeSemEstoqueException e) {
+            // verificacao
+            Assert.assertEquals("Filme sem estoque", e.getMessage());
+        }
+        Mockito.verifyZeroInteractions(spcService);
+    }
+
     @Test
     public void deveEnviarEmailParaLocacoesAtrasadas() {
         // cenario
@@ -366,18 +476,19 @@ public class LocacaoServiceTest {
 
         List<Locacao> locacoes = Arrays.asList(locacao1, locacao2, locacao3, locacao4);
 
-        // cenario - mock
-        Mockito.when(dao.findLocacoesPendentes()).thenReturn(locacoes);
+        // cenario - mock: simula o DAO filtrando as atrasadas e entregando lotes de 2 locacoes
+        service.setTamanhoLoteAtrasos(2);
+        Mockito.doAnswer(atrasadasDe(locacoes)).when(dao).findLocacoesAtrasadas(any(Date.class), Mockito.anyInt(), Mockito.<Consumer<List<Locacao>>>any());
 
         // acao
-        service.notificarAtrasos();
+        ResultadoNotificacao resultado = service.notificarAtrasos();
 
-        // verificacao
-        Mockito.verify(emailService, times(3)).notificarAtraso(any(Usuario.class));
-        Mockito.verify(emailService).notificarAtraso(usuario1);
-        Mockito.verify(emailService, never()).notificarAtraso(usuario2);
-        Mockito.verify(emailService, times(2)).notificarAtraso(usuario3);
+        // verificacao: um unico envio em lote, com cada usuario atrasado uma vez
+        Mockito.verify(emailService).notificarAtrasos(Arrays.asList(usuario1, usuario3));
+        Mockito.verify(emailService, never()).notificarAtraso(any(Usuario.class));
         Mockito.verifyNoMoreInteractions(emailService);
+        Assert.assertEquals(2, resultado.getEnviados());
+        Assert.assertEquals(0, resultado.getFalhas());
 //        verifyZeroInteractions(spcService);
     }
 
@@ -400,9 +511,9 @@ public class LocacaoServiceTest {
     }
 
     @Test
-    public void deveProrrogarUmLocacao() {
+    public void deveProrrogarUmLocacao() throws Exception {
         // cenario
-        Locacao locacao = umaLocacao().get();
+        Locacao locacao = umaLocacao().comFilmes(umFilme().get()).get();
         int diasProrrogacao = 3;
 
         // acao
@@ -417,4 +528,147 @@ public class LocacaoServiceTest {
         MatcherAssert.assertThat(locacaoSalva.getDataLocacao(), ehHoje());
         MatcherAssert.assertThat(locacaoSalva.getDataRetorno(), ehHojeComDiferencaDias(diasProrrogacao));
     }
+
+    @Test
+    public void naoDeveProrrogarLocacaoSemFilmes() {
+        // cenario
+        Locacao locacao = umaLocacao().get();
+
+        // acao
+        try {
+            service.prorrogarLocacao(locacao, 3);
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (LocadoraException e) {
+            // verificacao
+            Assert.assertEquals("Filme nao informado", e.getMessage());
+        }
+        Mockito.verifyZeroInteractions(dao);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void naoDeveProrrogarLocacaoPorDiasNaoPositivos() throws Exception {
+        service.prorrogarLocacao(umaLocacao().comFilmes(umFilme().get()).get(), 0);
+    }
+
+    @Test
+    public void deveAlugarFilmesEmLoteConsultandoSpcUmaVezPorUsuario() throws Exception {
+        // cenario
+        Usuario usuario1 = umUsuario().get();
+        Usuario usuario2 = umUsuario().comNome("Usuario 2").get();
+
+        List<PedidoLocacao> pedidos = Arrays.asList(
+                new PedidoLocacao(usuario1, Arrays.asList(umFilme().get())),
+                new PedidoLocacao(usuario2, Arrays.asList(umFilme().get(), umFilme().get())),
+                new PedidoLocacao(usuario1, Arrays.asList(umFilme().comValor(2.0).get())));
+
+        // acao
+        List<ResultadoLocacao> resultados = service.alugarFilmesEmLote(pedidos);
+
+        // verificacao
+        Assert.assertEquals(3, resultados.size());
+        for (ResultadoLocacao resultado : resultados) {
+            Assert.assertTrue(resultado.isSucesso());
+        }
+        Assert.assertEquals(8.0, resultados.get(1).getLocacao().getValor(), 0.01);
+        Assert.assertEquals(2.0, resultados.get(2).getLocacao().getValor(), 0.01);
+
+        Mockito.verify(spcService).possuiNegativacao(usuario1);
+        Mockito.verify(spcService).possuiNegativacao(usuario2);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Locacao>> argument = ArgumentCaptor.forClass((Class) List.class);
+        Mockito.verify(dao).salvarTodos(argument.capture());
+        Mockito.verify(dao, never()).salvar(any(Locacao.class));
+        Assert.assertEquals(3, argument.getValue().size());
+    }
+
+    @Test
+    public void deveRetornarFalhasIndividuaisSemInterromperLote() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        Usuario negativado = umUsuario().comNome("Usuario negativado").get();
+
+        Mockito.when(spcService.possuiNegativacao(negativado)).thenReturn(true);
+
+        List<PedidoLocacao> pedidos = Arrays.asList(
+                new PedidoLocacao(null, Arrays.asList(umFilme().get())),
+                new PedidoLocacao(usuario, Arrays.asList(umFilmeSemEstoque().get())),
+                new PedidoLocacao(negativado, Arrays.asList(umFilme().get())),
+                new PedidoLocacao(usuario, Arrays.asList(umFilme().get())));
+
+        // acao
+        List<ResultadoLocacao> resultados = service.alugarFilmesEmLote(pedidos);
+
+        // verificacao
+        Assert.assertEquals("Usuario nao informado", resultados.get(0).getErro().getMessage());
+        Assert.assertEquals(FilmeSemEstoqueException.class, resultados.get(1).getErro().getClass());
+        Assert.assertEquals("Usuario negativado junto ao SPC.", resultados.get(2).getErro().getMessage());
+        Assert.assertTrue(resultados.get(3).isSucesso());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Locacao>> argument = ArgumentCaptor.forClass((Class) List.class);
+        Mockito.verify(dao).salvarTodos(argument.capture());
+        Assert.assertEquals(1, argument.getValue().size());
+        Assert.assertEquals(resultados.get(3).getLocacao(), LocacaoImutavel.de(argument.getValue().get(0)));
+    }
+
+    @Test
+    public void deveAlugarFilmesAssincronamente() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        List<Filme> filmes = Arrays.asList(umFilme().comValor(5.0).get());
+        service.setExecutorSpc(Runnable::run);
+        service.setExecutorPersistencia(Runnable::run);
+
+        // acao
+        CompletableFuture<LocacaoImutavel> futuro = service.alugarFilmesAsync(usuario, filmes);
+
+        // verificacao
+        LocacaoImutavel locacao = futuro.get();
+        Assert.assertEquals(5.0, locacao.getValor(), 0.01);
+        Mockito.verify(spcService).possuiNegativacao(usuario);
+        Mockito.verify(dao).salvar(Mockito.argThat(gravadaComo(locacao)));
+    }
+
+    @Test
+    public void deveCompletarLocacaoAssincronaComErroDoSpc() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        List<Filme> filmes = Arrays.asList(umFilme().get());
+        service.setExecutorSpc(Runnable::run);
+        service.setExecutorPersistencia(Runnable::run);
+
+        Mockito.when(spcService.possuiNegativacao(usuario)).thenThrow(new Exception("Falha catastrofica"));
+
+        // acao
+        try {
+            service.alugarFilmesAsync(usuario, filmes).get();
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (ExecutionException e) {
+            // verificacao
+            Assert.assertEquals(LocadoraException.class, e.getCause().getClass());
+            Assert.assertEquals("Problemas com SPC, tente novamente mais tarde.", e.getCause().getMessage());
+        }
+        Mockito.verify(dao, never()).salvar(any(Locacao.class));
+    }
+
+    @Test
+    public void deveFalharLocacaoAssincronaSemConsultarSpcQuandoFilmeSemEstoque() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        List<Filme> filmes = Arrays.asList(umFilmeSemEstoque().get());
+
+        // acao
+        CompletableFuture<LocacaoImutavel> futuro = service.alugarFilmesAsync(usuario, filmes);
+
+        // verificacao
+        Assert.assertTrue(futuro.isCompletedExceptionally());
+        try {
+            futuro.get();
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("Filme sem estoque", e.getCause().getMessage());
+        }
+        Mockito.verifyZeroInteractions(spcService);
+    }
 }
@@ -0,0 +1,146 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.ResultadoNotificacao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.NotificacaoParcialException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+public class NotificadorAtrasosTest {
+
+    private EmailService emailService;
+    private Usuario usuario1;
+    private Usuario usuario2;
+    private Usuario usuario3;
+
+    @Before
+    public void setup() {
+        emailService = mock(EmailService.class);
+        usuario1 = umUsuario().comNome("Usuario 1").get();
+        usuario2 = umUsuario().comNome("Usuario 2").get();
+        usuario3 = umUsuario().comNome("Usuario 3").get();
+    }
+
+    @Test
+    public void deveEnviarEmLotesSemRepetirUsuarios() {
+        // cenario
+        NotificadorAtrasos notificador = new NotificadorAtrasos(emailService).comTamanhoLote(2).comConcorrencia(1);
+
+        // acao
+        ResultadoNotificacao resultado = notificador.notificar(Arrays.asList(usuario1, usuario2, usuario1, usuario3));
+
+        // verificacao
+        Mockito.verify(emailService).notificarAtrasos(Arrays.asList(usuario1, usuario2));
+        Mockito.verify(emailService).notificarAtrasos(Collections.singletonList(usuario3));
+        Assert.assertEquals(3, resultado.getEnviados());
+        Assert.assertEquals(0, resultado.getFalhas());
+    }
+
+    @Test
+    public void deveReenviarLoteQueFalhou() {
+        // cenario
+        List<Usuario> usuarios = Arrays.asList(usuario1, usuario2);
+        Mockito.doThrow(new RuntimeException("Servidor de e-mail indisponivel"))
+                .doNothing()
+                .when(emailService).notificarAtrasos(usuarios);
+        NotificadorAtrasos notificador = new NotificadorAtrasos(emailService)
+                .comEsperaEntreTentativas(0, TimeUnit.MILLISECONDS);
+
+        // acao
+        ResultadoNotificacao resultado = notificador.notificar(usuarios);
+
+        // verificacao
+        Mockito.verify(emailService, times(2)).notificarAtrasos(usuarios);
+        Assert.assertEquals(2, resultado.getEnviados());
+        Assert.assertEquals(0, resultado.getFalhas());
+    }
+
+    @Test
+    public void deveReenviarApenasUsuariosNaoNotificados() {
+        // cenario
+        List<Usuario> usuarios = Arrays.asList(usuario1, usuario2, usuario3);
+        Mockito.doThrow(new NotificacaoParcialException(Collections.singletonList(usuario2), new RuntimeException("Caixa cheia")))
+                .when(emailService).notificarAtrasos(usuarios);
+        NotificadorAtrasos notificador = new NotificadorAtrasos(emailService)
+                .comEsperaEntreTentativas(0, TimeUnit.MILLISECONDS);
+
+        // acao
+        ResultadoNotificacao resultado = notificador.notificar(usuarios);
+
+        // verificacao
+        Mockito.verify(emailService).notificarAtrasos(usuarios);
+        Mockito.verify(emailService).notificarAtrasos(Collections.singletonList(usuario2));
+        Mockito.verifyNoMoreInteractions(emailService);
+        Assert.assertEquals(3, resultado.getEnviados());
+        Assert.assertEquals(0, resultado.getFalhas());
+    }
+
+    @Test
+    public void deveContarFalhasAposEsgotarTentativas() {
+        // cenario
+        Mockito.doThrow(new RuntimeException("Servidor de e-mail indisponivel"))
+                .when(emailService).notificarAtrasos(Collections.singletonList(usuario2));
+        NotificadorAtrasos notificador = new NotificadorAtrasos(emailService)
+                .comTamanhoLote(1)
+                .comMaximoTentativas(3)
+                .comEsperaEntreTentativas(0, TimeUnit.MILLISECONDS);
+
+        // acao
+        ResultadoNotificacao resultado = notificador.notificar(Arrays.asList(usuario1, usuario2, usuario3));
+
+        // verificacao
+        Mockito.verify(emailService, times(3)).notificarAtrasos(Collections.singletonList(usuario2));
+        Mockito.verify(emailService, times(5)).notificarAtrasos(anyCollectionOf(Usuario.class));
+        Assert.assertEquals(2, resultado.getEnviados());
+        Assert.assertEquals(1, resultado.getFalhas());
+        Assert.assertEquals(1, resultado.getCausas().size());
+        Assert.assertEquals("Servidor de e-mail indisponivel", resultado.getCausas().get(0).getMessage());
+    }
+
+    @Test
+    public void deveManterCausaDaFalhaParcial() {
+        // cenario
+        List<Usuario> usuarios = Arrays.asList(usuario1, usuario2);
+        NotificacaoParcialException falha = new NotificacaoParcialException(Collections.singletonList(usuario2), new RuntimeException("Caixa cheia"));
+        Mockito.doThrow(falha).when(emailService).notificarAtrasos(usuarios);
+        NotificadorAtrasos notificador = new NotificadorAtrasos(emailService).comMaximoTentativas(1);
+
+        // acao
+        ResultadoNotificacao resultado = notificador.notificar(usuarios);
+
+        // verificacao
+        Assert.assertEquals(1, resultado.getEnviados());
+        Assert.assertEquals(Collections.singletonList(usuario2), resultado.getNaoNotificados());
+        Assert.assertEquals(Collections.singletonList(falha), resultado.getCausas());
+        Assert.assertEquals("Caixa cheia", resultado.getCausas().get(0).getCause().getMessage());
+    }
+
+    @Test
+    public void deveRespeitarLimiteDeNotificacoesPorSegundo() {
+        // cenario
+        NotificadorAtrasos notificador = new NotificadorAtrasos(emailService)
+                .comTamanhoLote(1)
+                .comLimiteNotificacoesPorSegundo(20);
+
+        // acao
+        long inicio = System.nanoTime();
+        ResultadoNotificacao resultado = notificador.notificar(Arrays.asList(usuario1, usuario2, usuario3));
+        long duracao = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        // verificacao: 3 notificacoes a 20/s exigem ao menos 2 intervalos de 50ms
+        Assert.assertEquals(3, resultado.getEnviados());
+        Assert.assertTrue("Duracao: " + duracao + "ms", duracao >= 90);
+    }
+}
@@ -0,0 +1,80 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.CatalogoFilmes;
+import br.ce.wcaquino.entidades.Filme;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+
+public class PricingEngineTest {
+
+    @Test
+    public void deveAplicarTabelaPadraoDeDescontos() {
+        // cenario
+        PricingEngine engine = PricingEngine.PADRAO;
+        double[] precos = {4.0, 4.0, 4.0, 4.0, 4.0, 4.0, 4.0};
+
+        // acao / verificacao
+        Assert.assertEquals(8.0, engine.calcularValor(Arrays.copyOf(precos, 2)), 0.01);
+        Assert.assertEquals(11.0, engine.calcularValor(Arrays.copyOf(precos, 3)), 0.01);
+        Assert.assertEquals(13.0, engine.calcularValor(Arrays.copyOf(precos, 4)), 0.01);
+        Assert.assertEquals(14.0, engine.calcularValor(Arrays.copyOf(precos, 5)), 0.01);
+        Assert.assertEquals(14.0, engine.calcularValor(Arrays.copyOf(precos, 6)), 0.01);
+        Assert.assertEquals(18.0, engine.calcularValor(precos), 0.01);
+    }
+
+    @Test
+    public void deveCalcularValorPelosIdsDoCatalogo() {
+        // cenario
+        CatalogoFilmes catalogo = new CatalogoFilmes();
+        int barato = catalogo.cadastrar("Filme 1", 1, 2.0);
+        int caro = catalogo.cadastrar("Filme 2", 1, 8.0);
+
+        // acao / verificacao
+        Assert.assertEquals(2.0 + 8.0 + 2.0 * 0.75, PricingEngine.PADRAO.calcularValor(catalogo, new int[]{barato, caro, barato}), 0.01);
+        Assert.assertEquals(PricingEngine.PADRAO.calcularValor(catalogo.getFilmes(new int[]{caro, barato})),
+                PricingEngine.PADRAO.calcularValor(catalogo, new int[]{caro, barato}), 0.0);
+    }
+
+    @Test
+    public void deveAplicarTabelaConfigurada() {
+        // cenario
+        PricingEngine engine = new PricingEngine(1.0, 0.5);
+        List<Filme> filmes = Arrays.asList(umFilme().comValor(10.0).get(), umFilme().comValor(10.0).get(),
+                umFilme().comValor(10.0).get());
+
+        // acao
+        double valor = engine.calcularValor(filmes);
+
+        // verificacao
+        Assert.assertEquals(25.0, valor, 0.01);
+    }
+
+    @Test
+    public void deveCalcularVariosCarrinhosDeUmaVez() {
+        // cenario
+        List<List<Filme>> carrinhos = Arrays.asList(
+                Collections.singletonList(umFilme().get()),
+                Arrays.asList(umFilme().get(), umFilme().get(), umFilme().get()));
+        double[][] precos = {{4.0}, {4.0, 4.0, 4.0}};
+        double[] destino = new double[3];
+
+        // acao
+        double[] valores = PricingEngine.PADRAO.calcularValores(carrinhos);
+        PricingEngine.PADRAO.calcularValores(precos, destino);
+
+        // verificacao
+        Assert.assertArrayEquals(new double[]{4.0, 11.0}, valores, 0.01);
+        Assert.assertArrayEquals(new double[]{4.0, 11.0, 0.0}, destino, 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deveRejeitarFatorNegativo() {
+        new PricingEngine(1.0, -0.5);
+    }
+}
@@ -0,0 +1,166 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Usuario;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+
+public class SpcServiceAgrupadorTest {
+
+    private final SpcServiceEmLote spcService = new SpcServiceEmLote();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private SpcServiceAgrupador agrupador;
+
+    @After
+    public void encerrar() {
+        executor.shutdownNow();
+        if (agrupador != null) {
+            agrupador.close();
+        }
+    }
+
+    @Test
+    public void deveJuntarConsultasSimultaneasEmUmaConsultaEmLote() throws Exception {
+        // cenario
+        agrupador = new SpcServiceAgrupador(spcService, 5, 10, TimeUnit.SECONDS);
+        spcService.negativados.add("Usuario 3");
+        List<Future<Boolean>> respostas = new ArrayList<>();
+
+        // acao
+        for (int i = 1; i <= 5; i++) {
+            Usuario usuario = umUsuario().comNome("Usuario " + i).get();
+            respostas.add(executor.submit(() -> agrupador.possuiNegativacao(usuario)));
+        }
+
+        // verificacao
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(i == 2, respostas.get(i).get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, spcService.lotes.size());
+        Assert.assertEquals(5, spcService.lotes.get(0).size());
+        Assert.assertEquals(1, agrupador.getConsultasEmLote());
+        Assert.assertEquals(5, agrupador.getUsuariosConsultados());
+    }
+
+    @Test
+    public void deveEnviarLoteIncompletoAoFimDaEspera() throws Exception {
+        // cenario
+        agrupador = new SpcServiceAgrupador(spcService, 100, 20, TimeUnit.MILLISECONDS);
+
+        // acao
+        long inicio = System.nanoTime();
+        boolean negativado = agrupador.possuiNegativacao(umUsuario().get());
+
+        // verificacao
+        Assert.assertFalse(negativado);
+        Assert.assertTrue(System.nanoTime() - inicio < TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(Collections.singletonList(umUsuario().get()), spcService.lotes.get(0));
+    }
+
+    @Test
+    public void deveConsultarUsuarioRepetidoUmaVezPorLote() throws Exception {
+        // cenario
+        agrupador = new SpcServiceAgrupador(spcService, 3, 10, TimeUnit.SECONDS);
+        spcService.negativados.add("Usuario 1");
+
+        // acao
+        List<Future<Boolean>> respostas = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            respostas.add(executor.submit(() -> agrupador.possuiNegativacao(umUsuario().get())));
+        }
+
+        // verificacao
+        for (Future<Boolean> resposta : respostas) {
+            Assert.assertTrue(resposta.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(Collections.singletonList(umUsuario().get()), spcService.lotes.get(0));
+    }
+
+    @Test
+    public void deveRepassarFalhaDoLoteATodosOsChamadores() throws Exception {
+        // cenario
+        agrupador = new SpcServiceAgrupador(spcService, 2, 10, TimeUnit.SECONDS);
+        spcService.falha = new Exception("SPC fora do ar");
+
+        // acao
+        Future<Boolean> primeira = executor.submit(() -> agrupador.possuiNegativacao(umUsuario().comNome("Usuario 1").get()));
+        Future<Boolean> segunda = executor.submit(() -> agrupador.possuiNegativacao(umUsuario().comNome("Usuario 2").get()));
+
+        // verificacao
+        for (Future<Boolean> resposta : Arrays.asList(primeira, segunda)) {
+            try {
+                resposta.get(5, TimeUnit.SECONDS);
+                Assert.fail("Deveria ter lancado excecao");
+            } catch (ExecutionException e) {
+                Assert.assertEquals("SPC fora do ar", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void deveEnviarPendentesERecusarNovasConsultasAoEncerrar() throws Exception {
+        // cenario
+        agrupador = new SpcServiceAgrupador(spcService, 100, 10, TimeUnit.SECONDS);
+        AtomicReference<Thread> chamador = new AtomicReference<>();
+        Future<Boolean> pendente = executor.submit(() -> {
+            chamador.set(Thread.currentThread());
+            return agrupador.possuiNegativacao(umUsuario().get());
+        });
+        // o chamador so fica em espera depois de colocar o pedido na fila
+        while (chamador.get() == null || chamador.get().getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+
+        // acao
+        agrupador.close();
+
+        // verificacao
+        Assert.assertFalse(pendente.get(5, TimeUnit.SECONDS));
+        try {
+            agrupador.possuiNegativacao(umUsuario().get());
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Agrupador de consultas ao SPC encerrado", e.getMessage());
+        }
+    }
+
+    private static class SpcServiceEmLote implements SpcService {
+        private final List<String> negativados = Collections.synchronizedList(new ArrayList<>());
+        private final List<List<Usuario>> lotes = Collections.synchronizedList(new ArrayList<>());
+        private volatile Exception falha;
+
+        @Override
+        public boolean possuiNegativacao(Usuario usuario) {
+            throw new AssertionError("Consulta individual nao deveria ser usada");
+        }
+
+        @Override
+        public Map<Usuario, Boolean> possuiNegativacao(Collection<Usuario> usuarios) throws Exception {
+            lotes.add(new ArrayList<>(usuarios));
+            if (falha != null) {
+                throw falha;
+            }
+            Map<Usuario, Boolean> negativacoes = new HashMap<>();
+            for (Usuario usuario : usuarios) {
+                negativacoes.put(usuario, negativados.contains(usuario.getNome()));
+            }
+            return negativacoes;
+        }
+    }
+}
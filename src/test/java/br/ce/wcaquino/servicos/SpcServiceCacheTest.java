@@ -0,0 +1,186 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.entidades.Usuario;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+public class SpcServiceCacheTest {
+
+    private SpcService spcService;
+    private AtomicLong relogio;
+    private SpcServiceCache cache;
+
+    @Before
+    public void setup() {
+        spcService = mock(SpcService.class);
+        relogio = new AtomicLong();
+        cache = new SpcServiceCache(spcService, 10, TimeUnit.SECONDS, 2, relogio::get);
+    }
+
+    @Test
+    public void deveConsultarSpcApenasUmaVezDentroDoTtl() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        Mockito.when(spcService.possuiNegativacao(usuario)).thenReturn(true);
+
+        // acao
+        boolean primeira = cache.possuiNegativacao(usuario);
+        relogio.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        boolean segunda = cache.possuiNegativacao(usuario);
+
+        // verificacao
+        Assert.assertTrue(primeira);
+        Assert.assertTrue(segunda);
+        Mockito.verify(spcService, times(1)).possuiNegativacao(usuario);
+        Assert.assertEquals(1, cache.getAcertos());
+        Assert.assertEquals(1, cache.getFaltas());
+    }
+
+    @Test
+    public void deveConsultarNovamenteAposExpirarTtl() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+
+        // acao
+        cache.possuiNegativacao(usuario);
+        relogio.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        cache.possuiNegativacao(usuario);
+
+        // verificacao
+        Mockito.verify(spcService, times(2)).possuiNegativacao(usuario);
+        Assert.assertEquals(2, cache.getFaltas());
+    }
+
+    @Test
+    public void deveDescartarUsuarioMenosUsadoAoAtingirLimite() throws Exception {
+        // cenario
+        Usuario usuario1 = umUsuario().comNome("Usuario 1").get();
+        Usuario usuario2 = umUsuario().comNome("Usuario 2").get();
+        Usuario usuario3 = umUsuario().comNome("Usuario 3").get();
+
+        // acao
+        cache.possuiNegativacao(usuario1);
+        cache.possuiNegativacao(usuario2);
+        cache.possuiNegativacao(usuario1);
+        cache.possuiNegativacao(usuario3);
+        cache.possuiNegativacao(usuario1);
+        cache.possuiNegativacao(usuario2);
+
+        // verificacao
+        Assert.assertEquals(2, cache.getTamanho());
+        Mockito.verify(spcService, times(1)).possuiNegativacao(usuario1);
+        Mockito.verify(spcService, times(2)).possuiNegativacao(usuario2);
+    }
+
+    @Test
+    public void naoDeveGuardarFalhasDaConsulta() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        Mockito.when(spcService.possuiNegativacao(usuario))
+                .thenThrow(new Exception("Falha catastrofica"))
+                .thenReturn(false);
+
+        // acao
+        try {
+            cache.possuiNegativacao(usuario);
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (Exception e) {
+            Assert.assertEquals("Falha catastrofica", e.getMessage());
+        }
+
+        // verificacao
+        Assert.assertFalse(cache.possuiNegativacao(usuario));
+        Mockito.verify(spcService, times(2)).possuiNegativacao(usuario);
+    }
+
+    @Test
+    public void deveAgruparConsultasSimultaneasDoMesmoUsuario() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        CountDownLatch consultaIniciada = new CountDownLatch(1);
+        CountDownLatch liberarConsulta = new CountDownLatch(1);
+        AtomicInteger chamadas = new AtomicInteger();
+        SpcService lento = u -> {
+            chamadas.incrementAndGet();
+            consultaIniciada.countDown();
+            liberarConsulta.await();
+            return true;
+        };
+        SpcServiceCache cacheLento = new SpcServiceCache(lento, 1, TimeUnit.MINUTES, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // acao
+            Future<Boolean> primeira = executor.submit(() -> cacheLento.possuiNegativacao(usuario));
+            consultaIniciada.await();
+            Future<Boolean> segunda = executor.submit(() -> cacheLento.possuiNegativacao(usuario));
+            Future<Boolean> terceira = executor.submit(() -> cacheLento.possuiNegativacao(usuario));
+            while (cacheLento.getFaltas() < 3) {
+                Thread.yield();
+            }
+            liberarConsulta.countDown();
+
+            // verificacao
+            Assert.assertTrue(primeira.get());
+            Assert.assertTrue(segunda.get());
+            Assert.assertTrue(terceira.get());
+            Assert.assertEquals(1, chamadas.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void deveRepassarErroParaConsultasAgrupadas() throws Exception {
+        // cenario
+        Usuario usuario = umUsuario().get();
+        CountDownLatch consultaIniciada = new CountDownLatch(1);
+        CountDownLatch liberarConsulta = new CountDownLatch(1);
+        SpcService quebrado = u -> {
+            consultaIniciada.countDown();
+            liberarConsulta.await();
+            throw new NoClassDefFoundError("Driver do SPC");
+        };
+        SpcServiceCache cacheQuebrado = new SpcServiceCache(quebrado, 1, TimeUnit.MINUTES, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // acao
+            Future<Boolean> primeira = executor.submit(() -> cacheQuebrado.possuiNegativacao(usuario));
+            consultaIniciada.await();
+            Future<Boolean> segunda = executor.submit(() -> cacheQuebrado.possuiNegativacao(usuario));
+            while (cacheQuebrado.getFaltas() < 2) {
+                Thread.yield();
+            }
+            liberarConsulta.countDown();
+
+            // verificacao
+            for (Future<Boolean> consulta : Arrays.asList(primeira, segunda)) {
+                try {
+                    consulta.get();
+                    Assert.fail("Deveria ter lancado excecao");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof NoClassDefFoundError);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package br.ce.wcaquino.servicos;
+
+import br.ce.wcaquino.daos.LocacaoDao;
+import br.ce.wcaquino.entidades.Usuario;
+import br.ce.wcaquino.exceptions.LocadoraException;
+import br.ce.wcaquino.exceptions.SpcIndisponivelException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static br.ce.wcaquino.builders.FilmeBuilder.umFilme;
+import static br.ce.wcaquino.builders.UsuarioBuilder.umUsuario;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+public class SpcServiceResilienteTest {
+
+    private SpcService spc;
+    private AtomicLong agora;
+    private SpcServiceResiliente resiliente;
+    private Usuario usuario;
+
+    @Before
+    public void setup() {
+        spc = mock(SpcService.class);
+        agora = new AtomicLong();
+        resiliente = new SpcServiceResiliente(spc, 100, agora::get)
+                .comJanela(4, 0.5, 4)
+                .comTempoAberto(30, TimeUnit.SECONDS)
+                .comTimeout(1, TimeUnit.SECONDS);
+        usuario = umUsuario().get();
+    }
+
+    @Test
+    public void deveAbrirCircuitoEFalharSemChamarSpc() throws Exception {
+        // cenario
+        Mockito.when(spc.possuiNegativacao(usuario)).thenThrow(new RuntimeException("Fora do ar"));
+        for (int i = 0; i < 4; i++) {
+            consultarEsperandoFalha("Falha na consulta ao SPC");
+        }
+
+        // acao / verificacao
+        Assert.assertEquals(SpcServiceResiliente.Estado.ABERTO, resiliente.getEstado());
+        consultarEsperandoFalha("Circuito do SPC aberto");
+        Mockito.verify(spc, times(4)).possuiNegativacao(usuario);
+    }
+
+    @Test
+    public void deveFecharCircuitoQuandoConsultaDeTesteTemSucesso() throws Exception {
+        // cenario
+        Mockito.when(spc.possuiNegativacao(usuario)).thenThrow(new RuntimeException("Fora do ar"));
+        for (int i = 0; i < 4; i++) {
+            consultarEsperandoFalha("Falha na consulta ao SPC");
+        }
+        Mockito.reset(spc);
+        Mockito.when(spc.possuiNegativacao(usuario)).thenReturn(false);
+
+        // acao
+        agora.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        consultarEsperandoFalha("Circuito do SPC aberto");
+        agora.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        boolean negativado = resiliente.possuiNegativacao(usuario);
+
+        // verificacao
+        Assert.assertFalse(negativado);
+        Assert.assertEquals(SpcServiceResiliente.Estado.FECHADO, resiliente.getEstado());
+    }
+
+    @Test
+    public void deveDecidirCircuitoMeioAbertoSomentePelaConsultaDeTeste() throws Exception {
+        // cenario
+        resiliente.comJanela(2, 0.5, 2).comTimeout(5, TimeUnit.SECONDS);
+        Usuario antigo = umUsuario().comNome("Usuario antigo").get();
+        Usuario teste = umUsuario().comNome("Usuario teste").get();
+        CountDownLatch antigaIniciada = new CountDownLatch(1);
+        CountDownLatch liberarAntiga = new CountDownLatch(1);
+        CountDownLatch testeIniciada = new CountDownLatch(1);
+        CountDownLatch liberarTeste = new CountDownLatch(1);
+        Mockito.when(spc.possuiNegativacao(usuario)).thenThrow(new RuntimeException("Fora do ar"));
+        Mockito.when(spc.possuiNegativacao(antigo)).thenAnswer(invocacao -> {
+            antigaIniciada.countDown();
+            liberarAntiga.await();
+            return false;
+        });
+        Mockito.when(spc.possuiNegativacao(teste)).thenAnswer(invocacao -> {
+            testeIniciada.countDown();
+            liberarTeste.await();
+            return false;
+        });
+        CompletableFuture<Boolean> antiga = consultarEmOutraThread(antigo);
+        Assert.assertTrue(antigaIniciada.await(5, TimeUnit.SECONDS));
+        consultarEsperandoFalha("Falha na consulta ao SPC");
+        consultarEsperandoFalha("Falha na consulta ao SPC");
+        Assert.assertEquals(SpcServiceResiliente.Estado.ABERTO, resiliente.getEstado());
+        agora.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        CompletableFuture<Boolean> deTeste = consultarEmOutraThread(teste);
+        Assert.assertTrue(testeIniciada.await(5, TimeUnit.SECONDS));
+
+        // acao
+        liberarAntiga.countDown();
+        Assert.assertFalse(antiga.get(5, TimeUnit.SECONDS));
+
+        // verificacao
+        Assert.assertEquals(SpcServiceResiliente.Estado.MEIO_ABERTO, resiliente.getEstado());
+        consultarEsperandoFalha("Circuito do SPC aberto");
+        liberarTeste.countDown();
+        Assert.assertFalse(deTeste.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(SpcServiceResiliente.Estado.FECHADO, resiliente.getEstado());
+    }
+
+    @Test
+    public void deveDesistirDaConsultaAposTimeout() throws Exception {
+        // cenario
+        resiliente.comTimeout(50, TimeUnit.MILLISECONDS);
+        Mockito.when(spc.possuiNegativacao(usuario)).thenAnswer(invocacao -> {
+            TimeUnit.SECONDS.sleep(5);
+            return false;
+        });
+
+        // acao
+        long inicio = System.nanoTime();
+        consultarEsperandoFalha("Tempo limite da consulta ao SPC esgotado");
+
+        // verificacao
+        Assert.assertTrue(System.nanoTime() - inicio < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    public void deveRecusarConsultasAlemDoLimiteSemEsperar() throws Exception {
+        // cenario
+        resiliente.comMaximoConcorrente(1);
+        CountDownLatch consultaIniciada = new CountDownLatch(1);
+        CountDownLatch liberarConsulta = new CountDownLatch(1);
+        Mockito.when(spc.possuiNegativacao(usuario)).thenAnswer(invocacao -> {
+            consultaIniciada.countDown();
+            liberarConsulta.await();
+            return false;
+        });
+        CompletableFuture<Boolean> primeira = consultarEmOutraThread(usuario);
+        Assert.assertTrue(consultaIniciada.await(5, TimeUnit.SECONDS));
+
+        // acao / verificacao
+        consultarEsperandoFalha("Limite de consultas simultaneas ao SPC atingido");
+        liberarConsulta.countDown();
+        Assert.assertFalse(primeira.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deveUsarUltimaRespostaQuandoSpcFalha() throws Exception {
+        // cenario
+        resiliente.comFallback(SpcServiceResiliente.PoliticaFallback.ULTIMA_RESPOSTA);
+        Mockito.when(spc.possuiNegativacao(usuario)).thenReturn(true).thenThrow(new RuntimeException("Fora do ar"));
+
+        // acao / verificacao
+        Assert.assertTrue(resiliente.possuiNegativacao(usuario));
+        Assert.assertTrue(resiliente.possuiNegativacao(usuario));
+        Mockito.verify(spc, times(2)).possuiNegativacao(usuario);
+    }
+
+    @Test
+    public void deveLiberarSomenteLocacoesAbaixoDoLimiteQuandoSpcFalha() throws Exception {
+        // cenario
+        resiliente.comFallback(SpcServiceResiliente.PoliticaFallback.LIBERAR_ABAIXO_DO_LIMITE).comLimiteLiberacao(10.0);
+        Mockito.when(spc.possuiNegativacao(usuario)).thenThrow(new RuntimeException("Fora do ar"));
+        LocacaoService service = new LocacaoService(mock(LocacaoDao.class), resiliente, mock(EmailService.class));
+
+        // acao
+        service.alugarFilmes(usuario, Arrays.asList(umFilme().comValor(4.0).get(), umFilme().comValor(4.0).get()));
+        try {
+            service.alugarFilmes(usuario, Arrays.asList(umFilme().comValor(6.0).get(), umFilme().comValor(6.0).get()));
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (LocadoraException e) {
+            // verificacao
+            Assert.assertEquals("Problemas com SPC, tente novamente mais tarde.", e.getMessage());
+        }
+        Assert.assertTrue(resiliente.isDependenteDoValor());
+    }
+
+    private CompletableFuture<Boolean> consultarEmOutraThread(Usuario usuario) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return resiliente.possuiNegativacao(usuario);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, tarefa -> new Thread(tarefa, "consulta-spc-teste").start());
+    }
+
+    private void consultarEsperandoFalha(String mensagem) throws Exception {
+        try {
+            resiliente.possuiNegativacao(usuario);
+            Assert.fail("Deveria ter lancado excecao");
+        } catch (SpcIndisponivelException e) {
+            Assert.assertEquals(mensagem, e.getMessage());
+        }
+    }
+}
@@ -1,23 +1,16 @@
 package br.ce.wcaquino.suites;
 
-import br.ce.wcaquino.servicos.CalculadoraTest;
-import br.ce.wcaquino.servicos.DDT_CalculoValorLocacaoTest;
-import br.ce.wcaquino.servicos.LocacaoServiceTest;
+import br.ce.wcaquino.runners.SuiteParalela;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
-import org.junit.runners.Suite;
 
 /*
- * Suite de testes nao e muito indicado utilizar.
- * Pois necessita incluir as novas classes de testes toda vez aqui na lista de SuiteClasses.
+ * As classes de teste sao descobertas no classpath, entao novas classes entram na suite
+ * sem precisar listar aqui. Elas rodam em paralelo, distribuidas pela duracao da ultima execucao.
  */
-@RunWith(Suite.class)
-@Suite.SuiteClasses({
-        CalculadoraTest.class,
-        DDT_CalculoValorLocacaoTest.class,
-        LocacaoServiceTest.class
-})
+@RunWith(SuiteParalela.class)
+@SuiteParalela.Pacote("br.ce.wcaquino")
 public class SuiteExecucao {
 
     // Útil quando precisa de alguma configuração antes de executar cada teste
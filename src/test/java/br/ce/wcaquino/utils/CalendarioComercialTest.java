@@ -0,0 +1,73 @@
+package br.ce.wcaquino.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+public class CalendarioComercialTest {
+
+    @Test
+    public void devePularDomingoPorPadrao() {
+        // cenario
+        CalendarioComercial calendario = CalendarioComercial.fechadoAosDomingos();
+
+        // acao / verificacao
+        Assert.assertEquals(LocalDate.of(2017, 5, 1), calendario.proximoDiaAberto(LocalDate.of(2017, 4, 30)));
+        Assert.assertEquals(LocalDate.of(2017, 4, 29), calendario.proximoDiaAberto(LocalDate.of(2017, 4, 29)));
+        Assert.assertFalse(calendario.isAberto(DiaEpoch.obterData(30, 4, 2017)));
+    }
+
+    @Test
+    public void devePularFeriadosEmSequenciaComDiasFechados() {
+        // cenario
+        CalendarioComercial calendario = CalendarioComercial.fechadoAosDomingos()
+                .fecharDiaSemana(DayOfWeek.SATURDAY)
+                .adicionarFeriado(LocalDate.of(2017, 5, 1));
+
+        // acao / verificacao
+        Assert.assertEquals(LocalDate.of(2017, 5, 2), calendario.proximoDiaAberto(LocalDate.of(2017, 4, 29)));
+    }
+
+    @Test
+    public void deveRefazerTabelaAposAlteracao() {
+        // cenario
+        CalendarioComercial calendario = CalendarioComercial.fechadoAosDomingos();
+        LocalDate natal = LocalDate.of(2017, 12, 25);
+        Assert.assertEquals(natal, calendario.proximoDiaAberto(natal));
+
+        // acao
+        calendario.adicionarFeriado(natal);
+
+        // verificacao
+        Assert.assertEquals(LocalDate.of(2017, 12, 26), calendario.proximoDiaAberto(natal));
+
+        // acao
+        calendario.removerFeriado(natal).abrirDiaSemana(DayOfWeek.SUNDAY);
+
+        // verificacao
+        Assert.assertEquals(natal, calendario.proximoDiaAberto(natal));
+        Assert.assertTrue(calendario.isAberto(DiaEpoch.obterData(24, 12, 2017)));
+    }
+
+    @Test
+    public void deveCalcularDiasForaDaJanela() {
+        // cenario
+        CalendarioComercial calendario = new CalendarioComercial(LocalDate.of(2017, 1, 1), 1)
+                .fecharDiaSemana(DayOfWeek.SUNDAY)
+                .adicionarFeriado(LocalDate.of(2018, 1, 1));
+
+        // acao / verificacao
+        Assert.assertEquals(LocalDate.of(2018, 1, 2), calendario.proximoDiaAberto(LocalDate.of(2017, 12, 31)));
+        Assert.assertEquals(LocalDate.of(2016, 5, 2), calendario.proximoDiaAberto(LocalDate.of(2016, 5, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void naoDeveFecharTodosOsDiasDaSemana() {
+        CalendarioComercial calendario = new CalendarioComercial();
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            calendario.fecharDiaSemana(dia);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package br.ce.wcaquino.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.Date;
+
+public class DiaEpochTest {
+
+    private static final ZoneId SAO_PAULO = ZoneId.of("America/Sao_Paulo");
+
+    @Test
+    public void deveObterDiaAtualDoRelogio() {
+        // cenario
+        ZonedDateTime agora = ZonedDateTime.of(2017, 4, 29, 23, 30, 0, 0, SAO_PAULO);
+        DiaEpoch diaEpoch = new DiaEpoch(Clock.fixed(agora.toInstant(), SAO_PAULO));
+
+        // acao
+        long hoje = diaEpoch.hoje();
+
+        // verificacao
+        Assert.assertEquals(LocalDate.of(2017, 4, 29).toEpochDay(), hoje);
+        Assert.assertEquals(DiaEpoch.obterData(1, 5, 2017), diaEpoch.comDiferencaDias(2));
+    }
+
+    @Test
+    public void deveConverterDatasConsiderandoOFusoHorario() {
+        // cenario
+        ZonedDateTime agora = ZonedDateTime.of(2017, 4, 29, 23, 30, 0, 0, SAO_PAULO);
+        Date data = Date.from(agora.toInstant());
+        DiaEpoch diaEpoch = new DiaEpoch(Clock.system(SAO_PAULO));
+
+        // acao / verificacao
+        Assert.assertEquals(DiaEpoch.obterData(29, 4, 2017), diaEpoch.de(data));
+        Assert.assertEquals(DiaEpoch.obterData(30, 4, 2017), DiaEpoch.de(data, ZoneId.of("UTC")));
+        Assert.assertEquals(ZonedDateTime.of(2017, 4, 29, 0, 0, 0, 0, SAO_PAULO).toInstant(),
+                diaEpoch.paraDate(diaEpoch.de(data)).toInstant());
+    }
+
+    @Test
+    public void deveCalcularDiaSemanaSemCalendar() {
+        // 29/04/2017 foi um sabado
+        long sabado = DiaEpoch.obterData(29, 4, 2017);
+
+        Assert.assertEquals(DayOfWeek.SATURDAY, DiaEpoch.diaSemana(sabado));
+        Assert.assertTrue(DiaEpoch.verificarDiaSemana(DiaEpoch.adicionarDias(sabado, 2), DayOfWeek.MONDAY));
+        Assert.assertEquals(DayOfWeek.THURSDAY, DiaEpoch.diaSemana(0));
+        Assert.assertEquals(DayOfWeek.WEDNESDAY, DiaEpoch.diaSemana(-1));
+        Assert.assertTrue(DiaEpoch.isMesmaData(sabado, DiaEpoch.adicionarDias(sabado + 1, -1)));
+    }
+
+    @Test
+    public void deveConverterConstantesDoCalendar() {
+        Assert.assertEquals(DayOfWeek.SUNDAY, DataUtils.paraDayOfWeek(Calendar.SUNDAY));
+        Assert.assertEquals(DayOfWeek.MONDAY, DataUtils.paraDayOfWeek(Calendar.MONDAY));
+        Assert.assertEquals(DayOfWeek.SATURDAY, DataUtils.paraDayOfWeek(Calendar.SATURDAY));
+    }
+
+    @Test
+    public void deveManterComportamentoDoDataUtils() {
+        Date sabado = DataUtils.obterData(29, 4, 2017);
+
+        Assert.assertTrue(DataUtils.verificarDiaSemana(sabado, Calendar.SATURDAY));
+        Assert.assertTrue(DataUtils.isMesmaData(DataUtils.adicionarDias(sabado, 2), DataUtils.obterData(1, 5, 2017)));
+        Assert.assertTrue(DataUtils.isMesmaData(DataUtils.obterData(32, 1, 2017), DataUtils.obterData(1, 2, 2017)));
+        Assert.assertFalse(DataUtils.isMesmaData(sabado, DataUtils.adicionarDias(sabado, -1)));
+    }
+}